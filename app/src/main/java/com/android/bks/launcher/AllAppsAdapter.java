@@ -5,14 +5,35 @@ import android.view.ViewGroup;
 
 import androidx.recyclerview.widget.RecyclerView;
 
+import java.util.Collections;
 import java.util.List;
 
 public class AllAppsAdapter extends RecyclerView.Adapter<AllAppsAdapter.VH> {
 
+    /** View type of app icons; shared through the RecycledViewPool with other app lists. */
+    public static final int VIEW_TYPE_ICON = 1;
+    /** Full-width line between the predicted apps and the list. */
+    public static final int VIEW_TYPE_DIVIDER = 2;
+
+    private static final long DIVIDER_ID = Long.MIN_VALUE;
+
+    public interface OnAppClickListener {
+        void onAppClick(View v, ApplicationInfo app, boolean predicted);
+    }
+
     private List<ApplicationInfo> apps;
+    // shown above apps, followed by the divider; empty while searching
+    private List<ApplicationInfo> predictions = Collections.emptyList();
+    private OnAppClickListener clickListener;
+
+    // inflation/bind counters for scroll measurements
+    private int createCount;
+    private int bindCount;
 
     public AllAppsAdapter(List<ApplicationInfo> apps) {
         this.apps = apps;
+        // ItemInfo.id is the DB row id, unique per item; predictions use negative ids
+        setHasStableIds(true);
     }
 
     public void setApps(List<ApplicationInfo> list) {
@@ -20,8 +41,64 @@ public class AllAppsAdapter extends RecyclerView.Adapter<AllAppsAdapter.VH> {
         notifyDataSetChanged();
     }
 
+    public void setPredictions(List<ApplicationInfo> list) {
+        this.predictions = list;
+        notifyDataSetChanged();
+    }
+
+    public void setOnAppClickListener(OnAppClickListener l) {
+        clickListener = l;
+    }
+
+    private final View.OnClickListener bubbleClickListener = v -> {
+        if (clickListener == null || !(v.getParent() instanceof RecyclerView)) return;
+        int pos = ((RecyclerView) v.getParent()).getChildAdapterPosition(v);
+        ApplicationInfo app = ((BubbleTextView) v).getApplicationInfo();
+        if (pos != RecyclerView.NO_POSITION && app != null) clickListener.onAppClick(v, app, isPrediction(pos));
+    };
+
+    private int headerCount() {
+        return predictions.isEmpty() ? 0 : predictions.size() + 1;
+    }
+
+    public boolean isDivider(int position) {
+        return !predictions.isEmpty() && position == predictions.size();
+    }
+
+    private boolean isPrediction(int position) {
+        return position < predictions.size();
+    }
+
+    private ApplicationInfo getApp(int position) {
+        return isPrediction(position) ? predictions.get(position) : apps.get(position - headerCount());
+    }
+
+    @Override
+    public long getItemId(int position) {
+        if (isDivider(position)) return DIVIDER_ID;
+        // unsaved ApplicationInfos, so the slot is the identity
+        if (isPrediction(position)) return -(position + 2);
+        return apps.get(position - headerCount()).id;
+    }
+
+    @Override
+    public int getItemViewType(int position) {
+        return isDivider(position) ? VIEW_TYPE_DIVIDER : VIEW_TYPE_ICON;
+    }
+
     @Override
     public VH onCreateViewHolder(ViewGroup parent, int viewType) {
+        createCount++;
+        if (viewType == VIEW_TYPE_DIVIDER) {
+            View line = new View(parent.getContext());
+            float density = parent.getResources().getDisplayMetrics().density;
+            RecyclerView.LayoutParams lp = new RecyclerView.LayoutParams(
+                    RecyclerView.LayoutParams.MATCH_PARENT, Math.max(1, Math.round(density)));
+            lp.topMargin = lp.bottomMargin = Math.round(8 * density);
+            line.setLayoutParams(lp);
+            line.setBackgroundColor(0x44FFFFFF);
+            return new VH(line);
+        }
         BubbleTextView v = new BubbleTextView(parent.getContext());
         v.setClipToOutline(true); // safe drawing
         return new VH(v);
@@ -29,8 +106,12 @@ public class AllAppsAdapter extends RecyclerView.Adapter<AllAppsAdapter.VH> {
 
     @Override
     public void onBindViewHolder(VH holder, int position) {
-        ApplicationInfo ai = apps.get(position);
+        if (holder.bubble == null) return;
+        bindCount++;
+        ApplicationInfo ai = getApp(position);
         holder.bubble.applyFromApplicationInfo(ai, false);
+        // set on bind: holders come from a pool shared with other adapters
+        holder.bubble.setOnClickListener(bubbleClickListener);
 
         // Disable long press
         holder.bubble.setOnLongClickListener(null);
@@ -41,15 +122,19 @@ public class AllAppsAdapter extends RecyclerView.Adapter<AllAppsAdapter.VH> {
 
     @Override
     public int getItemCount() {
-        return apps != null ? apps.size() : 0;
+        return (apps != null ? apps.size() : 0) + headerCount();
     }
 
+    public int getCreateCount() { return createCount; }
+
+    public int getBindCount() { return bindCount; }
+
     static class VH extends RecyclerView.ViewHolder {
-        BubbleTextView bubble;
+        BubbleTextView bubble; // null for the divider
 
         VH(View v) {
             super(v);
-            bubble = (BubbleTextView) v;
+            bubble = v instanceof BubbleTextView ? (BubbleTextView) v : null;
         }
     }
 }
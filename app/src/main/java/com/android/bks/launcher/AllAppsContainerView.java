@@ -1,7 +1,10 @@
 package com.android.bks.launcher;
 
 import android.content.Context;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.util.AttributeSet;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.widget.EditText;
 import android.widget.LinearLayout;
@@ -11,6 +14,7 @@ import androidx.recyclerview.widget.GridLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -19,9 +23,26 @@ import java.util.List;
  */
 public class AllAppsContainerView extends LinearLayout {
 
+    private static final String TAG = "HOMETEST_AllAppsContainerView";
+
+    /** Rows kept in the view cache on top of the visible ones, so short scroll reversals rebind nothing. */
+    private static final int CACHED_ROWS = 2;
+    /** Rows of holders the shared pool keeps per view type. */
+    private static final int POOLED_ROWS = 6;
+
     private EditText searchBar;
     private RecyclerView recyclerView;
     private AllAppsAdapter adapter;
+    private AllAppsSearchScheduler searchScheduler;
+    private List<ApplicationInfo> apps = new ArrayList<>();
+    private List<ApplicationInfo> predictions = new ArrayList<>();
+    private int numColumns;
+    private FrameMetricsTracker frameMetrics;
+    private boolean scrolling;
+
+    // adapter counters at the start of the current scroll gesture
+    private int scrollStartCreates;
+    private int scrollStartBinds;
 
     public AllAppsContainerView(Context context) {
         super(context);
@@ -39,25 +60,161 @@ public class AllAppsContainerView extends LinearLayout {
 
         searchBar = findViewById(R.id.all_apps_search_text);
         recyclerView = findViewById(R.id.all_apps_recycler_view);
-        recyclerView.setLayoutManager(new GridLayoutManager(context, 4));
+        numColumns = new DeviceProfile(context).numColumns;
+        GridLayoutManager layoutManager = new GridLayoutManager(context, numColumns);
+        layoutManager.setItemPrefetchEnabled(true);
+        // a full row per prefetch when this grid is nested in another list (search results, predictions)
+        layoutManager.setInitialPrefetchItemCount(numColumns);
+        recyclerView.setLayoutManager(layoutManager);
+        // content changes never change the size of the list itself
+        recyclerView.setHasFixedSize(true);
+        recyclerView.setItemViewCacheSize(numColumns * CACHED_ROWS);
 
         adapter = new AllAppsAdapter(new ArrayList<>());
+        layoutManager.setSpanSizeLookup(new GridLayoutManager.SpanSizeLookup() {
+            @Override
+            public int getSpanSize(int position) {
+                return adapter.isDivider(position) ? numColumns : 1;
+            }
+        });
         recyclerView.setAdapter(adapter);
+        recyclerView.addOnScrollListener(scrollMeasurer);
+
+        searchBar.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) { }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) { }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                onSearchTextChanged(s.toString());
+            }
+        });
 
         setVisibility(GONE);
     }
 
+    /**
+     * Creates the holder pool shared between All Apps and any other app list using
+     * {@link AllAppsAdapter#VIEW_TYPE_ICON}, sized for the given number of columns.
+     */
+    public static RecyclerView.RecycledViewPool createSharedViewPool(int numColumns) {
+        RecyclerView.RecycledViewPool pool = new RecyclerView.RecycledViewPool();
+        pool.setMaxRecycledViews(AllAppsAdapter.VIEW_TYPE_ICON, numColumns * POOLED_ROWS);
+        return pool;
+    }
+
+    public void setRecycledViewPool(RecyclerView.RecycledViewPool pool) {
+        recyclerView.setRecycledViewPool(pool);
+    }
+
+    /** Logs how many holders were created and bound during each scroll/fling. */
+    private final RecyclerView.OnScrollListener scrollMeasurer = new RecyclerView.OnScrollListener() {
+        private int lastState = RecyclerView.SCROLL_STATE_IDLE;
+
+        @Override
+        public void onScrollStateChanged(RecyclerView rv, int newState) {
+            if (lastState == RecyclerView.SCROLL_STATE_IDLE && newState != RecyclerView.SCROLL_STATE_IDLE) {
+                scrollStartCreates = adapter.getCreateCount();
+                scrollStartBinds = adapter.getBindCount();
+                scrolling = true;
+                updateFrameState();
+            } else if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+                scrolling = false;
+                updateFrameState();
+                Log.i(TAG, "scroll done: created=" + (adapter.getCreateCount() - scrollStartCreates)
+                        + " bound=" + (adapter.getBindCount() - scrollStartBinds)
+                        + " total created=" + adapter.getCreateCount());
+            }
+            lastState = newState;
+        }
+    };
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        searchScheduler = new AllAppsSearchScheduler((query, results) -> adapter.setApps(results));
+        searchScheduler.setApps(apps);
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        if (searchScheduler != null) {
+            searchScheduler.destroy();
+            searchScheduler = null;
+        }
+    }
+
     public void setApps(List<ApplicationInfo> apps) {
-        adapter.setApps(apps);
+        this.apps = apps;
+        if (searchScheduler != null) searchScheduler.setApps(apps);
+        if (isSearching()) {
+            // re-run the current query against the new list
+            onSearchTextChanged(searchBar.getText().toString());
+        } else {
+            adapter.setApps(apps);
+        }
+    }
+
+    /** Predicted apps for the row above the list; at most one row of them is shown. */
+    public void setPredictions(List<ApplicationInfo> list) {
+        predictions = list.size() > numColumns ? list.subList(0, numColumns) : list;
+        if (!isSearching()) adapter.setPredictions(predictions);
+    }
+
+    public void setOnAppClickListener(AllAppsAdapter.OnAppClickListener l) {
+        adapter.setOnAppClickListener(l);
+    }
+
+    private boolean isSearching() {
+        return searchBar.getText().toString().trim().length() > 0;
+    }
+
+    private void onSearchTextChanged(String query) {
+        updateFrameState();
+        if (searchScheduler == null) return;
+        if (query.trim().isEmpty()) {
+            // clearing the query needs no worker round-trip
+            searchScheduler.cancel();
+            adapter.setPredictions(predictions);
+            adapter.setApps(apps);
+        } else {
+            // results replace the whole list, predictions included
+            adapter.setPredictions(Collections.emptyList());
+            searchScheduler.search(query);
+        }
+    }
+
+    /** Null while the view is detached. */
+    @Nullable
+    public AllAppsSearchScheduler getSearchScheduler() {
+        return searchScheduler;
+    }
+
+    /** Frames drawn while the panel is shown are attributed to All Apps states. */
+    public void setFrameMetricsTracker(FrameMetricsTracker tracker) {
+        frameMetrics = tracker;
+    }
+
+    private void updateFrameState() {
+        if (frameMetrics == null || !isShownPanel()) return;
+        frameMetrics.setState(scrolling ? FrameMetricsTracker.STATE_ALL_APPS_FLING
+                : isSearching() ? FrameMetricsTracker.STATE_SEARCH
+                : FrameMetricsTracker.STATE_ALL_APPS_OPEN);
     }
 
     public void show() {
         setVisibility(VISIBLE);
         setTranslationY(0); // optional animation
+        updateFrameState();
     }
 
     public void hide() {
         setVisibility(GONE);
+        if (frameMetrics != null) frameMetrics.setState(FrameMetricsTracker.STATE_WORKSPACE_IDLE);
     }
 
     public boolean isShownPanel() {
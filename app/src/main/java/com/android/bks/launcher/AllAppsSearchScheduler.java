@@ -0,0 +1,125 @@
+package com.android.bks.launcher;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * AllAppsSearchScheduler - debounces search keystrokes and runs queries on a dedicated worker.
+ * Every query gets a generation number; a newer query cancels older in-flight ones and
+ * only results of the latest generation are delivered on the main thread.
+ */
+public class AllAppsSearchScheduler {
+
+    public interface Callback {
+        void onSearchResult(String query, List<ApplicationInfo> results);
+    }
+
+    /** Keystrokes arriving within this window are coalesced into a single query. */
+    private static final long DEBOUNCE_MS = 100;
+    /** How many items are matched between two cancellation checks. */
+    private static final int CANCEL_CHECK_INTERVAL = 32;
+
+    private final HandlerThread worker;
+    private final Handler workerHandler;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final AtomicInteger generation = new AtomicInteger();
+    private final Callback callback;
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final AtomicInteger cancelledQueries = new AtomicInteger();
+
+    private volatile List<ApplicationInfo> apps = Collections.emptyList();
+
+    public AllAppsSearchScheduler(Callback callback) {
+        this.callback = callback;
+        worker = new HandlerThread("all-apps-search", Process.THREAD_PRIORITY_BACKGROUND);
+        worker.start();
+        workerHandler = new Handler(worker.getLooper());
+    }
+
+    /** Snapshot of the list queries run against; must not be mutated afterwards. */
+    public void setApps(List<ApplicationInfo> list) {
+        apps = list != null ? list : Collections.emptyList();
+    }
+
+    /**
+     * Schedules a query. Pending queries that have not started yet are dropped,
+     * running ones notice the new generation and stop early.
+     */
+    public void search(String query) {
+        final int gen = generation.incrementAndGet();
+        final long requestedAt = SystemClock.uptimeMillis();
+        final String normalized = query == null ? "" : query.trim().toLowerCase(Locale.ROOT);
+
+        workerHandler.removeCallbacksAndMessages(null);
+        workerHandler.postDelayed(() -> runQuery(normalized, gen, requestedAt), DEBOUNCE_MS);
+    }
+
+    /** Drops any pending or running query without delivering a result. */
+    public void cancel() {
+        generation.incrementAndGet();
+        workerHandler.removeCallbacksAndMessages(null);
+    }
+
+    public void destroy() {
+        cancel();
+        worker.quitSafely();
+    }
+
+    private boolean isStale(int gen) {
+        return gen != generation.get();
+    }
+
+    private void runQuery(String query, int gen, long requestedAt) {
+        if (isStale(gen)) {
+            cancelledQueries.incrementAndGet();
+            return;
+        }
+        List<ApplicationInfo> results = filter(apps, query, () -> isStale(gen));
+        if (results == null) {
+            cancelledQueries.incrementAndGet();
+            return;
+        }
+        mainHandler.post(() -> {
+            if (isStale(gen)) {
+                cancelledQueries.incrementAndGet();
+                return;
+            }
+            latency.record(SystemClock.uptimeMillis() - requestedAt);
+            callback.onSearchResult(query, results);
+        });
+    }
+
+    /**
+     * The apps of source whose title contains query, which must be lower case, in order.
+     * Returns null as soon as cancelled says so; it is asked every
+     * {@link #CANCEL_CHECK_INTERVAL} items.
+     */
+    static List<ApplicationInfo> filter(List<ApplicationInfo> source, String query,
+                                        BooleanSupplier cancelled) {
+        List<ApplicationInfo> results = new ArrayList<>();
+        for (int i = 0; i < source.size(); i++) {
+            if (i % CANCEL_CHECK_INTERVAL == 0 && cancelled.getAsBoolean()) return null;
+            ApplicationInfo ai = source.get(i);
+            if (ai.title != null && ai.title.toLowerCase(Locale.ROOT).contains(query)) {
+                results.add(ai);
+            }
+        }
+        return results;
+    }
+
+    /** Keystroke-to-result latency, including the debounce window. */
+    public LatencyHistogram getLatencyHistogram() { return latency; }
+
+    public int getCancelledQueryCount() { return cancelledQueries.get(); }
+}
@@ -0,0 +1,92 @@
+package com.android.bks.launcher;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * AppPredictor - ranks launched components for the predicted-apps row. Each launch adds to
+ * an exponentially decaying frequency score and to a count of what followed the previous
+ * launch, so ranking blends "used a lot lately" with "usually opened after the last app".
+ * Updated incrementally per event; single-threaded and free of Android dependencies.
+ * Components are the dense ids handed out by {@link LaunchHistory}.
+ */
+public class AppPredictor {
+
+    /** A launch counts half as much after this long. */
+    static final long HALF_LIFE_MS = 3L * 24 * 60 * 60 * 1000;
+    /** Weight of the "follows the last launch" share relative to one recent launch. */
+    static final double TRANSITION_WEIGHT = 2.0;
+
+    private double[] score = new double[32];
+    private long[] scoreTime = new long[32];
+    private int componentCount;
+
+    // (previous << 32 | next) -> launches of next right after previous
+    private final HashMap<Long, int[]> transitions = new HashMap<>();
+    private int[] transitionsFrom = new int[32];
+    private int lastComponent = -1;
+
+    public void onLaunch(int component, long time) {
+        ensureCapacity(component + 1);
+        score[component] = decayed(component, time) + 1;
+        scoreTime[component] = time;
+        if (lastComponent >= 0 && lastComponent != component) {
+            long key = ((long) lastComponent << 32) | component;
+            int[] count = transitions.get(key);
+            if (count == null) transitions.put(key, new int[]{1});
+            else count[0]++;
+            transitionsFrom[lastComponent]++;
+        }
+        lastComponent = component;
+    }
+
+    /**
+     * Writes up to out.length component ids, best first, and returns how many were
+     * written. scratch must be at least as long as out. The last launched component is
+     * left out; it is already open.
+     */
+    public int getTopN(long now, int[] out, double[] scratch) {
+        int n = 0;
+        for (int c = 0; c < componentCount; c++) {
+            if (c == lastComponent || scoreTime[c] == 0) continue;
+            double s = rank(c, now);
+            // insertion into the small sorted output; the worst entry drops out when full
+            int pos = n;
+            while (pos > 0 && scratch[pos - 1] < s) pos--;
+            if (pos >= out.length) continue;
+            for (int j = Math.min(n, out.length - 1); j > pos; j--) {
+                out[j] = out[j - 1];
+                scratch[j] = scratch[j - 1];
+            }
+            out[pos] = c;
+            scratch[pos] = s;
+            if (n < out.length) n++;
+        }
+        return n;
+    }
+
+    private double rank(int c, long now) {
+        double s = decayed(c, now);
+        if (lastComponent >= 0 && transitionsFrom[lastComponent] > 0) {
+            int[] count = transitions.get(((long) lastComponent << 32) | c);
+            if (count != null) s += TRANSITION_WEIGHT * count[0] / transitionsFrom[lastComponent];
+        }
+        return s;
+    }
+
+    private double decayed(int c, long now) {
+        if (scoreTime[c] == 0) return 0;
+        long age = Math.max(0, now - scoreTime[c]);
+        return score[c] * Math.pow(0.5, (double) age / HALF_LIFE_MS);
+    }
+
+    private void ensureCapacity(int count) {
+        if (count > score.length) {
+            int size = Math.max(count, score.length * 2);
+            score = Arrays.copyOf(score, size);
+            scoreTime = Arrays.copyOf(scoreTime, size);
+            transitionsFrom = Arrays.copyOf(transitionsFrom, size);
+        }
+        componentCount = Math.max(componentCount, count);
+    }
+}
@@ -1,5 +1,6 @@
 package com.android.bks.launcher;
 
+import android.content.ComponentName;
 import android.content.Intent;
 import android.graphics.Bitmap;
 
@@ -11,10 +12,14 @@ public class ApplicationInfo extends ItemInfo {
     public Intent intent; // optional, may be null
     public Bitmap icon;   // <-- add this
 
+    // ITEM_TYPE_APPWIDGET only
+    public int appWidgetId = NO_ID;
+    public ComponentName appWidgetProvider;
+
     public ApplicationInfo() {}
 
     public ApplicationInfo(long id, String title, Intent intent, int screen,
-                           int cellX, int cellY, String container, Bitmap icon) {
+                           int cellX, int cellY, long container, Bitmap icon) {
         this.id = id;
         this.title = title;
         this.intent = intent;
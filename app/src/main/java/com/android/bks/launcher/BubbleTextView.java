@@ -1,60 +1,202 @@
 package com.android.bks.launcher;
 
 import android.content.Context;
+import android.content.res.TypedArray;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
 import android.graphics.drawable.Drawable;
+import android.text.TextPaint;
+import android.text.TextUtils;
 import android.util.AttributeSet;
-import android.view.Gravity;
-import android.widget.FrameLayout;
-import android.widget.ImageView;
-import android.widget.TextView;
+import android.util.TypedValue;
+import android.view.View;
+import android.view.ViewGroup;
 
 import androidx.annotation.Nullable;
 
 
 
 /**
- * Simple icon+label view used across workspace/hotseat/allapps
+ * Simple icon+label view used across workspace/hotseat/allapps.
+ * A single View: the icon bitmap and a pre-measured, ellipsized label are drawn
+ * directly on the canvas, so an icon costs one measure/layout and one draw.
  */
-public class BubbleTextView extends FrameLayout {
+public class BubbleTextView extends View {
+
+    private static final int ICON_SIZE_DP = 48;
+    private static final int PADDING_DP = 6;
+    private static final int LABEL_GAP_DP = 4;
+    private static final int LABEL_SIZE_SP = 14;
+
+    private final TextPaint labelPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint iconPaint = new Paint(Paint.FILTER_BITMAP_FLAG | Paint.ANTI_ALIAS_FLAG);
+    private final Rect iconBounds = new Rect();
+    private final int iconSize;
+    private final int labelGap;
+    private final int labelHeight;
+    private final int labelAscent;
 
-    private final ImageView icon;
-    private final TextView label;
     private ApplicationInfo info;
+    private Bitmap iconBitmap;
+    private Drawable defaultIcon;
+
+    private String title = "";
+    private float titleWidth;
+    // label as drawn: title ellipsized to the current width, with its x position cached
+    private CharSequence drawnLabel = "";
+    private float drawnLabelX;
+    private int labelBaseline;
 
     public BubbleTextView(Context ctx) {
-        super(ctx);
-        icon = new ImageView(ctx);
-        label = new TextView(ctx);
-        init();
+        this(ctx, null);
     }
-    public BubbleTextView(Context ctx, @Nullable AttributeSet attrs) { super(ctx, attrs); icon = new ImageView(ctx); label = new TextView(ctx); init(); }
 
-    private void init() {
-        int pad = dp(6);
+    public BubbleTextView(Context ctx, @Nullable AttributeSet attrs) {
+        super(ctx, attrs);
+        int pad = dp(PADDING_DP);
         setPadding(pad, pad, pad, pad);
-        icon.setLayoutParams(new LayoutParams(LayoutParams.WRAP_CONTENT, LayoutParams.WRAP_CONTENT, Gravity.CENTER));
-        addView(icon);
-        label.setLayoutParams(new LayoutParams(LayoutParams.WRAP_CONTENT, LayoutParams.WRAP_CONTENT, Gravity.BOTTOM | Gravity.CENTER_HORIZONTAL));
-        label.setPadding(0, dp(4), 0, 0);
-        addView(label);
+        iconSize = dp(ICON_SIZE_DP);
+        labelGap = dp(LABEL_GAP_DP);
+
+        labelPaint.setTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP,
+                LABEL_SIZE_SP, getResources().getDisplayMetrics()));
+        labelPaint.setColor(resolveTextColor(ctx));
+        Paint.FontMetricsInt fm = labelPaint.getFontMetricsInt();
+        labelAscent = -fm.ascent;
+        labelHeight = fm.descent - fm.ascent;
+    }
+
+    private static int resolveTextColor(Context ctx) {
+        TypedArray a = ctx.obtainStyledAttributes(new int[]{android.R.attr.textColorPrimary});
+        try {
+            return a.getColor(0, Color.WHITE);
+        } finally {
+            a.recycle();
+        }
     }
 
     public void applyFromApplicationInfo(ApplicationInfo ai, boolean scaleUp) {
         this.info = ai;
-        label.setText(ai.title != null ? ai.title : "");
+        setTag(ai);
 
-        if (ai.icon != null) {
-            icon.setImageBitmap(ai.icon); // <-- use Bitmap from IconCache
-        } else {
+        iconBitmap = ai.icon; // <-- use Bitmap from IconCache
+        if (iconBitmap == null && defaultIcon == null) {
             // fallback to default icon
-            Drawable d = getResources().getDrawable(android.R.drawable.sym_def_app_icon);
-            icon.setImageDrawable(d);
+            defaultIcon = getContext().getDrawable(android.R.drawable.sym_def_app_icon);
         }
+        setTitle(ai.title != null ? ai.title : "");
+        setContentDescription(title);
 
         setClickable(true);
+        invalidate();
+    }
+
+    private void setTitle(String newTitle) {
+        if (newTitle.equals(title)) return;
+        title = newTitle;
+        float oldWidth = titleWidth;
+        titleWidth = labelPaint.measureText(title);
+
+        ViewGroup.LayoutParams lp = getLayoutParams();
+        if (oldWidth != titleWidth && (lp == null || lp.width == ViewGroup.LayoutParams.WRAP_CONTENT)) {
+            // our measured width depends on the label
+            requestLayout();
+        }
+        updateLabel(getWidth());
+    }
+
+    private void updateLabel(int width) {
+        int avail = width - getPaddingLeft() - getPaddingRight();
+        if (avail <= 0) {
+            drawnLabel = "";
+            return;
+        }
+        drawnLabel = titleWidth <= avail
+                ? title
+                : TextUtils.ellipsize(title, labelPaint, avail, TextUtils.TruncateAt.END);
+        float drawnWidth = drawnLabel == title ? titleWidth : labelPaint.measureText(drawnLabel, 0, drawnLabel.length());
+        drawnLabelX = getPaddingLeft() + (avail - drawnWidth) / 2f;
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int contentW = Math.max(iconSize, (int) Math.ceil(titleWidth));
+        int contentH = iconSize + labelGap + labelHeight;
+        int w = resolveSize(contentW + getPaddingLeft() + getPaddingRight(), widthMeasureSpec);
+        int h = resolveSize(contentH + getPaddingTop() + getPaddingBottom(), heightMeasureSpec);
+        setMeasuredDimension(w, h);
     }
 
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        int availW = w - getPaddingLeft() - getPaddingRight();
+        int availH = h - getPaddingTop() - getPaddingBottom();
 
+        // shrink the icon if the cell is too small to fit icon and label
+        int size = Math.max(0, Math.min(iconSize, Math.min(availW, availH - labelGap - labelHeight)));
+        int contentH = size + labelGap + labelHeight;
+        int top = getPaddingTop() + Math.max(0, (availH - contentH) / 2);
+        int left = getPaddingLeft() + (availW - size) / 2;
+        iconBounds.set(left, top, left + size, top + size);
+        labelBaseline = iconBounds.bottom + labelGap + labelAscent;
+
+        updateLabel(w);
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        if (iconBitmap != null) {
+            canvas.drawBitmap(iconBitmap, null, iconBounds, iconPaint);
+        } else if (defaultIcon != null) {
+            defaultIcon.setBounds(iconBounds);
+            defaultIcon.draw(canvas);
+        }
+        if (drawnLabel.length() > 0) {
+            canvas.drawText(drawnLabel, 0, drawnLabel.length(), drawnLabelX, labelBaseline, labelPaint);
+        }
+    }
+
+    /**
+     * Clears per-item and caller-set view state so the view can be handed out again by
+     * {@link BubbleTextViewPool}. The icon and label are left in place; the next bind
+     * overwrites them.
+     */
+    void prepareForReuse() {
+        info = null;
+        setTag(null);
+        setOnClickListener(null);
+        setOnLongClickListener(null);
+        setPressed(false);
+        setAlpha(1f);
+        setTranslationX(0f);
+        setTranslationY(0f);
+        setScaleX(1f);
+        setScaleY(1f);
+        // a drag hides its source view; All Apps clips and clears the background
+        setVisibility(VISIBLE);
+        setClipToOutline(false);
+        setBackground(null);
+    }
+
+
+
+    /** True if binding the given item would change what is drawn. */
+    public boolean needsRebind(ApplicationInfo ai) {
+        if (info == null) return true;
+        String oldTitle = info.title != null ? info.title : "";
+        String newTitle = ai.title != null ? ai.title : "";
+        return !oldTitle.equals(newTitle) || info.icon != ai.icon;
+    }
+
+    /** Swaps the bound item without touching the icon or label. */
+    public void updateInfo(ApplicationInfo ai) {
+        this.info = ai;
+        setTag(ai);
+    }
 
     public ApplicationInfo getApplicationInfo() { return info; }
 
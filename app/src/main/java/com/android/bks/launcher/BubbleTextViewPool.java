@@ -0,0 +1,92 @@
+package com.android.bks.launcher;
+
+import android.content.Context;
+import android.view.View;
+import android.view.ViewGroup;
+
+import java.io.PrintWriter;
+import java.util.ArrayDeque;
+import java.util.Locale;
+
+/**
+ * BubbleTextViewPool - bounded, activity-scoped pool of BubbleTextViews shared by
+ * workspace, hotseat and folders so that rebinding does not allocate new views.
+ * Main thread only.
+ */
+public class BubbleTextViewPool {
+
+    private final Context context;
+    private final int maxSize;
+    private final ArrayDeque<BubbleTextView> pool;
+
+    private long hits;
+    private long misses;
+    private long dropped;
+
+    public BubbleTextViewPool(Context context, int maxSize) {
+        this.context = context;
+        this.maxSize = maxSize;
+        this.pool = new ArrayDeque<>(maxSize);
+    }
+
+    public BubbleTextView acquire() {
+        BubbleTextView v = pool.poll();
+        if (v != null) {
+            hits++;
+            return v;
+        }
+        misses++;
+        return new BubbleTextView(context);
+    }
+
+    /** The view must already be detached from its parent. */
+    public void release(BubbleTextView v) {
+        if (v.getParent() != null) {
+            throw new IllegalStateException("Releasing a view that is still attached");
+        }
+        if (pool.size() >= maxSize) {
+            dropped++;
+            return;
+        }
+        v.prepareForReuse();
+        pool.push(v);
+    }
+
+    /**
+     * Removes every child of the given container and releases all BubbleTextViews
+     * found in it (including those nested inside folders) back into the pool.
+     */
+    public void recycleChildren(ViewGroup parent) {
+        for (int i = parent.getChildCount() - 1; i >= 0; i--) {
+            View child = parent.getChildAt(i);
+            parent.removeViewAt(i);
+            recycle(child);
+        }
+    }
+
+    /** Releases a detached view, or the BubbleTextViews inside a detached container. */
+    public void recycle(View child) {
+        if (child instanceof BubbleTextView) {
+            release((BubbleTextView) child);
+        } else if (child instanceof ViewGroup) {
+            recycleChildren((ViewGroup) child);
+        }
+    }
+
+    public int size() { return pool.size(); }
+
+    public long getHits() { return hits; }
+
+    public long getMisses() { return misses; }
+
+    public float getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0f : (float) hits / total;
+    }
+
+    public void dump(String prefix, PrintWriter pw) {
+        pw.println(prefix + "BubbleTextViewPool: size=" + pool.size() + "/" + maxSize
+                + " hits=" + hits + " misses=" + misses + " dropped=" + dropped
+                + " hitRate=" + String.format(Locale.ROOT, "%.2f", getHitRate()));
+    }
+}
@@ -3,38 +3,242 @@ package com.android.bks.launcher;
 import android.content.Context;
 import android.graphics.Color;
 import android.util.AttributeSet;
+import android.util.LongSparseArray;
 import android.view.View;
-import android.widget.FrameLayout;
+import android.view.ViewGroup;
 
 import androidx.annotation.Nullable;
 
+import java.util.List;
+
 /**
- * CellLayout - single page grid (4x4)
+ * CellLayout - single page grid. Children are placed in onMeasure/onLayout from the cell
+ * coordinates and spans in their {@link LayoutParams}, so a size change only re-lays out.
+ * Grid size comes from {@link DeviceProfile}.
  */
-public class CellLayout extends FrameLayout {
+public class CellLayout extends ViewGroup {
 
-    private static final int ROWS = 4;
-    private static final int COLUMNS = 4;
+    private int countX;
+    private int countY;
+    private int cellWidth;
+    private int cellHeight;
+    private GridOccupancy occupied;
 
-    public CellLayout(Context ctx) { super(ctx);
+    public CellLayout(Context ctx) {
+        super(ctx);
         setBackgroundColor(Color.GRAY);
+        init(ctx);
+    }
+
+    public CellLayout(Context ctx, @Nullable AttributeSet attrs) {
+        super(ctx, attrs);
+        init(ctx);
+    }
+
+    private void init(Context ctx) {
+        DeviceProfile dp = new DeviceProfile(ctx);
+        countX = dp.numColumns;
+        countY = dp.numRows;
+        occupied = new GridOccupancy(countX, countY);
+    }
+
+    public int getCountX() { return countX; }
+
+    public int getCountY() { return countY; }
+
+    public int getCellWidth() { return cellWidth; }
+
+    public int getCellHeight() { return cellHeight; }
+
+    /** Changes the grid size; children keep their cells and are re-laid out. */
+    public void setGridSize(int x, int y) {
+        if (x == countX && y == countY) return;
+        countX = x;
+        countY = y;
+        occupied = new GridOccupancy(countX, countY);
+        rebuildOccupancy();
+        requestLayout();
+    }
+
+    public void addViewToCell(View child, int cellX, int cellY) {
+        addViewToCell(child, cellX, cellY, 1, 1);
+    }
+
+    public void addViewToCell(View child, int cellX, int cellY, int spanX, int spanY) {
+        addView(child, new LayoutParams(cellX, cellY, spanX, spanY));
+    }
+
+    /** Moves an attached child to another cell without re-adding it. */
+    public void moveChildToCell(View child, int cellX, int cellY, int spanX, int spanY) {
+        LayoutParams lp = (LayoutParams) child.getLayoutParams();
+        if (lp.cellX == cellX && lp.cellY == cellY
+                && lp.cellHSpan == spanX && lp.cellVSpan == spanY) {
+            return;
+        }
+        lp.cellX = cellX;
+        lp.cellY = cellY;
+        lp.cellHSpan = spanX;
+        lp.cellVSpan = spanY;
+        rebuildOccupancy();
+        child.requestLayout();
+    }
+
+    public boolean isOccupied(int cellX, int cellY) {
+        return occupied.isOccupied(cellX, cellY);
+    }
+
+    public boolean isRegionVacant(int cellX, int cellY, int spanX, int spanY) {
+        return occupied.isRegionVacant(cellX, cellY, spanX, spanY);
+    }
+
+    /** See {@link GridOccupancy#findNearestVacantArea}. */
+    public boolean findNearestVacantArea(int cellX, int cellY, int spanX, int spanY, int[] out) {
+        return occupied.findNearestVacantArea(cellX, cellY, spanX, spanY, out);
+    }
+
+    GridOccupancy getOccupancy() { return occupied; }
+
+    @Override
+    public void onViewAdded(View child) {
+        super.onViewAdded(child);
+        LayoutParams lp = (LayoutParams) child.getLayoutParams();
+        occupied.markCells(lp.cellX, lp.cellY, lp.cellHSpan, lp.cellVSpan, true);
+    }
+
+    @Override
+    public void onViewRemoved(View child) {
+        super.onViewRemoved(child);
+        // items may overlap, so clearing just this child's cells could free cells still in use
+        rebuildOccupancy();
+    }
+
+    private void rebuildOccupancy() {
+        occupied.clear();
+        for (int i = 0; i < getChildCount(); i++) {
+            LayoutParams lp = (LayoutParams) getChildAt(i).getLayoutParams();
+            occupied.markCells(lp.cellX, lp.cellY, lp.cellHSpan, lp.cellVSpan, true);
+        }
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int width = getDefaultSize(getSuggestedMinimumWidth(), widthMeasureSpec);
+        int height = getDefaultSize(getSuggestedMinimumHeight(), heightMeasureSpec);
+        setMeasuredDimension(width, height);
+
+        cellWidth = Math.max(0, (width - getPaddingLeft() - getPaddingRight()) / countX);
+        cellHeight = Math.max(0, (height - getPaddingTop() - getPaddingBottom()) / countY);
+
+        for (int i = 0; i < getChildCount(); i++) {
+            View child = getChildAt(i);
+            if (child.getVisibility() == GONE) continue;
+            LayoutParams lp = (LayoutParams) child.getLayoutParams();
+            lp.setup(cellWidth, cellHeight, getPaddingLeft(), getPaddingTop());
+            child.measure(MeasureSpec.makeMeasureSpec(lp.width, MeasureSpec.EXACTLY),
+                    MeasureSpec.makeMeasureSpec(lp.height, MeasureSpec.EXACTLY));
+        }
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        for (int i = 0; i < getChildCount(); i++) {
+            View child = getChildAt(i);
+            if (child.getVisibility() == GONE) continue;
+            LayoutParams lp = (LayoutParams) child.getLayoutParams();
+            child.layout(lp.x, lp.y, lp.x + lp.width, lp.y + lp.height);
+        }
+    }
+
+    @Override
+    public boolean shouldDelayChildPressedState() {
+        return false;
     }
-    public CellLayout(Context ctx, @Nullable AttributeSet attrs) { super(ctx, attrs); }
 
     /**
-     * Add child to grid cell (cellX [0..3], cellY [0..3]).
-     * We'll compute margin for placement on layout pass; to keep it simple,
-     * use LayoutParams with margins based on current width/height if available.
+     * Reconciles the children of this page with the given items, matched by item id.
+     * Views of removed items are recycled, moved items get new cell coordinates, changed
+     * items are rebound and new items are added. A page whose items did not change is
+     * not touched at all, so it does not go through another layout pass.
      */
-    public void addViewToCell(View child, int cellX, int cellY) {
-        int w = getWidth();
-        int h = getHeight();
-        int cellW = (w > 0) ? w / COLUMNS : LayoutParams.MATCH_PARENT;
-        int cellH = (h > 0) ? h / ROWS : LayoutParams.MATCH_PARENT;
-
-        LayoutParams lp = new LayoutParams(cellW, cellH);
-        lp.leftMargin = (cellW > 0) ? cellX * cellW : 0;
-        lp.topMargin = (cellH > 0) ? cellY * cellH : 0;
-        addView(child, lp);
+    public void bindItems(List<? extends ItemInfo> items, ItemViewBinder binder) {
+        LongSparseArray<ItemInfo> pending = new LongSparseArray<>(items.size());
+        for (ItemInfo item : items) pending.put(item.id, item);
+
+        for (int i = getChildCount() - 1; i >= 0; i--) {
+            View child = getChildAt(i);
+            ItemInfo bound = (ItemInfo) child.getTag();
+            ItemInfo item = bound != null ? pending.get(bound.id) : null;
+            if (item == null) {
+                removeViewAt(i);
+                binder.recycleView(child);
+                continue;
+            }
+            pending.remove(item.id);
+            moveChildToCell(child, item.cellX, item.cellY, item.spanX, item.spanY);
+            if (bound != item) {
+                binder.updateView(child, item);
+            }
+        }
+
+        for (int i = 0; i < pending.size(); i++) {
+            ItemInfo item = pending.valueAt(i);
+            addViewToCell(binder.createView(item), item.cellX, item.cellY, item.spanX, item.spanY);
+        }
+    }
+
+    @Override
+    protected boolean checkLayoutParams(ViewGroup.LayoutParams p) {
+        return p instanceof LayoutParams;
+    }
+
+    @Override
+    protected ViewGroup.LayoutParams generateDefaultLayoutParams() {
+        return new LayoutParams(0, 0, 1, 1);
+    }
+
+    @Override
+    protected ViewGroup.LayoutParams generateLayoutParams(ViewGroup.LayoutParams p) {
+        return new LayoutParams(p);
+    }
+
+    @Override
+    public ViewGroup.LayoutParams generateLayoutParams(AttributeSet attrs) {
+        return new LayoutParams(getContext(), attrs);
+    }
+
+    /**
+     * Cell position and span of a child. x/y/width/height are derived in onMeasure.
+     */
+    public static class LayoutParams extends MarginLayoutParams {
+        public int cellX;
+        public int cellY;
+        public int cellHSpan = 1;
+        public int cellVSpan = 1;
+
+        int x;
+        int y;
+
+        public LayoutParams(int cellX, int cellY, int cellHSpan, int cellVSpan) {
+            super(MATCH_PARENT, MATCH_PARENT);
+            this.cellX = cellX;
+            this.cellY = cellY;
+            this.cellHSpan = Math.max(1, cellHSpan);
+            this.cellVSpan = Math.max(1, cellVSpan);
+        }
+
+        public LayoutParams(Context c, AttributeSet attrs) {
+            super(c, attrs);
+        }
+
+        public LayoutParams(ViewGroup.LayoutParams source) {
+            super(source);
+        }
+
+        void setup(int cellWidth, int cellHeight, int paddingLeft, int paddingTop) {
+            width = Math.max(0, cellHSpan * cellWidth - leftMargin - rightMargin);
+            height = Math.max(0, cellVSpan * cellHeight - topMargin - bottomMargin);
+            x = paddingLeft + cellX * cellWidth + leftMargin;
+            y = paddingTop + cellY * cellHeight + topMargin;
+        }
     }
 }
@@ -0,0 +1,297 @@
+package com.android.bks.launcher;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.content.pm.ResolveInfo;
+import android.content.res.XmlResourceParser;
+import android.text.TextUtils;
+import android.util.Log;
+import android.util.Xml;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * DefaultLayoutParser - reads the default workspace from an XML resource (normally
+ * res/xml/default_workspace.xml), or from files/default_workspace.xml when present, with a
+ * streaming XmlPullParser.
+ * Components are resolved afterwards in one pass against a single query of all launcher
+ * activities; items that do not resolve are dropped. Folders are returned as
+ * {@link FolderInfo}s holding their resolved contents.
+ */
+public class DefaultLayoutParser {
+    private static final String TAG = "HOMETEST_DefaultLayoutParser";
+
+    public static final String OVERRIDE_FILE = "default_workspace.xml";
+
+    private static final String NS = "http://schemas.android.com/apk/res-auto";
+
+    private static final String TAG_FAVORITES = "favorites";
+    private static final String TAG_FAVORITE = "favorite";
+    private static final String TAG_FOLDER = "folder";
+    private static final String TAG_INCLUDE = "include";
+    private static final String TAG_EXTRA = "extra";
+
+    // attribute names of the Favorite, Extra and Include styleables
+    private static final String ATTR_PACKAGE_NAME = "packageName";
+    private static final String ATTR_CLASS_NAME = "className";
+    private static final String ATTR_URI = "uri";
+    private static final String ATTR_TITLE = "title";
+    private static final String ATTR_CONTAINER = "container";
+    private static final String ATTR_SCREEN = "screen";
+    private static final String ATTR_X = "x";
+    private static final String ATTR_Y = "y";
+    private static final String ATTR_SPAN_X = "spanX";
+    private static final String ATTR_SPAN_Y = "spanY";
+    private static final String ATTR_KEY = "key";
+    private static final String ATTR_VALUE = "value";
+    private static final String ATTR_WORKSPACE = "workspace";
+
+    private static final String CONTAINER_HOTSEAT = "hotseat";
+
+    /** A parsed item waiting for component resolution. */
+    private static final class Entry {
+        final ApplicationInfo info = new ApplicationInfo();
+        String packageName;
+        String className;
+        Entry folder; // parent folder, for folder contents
+        FolderInfo folderInfo; // for folders, created on resolution
+    }
+
+    private final Context context;
+    private final PackageManager pm;
+    private final int layoutRes;
+    private final ArrayList<Entry> entries = new ArrayList<>();
+
+    /** layoutRes is the layout used when there is no override file. */
+    public DefaultLayoutParser(Context context, int layoutRes) {
+        this.context = context;
+        this.pm = context.getPackageManager();
+        this.layoutRes = layoutRes;
+    }
+
+    /** Parses and resolves the default layout into top-level items. */
+    public List<ItemInfo> loadDefaultLayout() {
+        entries.clear();
+        File override = new File(context.getFilesDir(), OVERRIDE_FILE);
+        try {
+            if (override.isFile()) {
+                try (InputStream in = new FileInputStream(override)) {
+                    XmlPullParser parser = Xml.newPullParser();
+                    parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true);
+                    parser.setInput(in, null);
+                    parseLayout(parser, false);
+                }
+                Log.i(TAG, "loadDefaultLayout(): using " + override);
+            } else {
+                try (XmlResourceParser parser = context.getResources().getXml(layoutRes)) {
+                    parseLayout(parser, true);
+                }
+            }
+        } catch (XmlPullParserException | IOException | RuntimeException e) {
+            Log.e(TAG, "loadDefaultLayout(): invalid layout, importing nothing", e);
+            return new ArrayList<>();
+        }
+        return resolve();
+    }
+
+    /** Adds the items of one layout document to the pending entries; see {@link #resolve}. */
+    void parseLayout(XmlPullParser parser, boolean fromResources)
+            throws XmlPullParserException, IOException {
+        int type;
+        while ((type = parser.next()) != XmlPullParser.START_TAG && type != XmlPullParser.END_DOCUMENT) {
+            // skip to the root element
+        }
+        if (type != XmlPullParser.START_TAG || !TAG_FAVORITES.equals(parser.getName())) {
+            throw new XmlPullParserException("Expected <" + TAG_FAVORITES + ">", parser, null);
+        }
+        parseChildren(parser, fromResources, null);
+    }
+
+    /** Streams the children of the current element; returns at its end tag. */
+    private void parseChildren(XmlPullParser parser, boolean fromResources, Entry folder)
+            throws XmlPullParserException, IOException {
+        int depth = parser.getDepth();
+        int type;
+        while (((type = parser.next()) != XmlPullParser.END_TAG || parser.getDepth() > depth)
+                && type != XmlPullParser.END_DOCUMENT) {
+            if (type != XmlPullParser.START_TAG) continue;
+            String name = parser.getName();
+            if (TAG_FAVORITE.equals(name)) {
+                parseFavorite(parser, folder);
+            } else if (TAG_FOLDER.equals(name) && folder == null) {
+                Entry e = newEntry(parser, null);
+                e.info.itemType = ItemInfo.ITEM_TYPE_FOLDER;
+                parseChildren(parser, fromResources, e);
+            } else if (TAG_INCLUDE.equals(name) && folder == null && fromResources) {
+                int resId = ((XmlResourceParser) parser).getAttributeResourceValue(NS, ATTR_WORKSPACE, 0);
+                if (resId != 0) {
+                    try (XmlResourceParser included = context.getResources().getXml(resId)) {
+                        parseLayout(included, true);
+                    }
+                }
+                skip(parser);
+            } else {
+                Log.w(TAG, "Ignoring <" + name + "> at " + parser.getPositionDescription());
+                skip(parser);
+            }
+        }
+    }
+
+    private void parseFavorite(XmlPullParser parser, Entry folder)
+            throws XmlPullParserException, IOException {
+        Entry e = newEntry(parser, folder);
+        e.packageName = attr(parser, ATTR_PACKAGE_NAME);
+        e.className = attr(parser, ATTR_CLASS_NAME);
+        String uri = attr(parser, ATTR_URI);
+        if (!TextUtils.isEmpty(uri)) {
+            try {
+                e.info.intent = Intent.parseUri(uri, 0);
+            } catch (URISyntaxException ex) {
+                Log.w(TAG, "Bad uri " + uri + " at " + parser.getPositionDescription());
+            }
+        }
+
+        int depth = parser.getDepth();
+        int type;
+        while (((type = parser.next()) != XmlPullParser.END_TAG || parser.getDepth() > depth)
+                && type != XmlPullParser.END_DOCUMENT) {
+            if (type == XmlPullParser.START_TAG && TAG_EXTRA.equals(parser.getName())) {
+                String key = attr(parser, ATTR_KEY);
+                String value = attr(parser, ATTR_VALUE);
+                if (key != null && value != null) {
+                    // component entries only carry the extras until resolution builds their intent
+                    if (e.info.intent == null) e.info.intent = new Intent();
+                    e.info.intent.putExtra(key, value);
+                }
+            }
+        }
+    }
+
+    private Entry newEntry(XmlPullParser parser, Entry folder) {
+        Entry e = new Entry();
+        ApplicationInfo ai = e.info;
+        ai.title = attr(parser, ATTR_TITLE);
+        if (folder == null) {
+            // folder contents get their container and rank on resolution, see resolve()
+            ai.container = CONTAINER_HOTSEAT.equals(attr(parser, ATTR_CONTAINER))
+                    ? ItemInfo.CONTAINER_HOTSEAT : ItemInfo.CONTAINER_DESKTOP;
+            ai.screen = intAttr(parser, ATTR_SCREEN, 0);
+            ai.cellX = intAttr(parser, ATTR_X, 0);
+            ai.cellY = intAttr(parser, ATTR_Y, 0);
+            ai.spanX = intAttr(parser, ATTR_SPAN_X, 1);
+            ai.spanY = intAttr(parser, ATTR_SPAN_Y, 1);
+        }
+        e.folder = folder;
+        entries.add(e);
+        return e;
+    }
+
+    /**
+     * Resolves all entries against one query of the launchable activities. Explicit
+     * components fall back to the package's main activity; URI intents are checked with
+     * resolveActivity. Folders without any resolved item are dropped. Clears the entries.
+     */
+    List<ItemInfo> resolve() {
+        Intent main = new Intent(Intent.ACTION_MAIN).addCategory(Intent.CATEGORY_LAUNCHER);
+        HashMap<ComponentName, ResolveInfo> byComponent = new HashMap<>();
+        HashMap<String, ResolveInfo> byPackage = new HashMap<>();
+        for (ResolveInfo ri : pm.queryIntentActivities(main, 0)) {
+            ComponentName cn = new ComponentName(ri.activityInfo.packageName, ri.activityInfo.name);
+            byComponent.put(cn, ri);
+            if (!byPackage.containsKey(cn.getPackageName())) byPackage.put(cn.getPackageName(), ri);
+        }
+
+        ArrayList<ItemInfo> out = new ArrayList<>(entries.size());
+        for (Entry e : entries) {
+            if (e.info.itemType == ItemInfo.ITEM_TYPE_FOLDER) {
+                // folders precede their contents in entries
+                FolderInfo f = new FolderInfo(e.info.title);
+                f.container = e.info.container;
+                f.screen = e.info.screen;
+                f.cellX = e.info.cellX;
+                f.cellY = e.info.cellY;
+                f.spanX = e.info.spanX;
+                f.spanY = e.info.spanY;
+                e.folderInfo = f;
+                out.add(f);
+                continue;
+            }
+            if (!resolveEntry(e, byComponent, byPackage)) {
+                Log.w(TAG, "Skipping unresolved item " + (e.info.title != null ? e.info.title : e.packageName));
+                continue;
+            }
+            if (e.folder != null) {
+                List<ApplicationInfo> contents = e.folder.folderInfo.contents;
+                e.info.cellX = contents.size(); // rank in document order
+                contents.add(e.info);
+            } else {
+                out.add(e.info);
+            }
+        }
+
+        for (int i = out.size() - 1; i >= 0; i--) {
+            ItemInfo item = out.get(i);
+            if (item instanceof FolderInfo && ((FolderInfo) item).contents.isEmpty()) out.remove(i);
+        }
+        entries.clear();
+        return out;
+    }
+
+    private boolean resolveEntry(Entry e, HashMap<ComponentName, ResolveInfo> byComponent,
+                                 HashMap<String, ResolveInfo> byPackage) {
+        if (e.packageName != null) {
+            ResolveInfo ri = e.className != null
+                    ? byComponent.get(new ComponentName(e.packageName, e.className)) : null;
+            if (ri == null) ri = byPackage.get(e.packageName);
+            if (ri == null) return false;
+            Intent launch = new Intent(Intent.ACTION_MAIN)
+                    .addCategory(Intent.CATEGORY_LAUNCHER)
+                    .setComponent(new ComponentName(ri.activityInfo.packageName, ri.activityInfo.name))
+                    .setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_RESET_TASK_IF_NEEDED);
+            if (e.info.intent != null && e.info.intent.getExtras() != null) {
+                launch.putExtras(e.info.intent.getExtras());
+            }
+            e.info.intent = launch;
+            if (e.info.title == null) e.info.title = ri.loadLabel(pm).toString();
+            return true;
+        }
+        return e.info.intent != null
+                && pm.resolveActivity(e.info.intent, PackageManager.MATCH_DEFAULT_ONLY) != null;
+    }
+
+    private static String attr(XmlPullParser parser, String name) {
+        String value = parser.getAttributeValue(NS, name);
+        return value != null ? value : parser.getAttributeValue(null, name);
+    }
+
+    private static int intAttr(XmlPullParser parser, String name, int def) {
+        String value = attr(parser, name);
+        if (value == null) return def;
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return def;
+        }
+    }
+
+    private static void skip(XmlPullParser parser) throws XmlPullParserException, IOException {
+        int depth = parser.getDepth();
+        int type;
+        while (((type = parser.next()) != XmlPullParser.END_TAG || parser.getDepth() > depth)
+                && type != XmlPullParser.END_DOCUMENT) {
+            // consume the element
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.android.bks.launcher;
+
+import android.content.Context;
+import android.content.res.Resources;
+
+/**
+ * DeviceProfile - grid dimensions for the current configuration (see config.xml)
+ */
+public class DeviceProfile {
+    public final int numRows;
+    public final int numColumns;
+    public final int numHotseatIcons;
+
+    public DeviceProfile(Context context) {
+        Resources res = context.getResources();
+        numRows = res.getInteger(R.integer.config_workspaceRows);
+        numColumns = res.getInteger(R.integer.config_workspaceColumns);
+        numHotseatIcons = res.getInteger(R.integer.config_hotseatIcons);
+    }
+}
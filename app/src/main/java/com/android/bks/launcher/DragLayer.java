@@ -1,34 +1,167 @@
 package com.android.bks.launcher;
 
 import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
 import android.util.AttributeSet;
 import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewConfiguration;
 import android.widget.FrameLayout;
 
 import androidx.annotation.Nullable;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * DragLayer - root overlay that intercepts touches; handles swipe-up to reveal All Apps
+ * and drag-and-drop of workspace items.
+ *
+ * While dragging, the dragged view is drawn from a bitmap captured once at drag start,
+ * drop cells are hit-tested against the page grid and a {@link ReorderSolver} pushes
+ * neighbours aside. Nothing is allocated per ACTION_MOVE. Items are only moved within the
+ * page the drag started on; there is no dragging across pages or into the hotseat.
+ * Callers must not rebind the page while {@link #isDragging()}.
  */
 public class DragLayer extends FrameLayout {
 
     public interface OnSwipeUpListener { void onSwipeUp(); }
 
+    public interface DragListener {
+        /**
+         * Copies of the items whose cells changed with the drop, holding the new cells; the
+         * bound items are left alone for the model to replace. The list is only valid
+         * during the call.
+         */
+        void onDrop(List<ItemInfo> movedItems);
+
+        /** The drag ended before the pointer left touch slop, i.e. it was a plain long-press. */
+        void onDragAbandoned(View view);
+
+        /**
+         * Called after every drag, after {@link #onDrop} when there was one; binds held back
+         * during the drag can run.
+         */
+        void onDragEnded();
+    }
+
+    /** Time the reorder solver may spend per frame (half a 120 Hz frame). */
+    private static final long REORDER_BUDGET_NANOS = 4_000_000L;
+
     private OnSwipeUpListener swipeUpListener;
     private float startY;
 
-    public DragLayer(Context ctx) { super(ctx); init(); }
-    public DragLayer(Context ctx, @Nullable AttributeSet attrs) { super(ctx, attrs); init(); }
+    private DragListener dragListener;
+    private final int touchSlop;
+    private float lastTouchX, lastTouchY;
+
+    // drag state
+    private boolean dragging;
+    private boolean dragMoved;
+    private View dragView;
+    private CellLayout dragPage;
+    private float dragX, dragY;
+    private float dragStartX, dragStartY;
+    private float registrationX, registrationY;
+    private final int[] pageOffset = new int[2];
+    private final int[] tmpLocation = new int[2];
+    private int targetCellX = -1, targetCellY = -1;
+    private boolean reorderValid;
+    private final Rect targetRect = new Rect();
+
+    private final ReorderSolver reorderSolver = new ReorderSolver();
+    private final ArrayList<View> previewMovedViews = new ArrayList<>();
+    private final ArrayList<ItemInfo> movedItems = new ArrayList<>();
+
+    private Bitmap dragBitmap;
+    private final Canvas dragCanvas = new Canvas();
+    private final Paint dragPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Paint targetPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+    public DragLayer(Context ctx) { super(ctx); touchSlop = ViewConfiguration.get(ctx).getScaledTouchSlop(); init(); }
+    public DragLayer(Context ctx, @Nullable AttributeSet attrs) { super(ctx, attrs); touchSlop = ViewConfiguration.get(ctx).getScaledTouchSlop(); init(); }
 
     private void init() {
         setClipChildren(false);
         setClipToPadding(false);
+        setWillNotDraw(false);
+        dragPaint.setAlpha(200);
+        targetPaint.setColor(Color.WHITE);
+        targetPaint.setAlpha(60);
     }
 
     public void setOnSwipeUpListener(OnSwipeUpListener l) { this.swipeUpListener = l; }
 
+    public void setDragListener(DragListener l) { this.dragListener = l; }
+
+    public boolean isDragging() { return dragging; }
+
+    /**
+     * Starts dragging a child of the given workspace page from the last touch position.
+     * The view stays in its cell (invisible) until the drop is committed.
+     */
+    public void startDrag(View view, CellLayout page) {
+        if (dragging) return;
+        dragging = true;
+        dragMoved = false;
+        dragView = view;
+        dragPage = page;
+        reorderSolver.prepare(page);
+        previewMovedViews.ensureCapacity(page.getCountX() * page.getCountY());
+
+        // cache the drag image; reuse the bitmap from the previous drag when sizes match
+        int w = Math.max(1, view.getWidth());
+        int h = Math.max(1, view.getHeight());
+        if (dragBitmap == null || dragBitmap.getWidth() != w || dragBitmap.getHeight() != h) {
+            dragBitmap = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
+        } else {
+            dragBitmap.eraseColor(Color.TRANSPARENT);
+        }
+        dragCanvas.setBitmap(dragBitmap);
+        view.draw(dragCanvas);
+        dragCanvas.setBitmap(null);
+
+        getLocationInWindow(tmpLocation);
+        int selfX = tmpLocation[0], selfY = tmpLocation[1];
+        view.getLocationInWindow(tmpLocation);
+        registrationX = lastTouchX - (tmpLocation[0] - selfX);
+        registrationY = lastTouchY - (tmpLocation[1] - selfY);
+        page.getLocationInWindow(pageOffset);
+        pageOffset[0] -= selfX;
+        pageOffset[1] -= selfY;
+
+        dragX = dragStartX = lastTouchX;
+        dragY = dragStartY = lastTouchY;
+        targetCellX = targetCellY = -1;
+        reorderValid = false;
+
+        view.setVisibility(INVISIBLE);
+        invalidate();
+    }
+
+    @Override
+    public boolean onInterceptTouchEvent(MotionEvent ev) {
+        lastTouchX = ev.getX();
+        lastTouchY = ev.getY();
+        if (dragging) {
+            // take the rest of the gesture from the long-pressed child; the intercepted
+            // event itself is not delivered to onTouchEvent, so handle it here
+            handleDragEvent(ev);
+            return true;
+        }
+        return super.onInterceptTouchEvent(ev);
+    }
+
     @Override
     public boolean onTouchEvent(MotionEvent event) {
+        if (dragging) {
+            handleDragEvent(event);
+            return true;
+        }
         switch (event.getActionMasked()) {
             case MotionEvent.ACTION_DOWN:
                 startY = event.getY();
@@ -42,4 +175,147 @@ public class DragLayer extends FrameLayout {
         }
         return super.onTouchEvent(event);
     }
+
+    private void handleDragEvent(MotionEvent event) {
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_MOVE:
+                dragX = event.getX();
+                dragY = event.getY();
+                if (!dragMoved && (Math.abs(dragX - dragStartX) > touchSlop
+                        || Math.abs(dragY - dragStartY) > touchSlop)) {
+                    dragMoved = true;
+                }
+                if (dragMoved) updateDropTarget();
+                invalidate();
+                break;
+            case MotionEvent.ACTION_UP:
+                if (dragMoved) {
+                    updateDropTarget();
+                    commitDrop();
+                } else {
+                    endDrag(false);
+                }
+                break;
+            case MotionEvent.ACTION_CANCEL:
+                revertReorderPreview();
+                endDrag(true);
+                break;
+        }
+    }
+
+    /** Hit-tests the center of the drag image against the page grid; re-solves only when the cell changes. */
+    private void updateDropTarget() {
+        CellLayout.LayoutParams lp = (CellLayout.LayoutParams) dragView.getLayoutParams();
+        int cellW = dragPage.getCellWidth();
+        int cellH = dragPage.getCellHeight();
+        if (cellW <= 0 || cellH <= 0) return;
+
+        float centerX = dragX - registrationX + dragView.getWidth() / 2f - pageOffset[0] - dragPage.getPaddingLeft();
+        float centerY = dragY - registrationY + dragView.getHeight() / 2f - pageOffset[1] - dragPage.getPaddingTop();
+        int cellX = clamp((int) (centerX / cellW) - (lp.cellHSpan - 1) / 2, 0, dragPage.getCountX() - lp.cellHSpan);
+        int cellY = clamp((int) (centerY / cellH) - (lp.cellVSpan - 1) / 2, 0, dragPage.getCountY() - lp.cellVSpan);
+        if (cellX == targetCellX && cellY == targetCellY) return;
+        targetCellX = cellX;
+        targetCellY = cellY;
+
+        revertReorderPreview();
+        reorderValid = reorderSolver.solve(dragPage, dragView, cellX, cellY,
+                lp.cellHSpan, lp.cellVSpan, System.nanoTime() + REORDER_BUDGET_NANOS);
+        if (reorderValid) {
+            for (int i = 0; i < reorderSolver.getMoveCount(); i++) {
+                View v = reorderSolver.getMovedView(i);
+                CellLayout.LayoutParams vlp = (CellLayout.LayoutParams) v.getLayoutParams();
+                dragPage.moveChildToCell(v, reorderSolver.getMovedCellX(i), reorderSolver.getMovedCellY(i),
+                        vlp.cellHSpan, vlp.cellVSpan);
+                previewMovedViews.add(v);
+            }
+        } else {
+            // out of budget or no room: try again when the pointer reaches another cell
+            targetCellX = targetCellY = -1;
+        }
+
+        int left = pageOffset[0] + dragPage.getPaddingLeft() + cellX * cellW;
+        int top = pageOffset[1] + dragPage.getPaddingTop() + cellY * cellH;
+        targetRect.set(left, top, left + lp.cellHSpan * cellW, top + lp.cellVSpan * cellH);
+    }
+
+    /** Puts previewed neighbours back into the cells stored in their items. */
+    private void revertReorderPreview() {
+        for (int i = 0; i < previewMovedViews.size(); i++) {
+            View v = previewMovedViews.get(i);
+            ItemInfo info = (ItemInfo) v.getTag();
+            if (info != null) {
+                dragPage.moveChildToCell(v, info.cellX, info.cellY, info.spanX, info.spanY);
+            }
+        }
+        previewMovedViews.clear();
+        reorderSolver.clear();
+    }
+
+    private void commitDrop() {
+        ItemInfo dragInfo = (ItemInfo) dragView.getTag();
+        if (!reorderValid || dragInfo == null || targetCellX < 0) {
+            revertReorderPreview();
+            endDrag(true);
+            return;
+        }
+
+        // the tags are the items the model published and may still read; changes go out as copies
+        movedItems.clear();
+        if (dragInfo.cellX != targetCellX || dragInfo.cellY != targetCellY) {
+            dragPage.moveChildToCell(dragView, targetCellX, targetCellY, dragInfo.spanX, dragInfo.spanY);
+            ItemInfo moved = dragInfo.copyPosition();
+            moved.cellX = targetCellX;
+            moved.cellY = targetCellY;
+            movedItems.add(moved);
+        }
+        for (int i = 0; i < previewMovedViews.size(); i++) {
+            View v = previewMovedViews.get(i);
+            ItemInfo info = (ItemInfo) v.getTag();
+            CellLayout.LayoutParams lp = (CellLayout.LayoutParams) v.getLayoutParams();
+            if (info != null && (info.cellX != lp.cellX || info.cellY != lp.cellY)) {
+                ItemInfo moved = info.copyPosition();
+                moved.cellX = lp.cellX;
+                moved.cellY = lp.cellY;
+                movedItems.add(moved);
+            }
+        }
+        previewMovedViews.clear();
+        reorderSolver.clear();
+
+        if (!movedItems.isEmpty() && dragListener != null) {
+            dragListener.onDrop(movedItems);
+        }
+        movedItems.clear();
+        endDrag(true);
+    }
+
+    private void endDrag(boolean moved) {
+        View view = dragView;
+        dragging = false;
+        dragView.setVisibility(VISIBLE);
+        dragView = null;
+        dragPage = null;
+        targetRect.setEmpty();
+        invalidate();
+        if (dragListener != null) {
+            if (!moved) dragListener.onDragAbandoned(view);
+            dragListener.onDragEnded();
+        }
+    }
+
+    @Override
+    protected void dispatchDraw(Canvas canvas) {
+        super.dispatchDraw(canvas);
+        if (dragging && dragBitmap != null) {
+            if (!targetRect.isEmpty()) {
+                canvas.drawRect(targetRect, targetPaint);
+            }
+            canvas.drawBitmap(dragBitmap, dragX - registrationX, dragY - registrationY, dragPaint);
+        }
+    }
+
+    private static int clamp(int v, int min, int max) {
+        return Math.max(min, Math.min(v, max));
+    }
 }
@@ -0,0 +1,86 @@
+package com.android.bks.launcher;
+
+import android.content.Context;
+import android.graphics.Color;
+import android.view.Gravity;
+import android.view.View;
+import android.widget.FrameLayout;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+
+/**
+ * Folder - open folder panel. Built when a FolderIcon is opened and torn down again
+ * on close, so closed folders hold no views for their contents.
+ */
+public class Folder extends FrameLayout {
+
+    private static final int CELL_WIDTH_DP = 80;
+    private static final int CELL_HEIGHT_DP = 96;
+
+    private final CellLayout content;
+    private final TextView title;
+    private final BubbleTextViewPool viewPool;
+    private FolderIcon folderIcon;
+
+    public Folder(Context ctx, BubbleTextViewPool viewPool) {
+        super(ctx);
+        this.viewPool = viewPool;
+        setBackgroundColor(0x88000000); // scrim; tapping it closes the folder
+
+        LinearLayout panel = new LinearLayout(ctx);
+        panel.setOrientation(LinearLayout.VERTICAL);
+        panel.setBackgroundColor(0xEE333333);
+        panel.setClickable(true); // keep taps on the panel from reaching the scrim
+        int pad = dp(12);
+        panel.setPadding(pad, pad, pad, pad);
+
+        title = new TextView(ctx);
+        title.setTextColor(Color.WHITE);
+        title.setGravity(Gravity.CENTER_HORIZONTAL);
+        panel.addView(title, new LinearLayout.LayoutParams(
+                LinearLayout.LayoutParams.MATCH_PARENT, LinearLayout.LayoutParams.WRAP_CONTENT));
+
+        content = new CellLayout(ctx);
+        content.setBackground(null);
+        panel.addView(content, new LinearLayout.LayoutParams(0, 0));
+
+        addView(panel, new LayoutParams(LayoutParams.WRAP_CONTENT, LayoutParams.WRAP_CONTENT,
+                Gravity.CENTER));
+    }
+
+    /** Lays the folder items out row by row, sized to the number of items. */
+    public void bind(FolderIcon icon, View.OnClickListener itemClickListener) {
+        folderIcon = icon;
+        FolderInfo info = icon.getFolderInfo();
+        title.setText(info.title);
+
+        int columns = content.getCountX();
+        int n = info.contents.size();
+        int cols = Math.max(1, Math.min(columns, n));
+        int rows = Math.max(1, (n + cols - 1) / cols);
+        content.setGridSize(cols, rows);
+        LinearLayout.LayoutParams lp = (LinearLayout.LayoutParams) content.getLayoutParams();
+        lp.width = cols * dp(CELL_WIDTH_DP);
+        lp.height = rows * dp(CELL_HEIGHT_DP);
+        content.setLayoutParams(lp);
+
+        for (int i = 0; i < n; i++) {
+            BubbleTextView btv = viewPool.acquire();
+            btv.applyFromApplicationInfo(info.contents.get(i), false);
+            btv.setOnClickListener(itemClickListener);
+            content.addViewToCell(btv, i % cols, i / cols);
+        }
+    }
+
+    public FolderIcon getFolderIcon() {
+        return folderIcon;
+    }
+
+    /** Hands the item views back to the pool; the folder must not be reused afterwards. */
+    public void recycle() {
+        viewPool.recycleChildren(content);
+        folderIcon = null;
+    }
+
+    private int dp(int v) { return Math.round(v * getResources().getDisplayMetrics().density); }
+}
@@ -1,56 +1,192 @@
 package com.android.bks.launcher;
 
 import android.content.Context;
+import android.content.res.TypedArray;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+import android.text.TextPaint;
+import android.text.TextUtils;
 import android.util.AttributeSet;
-import android.view.ViewGroup;
-import android.widget.LinearLayout;
+import android.util.TypedValue;
+import android.view.View;
 
 import androidx.annotation.Nullable;
 
 import java.util.List;
 
-public class FolderIcon extends LinearLayout {
+/**
+ * FolderIcon - workspace icon of a folder. Draws a cached preview bitmap of the first
+ * few items plus the folder title; the preview is only regenerated when those items
+ * change. The folder's full content view ({@link Folder}) is built only when opened.
+ */
+public class FolderIcon extends View {
+
+    /** Items shown in the preview, laid out 2x2. */
+    private static final int PREVIEW_ITEMS = 4;
+    private static final int ICON_SIZE_DP = 48;
+    private static final int PADDING_DP = 6;
+    private static final int LABEL_GAP_DP = 4;
+    private static final int LABEL_SIZE_SP = 14;
 
     private FolderInfo folderInfo;
 
+    private final TextPaint labelPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint bitmapPaint = new Paint(Paint.FILTER_BITMAP_FLAG | Paint.ANTI_ALIAS_FLAG);
+    private final Rect previewBounds = new Rect();
+    private final int iconSize;
+    private final int labelGap;
+    private final int labelHeight;
+    private final int labelAscent;
+
+    private Bitmap preview;
+    // ids and icons the current preview was drawn from
+    private final long[] previewIds = new long[PREVIEW_ITEMS];
+    private final Bitmap[] previewIcons = new Bitmap[PREVIEW_ITEMS];
+    private int previewCount = -1;
+
+    private CharSequence drawnLabel = "";
+    private float drawnLabelX;
+    private int labelBaseline;
+
     public FolderIcon(Context ctx) {
-        super(ctx);
-        folderInfo = new FolderInfo("Google");
-        init();
+        this(ctx, null);
     }
 
     public FolderIcon(Context ctx, @Nullable AttributeSet attrs) {
         super(ctx, attrs);
         folderInfo = new FolderInfo("Google");
-        init();
-    }
+        int pad = dp(PADDING_DP);
+        setPadding(pad, pad, pad, pad);
+        iconSize = dp(ICON_SIZE_DP);
+        labelGap = dp(LABEL_GAP_DP);
 
-    private void init() {
-        setOrientation(VERTICAL);
+        labelPaint.setTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP,
+                LABEL_SIZE_SP, getResources().getDisplayMetrics()));
+        TypedArray a = ctx.obtainStyledAttributes(new int[]{android.R.attr.textColorPrimary});
+        labelPaint.setColor(a.getColor(0, Color.WHITE));
+        a.recycle();
+        Paint.FontMetricsInt fm = labelPaint.getFontMetricsInt();
+        labelAscent = -fm.ascent;
+        labelHeight = fm.descent - fm.ascent;
+        setClickable(true);
     }
 
     public void setTitle(String title) {
         folderInfo.title = title;
+        setContentDescription(title);
+        updateLabel(getWidth());
+        invalidate();
     }
 
     public void setContents(List<ApplicationInfo> apps) {
         folderInfo.contents.clear();
         if (apps != null) folderInfo.contents.addAll(apps);
-        populateFolderApps();
-    }
-
-    private void populateFolderApps() {
-        removeAllViews();
-        for (ApplicationInfo ai : folderInfo.contents) {
-            BubbleTextView btv = new BubbleTextView(getContext());
-            btv.applyFromApplicationInfo(ai, false);
-            addView(btv, new ViewGroup.LayoutParams(
-                    ViewGroup.LayoutParams.WRAP_CONTENT,
-                    ViewGroup.LayoutParams.WRAP_CONTENT));
+        if (previewChanged()) {
+            updatePreview();
+            invalidate();
         }
     }
 
     public FolderInfo getFolderInfo() {
         return folderInfo;
     }
+
+    private boolean previewChanged() {
+        int count = Math.min(PREVIEW_ITEMS, folderInfo.contents.size());
+        if (preview == null || count != previewCount) return true;
+        for (int i = 0; i < count; i++) {
+            ApplicationInfo ai = folderInfo.contents.get(i);
+            if (ai.id != previewIds[i] || ai.icon != previewIcons[i]) return true;
+        }
+        return false;
+    }
+
+    private void updatePreview() {
+        if (preview == null) {
+            preview = Bitmap.createBitmap(iconSize, iconSize, Bitmap.Config.ARGB_8888);
+        } else {
+            preview.eraseColor(Color.TRANSPARENT);
+        }
+        Canvas canvas = new Canvas(preview);
+
+        Paint bg = new Paint(Paint.ANTI_ALIAS_FLAG);
+        bg.setColor(0xCCFFFFFF);
+        float radius = iconSize / 4f;
+        canvas.drawRoundRect(new RectF(0, 0, iconSize, iconSize), radius, radius, bg);
+
+        int count = Math.min(PREVIEW_ITEMS, folderInfo.contents.size());
+        int inset = iconSize / 10;
+        int cell = (iconSize - inset * 3) / 2;
+        Rect dst = new Rect();
+        Drawable fallback = null;
+        for (int i = 0; i < count; i++) {
+            ApplicationInfo ai = folderInfo.contents.get(i);
+            int left = inset + (i % 2) * (cell + inset);
+            int top = inset + (i / 2) * (cell + inset);
+            dst.set(left, top, left + cell, top + cell);
+            if (ai.icon != null) {
+                canvas.drawBitmap(ai.icon, null, dst, bitmapPaint);
+            } else {
+                if (fallback == null) {
+                    fallback = getContext().getDrawable(android.R.drawable.sym_def_app_icon);
+                }
+                fallback.setBounds(dst);
+                fallback.draw(canvas);
+            }
+            previewIds[i] = ai.id;
+            previewIcons[i] = ai.icon;
+        }
+        for (int i = count; i < PREVIEW_ITEMS; i++) previewIcons[i] = null;
+        previewCount = count;
+    }
+
+    private void updateLabel(int width) {
+        int avail = width - getPaddingLeft() - getPaddingRight();
+        String title = folderInfo.title != null ? folderInfo.title : "";
+        if (avail <= 0) {
+            drawnLabel = "";
+            return;
+        }
+        drawnLabel = TextUtils.ellipsize(title, labelPaint, avail, TextUtils.TruncateAt.END);
+        drawnLabelX = getPaddingLeft()
+                + (avail - labelPaint.measureText(drawnLabel, 0, drawnLabel.length())) / 2f;
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int w = resolveSize(iconSize + getPaddingLeft() + getPaddingRight(), widthMeasureSpec);
+        int h = resolveSize(iconSize + labelGap + labelHeight + getPaddingTop() + getPaddingBottom(),
+                heightMeasureSpec);
+        setMeasuredDimension(w, h);
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        int availW = w - getPaddingLeft() - getPaddingRight();
+        int availH = h - getPaddingTop() - getPaddingBottom();
+        int size = Math.max(0, Math.min(iconSize, Math.min(availW, availH - labelGap - labelHeight)));
+        int top = getPaddingTop() + Math.max(0, (availH - size - labelGap - labelHeight) / 2);
+        int left = getPaddingLeft() + (availW - size) / 2;
+        previewBounds.set(left, top, left + size, top + size);
+        labelBaseline = previewBounds.bottom + labelGap + labelAscent;
+        updateLabel(w);
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        if (preview != null) {
+            canvas.drawBitmap(preview, null, previewBounds, bitmapPaint);
+        }
+        if (drawnLabel.length() > 0) {
+            canvas.drawText(drawnLabel, 0, drawnLabel.length(), drawnLabelX, labelBaseline, labelPaint);
+        }
+    }
+
+    private int dp(int v) { return Math.round(v * getResources().getDisplayMetrics().density); }
 }
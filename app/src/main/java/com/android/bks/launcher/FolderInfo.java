@@ -10,5 +10,8 @@ public class FolderInfo extends ItemInfo {
     public String title;
     public List<ApplicationInfo> contents = new ArrayList<>();
 
-    public FolderInfo(String title) { this.title = title; }
+    public FolderInfo(String title) {
+        this.title = title;
+        this.itemType = ITEM_TYPE_FOLDER;
+    }
 }
@@ -0,0 +1,92 @@
+package com.android.bks.launcher;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.view.Display;
+import android.view.FrameMetrics;
+import android.view.Window;
+
+import java.io.PrintWriter;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * FrameMetricsTracker - collects per-frame durations of the launcher window and attributes
+ * them to the launcher state active when the frame was drawn (workspace idle, page swipe,
+ * All Apps open/fling, search). Keeps a frame-duration histogram and a jank count per state.
+ */
+public class FrameMetricsTracker {
+
+    public static final int STATE_WORKSPACE_IDLE = 0;
+    public static final int STATE_PAGE_SWIPE = 1;
+    public static final int STATE_ALL_APPS_OPEN = 2;
+    public static final int STATE_ALL_APPS_FLING = 3;
+    public static final int STATE_SEARCH = 4;
+    private static final String[] STATE_NAMES = {
+            "workspace_idle", "page_swipe", "all_apps_open", "all_apps_fling", "search"};
+
+    /** Frame duration buckets (ms), fine-grained around common refresh budgets. */
+    private static final long[] FRAME_BOUNDS_MS = {4, 8, 12, 16, 20, 25, 33, 50, 100, 250, 500};
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[STATE_NAMES.length];
+    private final AtomicLongArray jankFrames = new AtomicLongArray(STATE_NAMES.length);
+    private volatile int state = STATE_WORKSPACE_IDLE;
+    private long frameBudgetNanos = 16_666_667L;
+
+    private Window window;
+    private HandlerThread thread;
+
+    private final Window.OnFrameMetricsAvailableListener listener = (w, metrics, dropCount) -> {
+        long total = metrics.getMetric(FrameMetrics.TOTAL_DURATION);
+        int s = state;
+        histograms[s].record((total + 999_999L) / 1_000_000L);
+        if (total > frameBudgetNanos) {
+            jankFrames.incrementAndGet(s);
+        }
+    };
+
+    public FrameMetricsTracker() {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram(FRAME_BOUNDS_MS);
+        }
+    }
+
+    public void start(Window w) {
+        if (window != null) return;
+        window = w;
+        Display display = w.getDecorView().getDisplay();
+        if (display != null && display.getRefreshRate() > 0) {
+            frameBudgetNanos = (long) (1_000_000_000L / display.getRefreshRate());
+        }
+        thread = new HandlerThread("frame-metrics", Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        w.addOnFrameMetricsAvailableListener(listener, new Handler(thread.getLooper()));
+    }
+
+    public void stop() {
+        if (window == null) return;
+        window.removeOnFrameMetricsAvailableListener(listener);
+        thread.quitSafely();
+        window = null;
+        thread = null;
+    }
+
+    public void setState(int newState) {
+        state = newState;
+    }
+
+    public int getState() { return state; }
+
+    public LatencyHistogram getHistogram(int forState) { return histograms[forState]; }
+
+    public long getJankFrames(int forState) { return jankFrames.get(forState); }
+
+    public void dump(String prefix, PrintWriter pw) {
+        pw.println(prefix + "FrameMetrics: budget=" + (frameBudgetNanos / 1000) + "us"
+                + " state=" + STATE_NAMES[state]);
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i].dump(prefix + "  ", STATE_NAMES[i], pw);
+            pw.println(prefix + "    jank=" + jankFrames.get(i));
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.android.bks.launcher;
+
+/**
+ * GridOccupancy - occupancy bitmap of a cell grid, one long bit mask per row
+ * (so at most 64 columns). Single cell checks are O(1), region checks O(spanY).
+ */
+public class GridOccupancy {
+
+    private final int countX;
+    private final int countY;
+    private final long[] rows;
+
+    public GridOccupancy(int countX, int countY) {
+        if (countX > 64) throw new IllegalArgumentException("Too many columns: " + countX);
+        this.countX = countX;
+        this.countY = countY;
+        this.rows = new long[countY];
+    }
+
+    public int getCountX() { return countX; }
+
+    public int getCountY() { return countY; }
+
+    public boolean isOccupied(int x, int y) {
+        if (x < 0 || y < 0 || x >= countX || y >= countY) return true;
+        return (rows[y] & (1L << x)) != 0;
+    }
+
+    public void markCells(int x, int y, int spanX, int spanY, boolean value) {
+        int x0 = Math.max(0, x);
+        int x1 = Math.min(countX, x + spanX);
+        if (x1 <= x0) return;
+        long mask = spanMask(x0, x1 - x0);
+        for (int r = Math.max(0, y); r < Math.min(countY, y + spanY); r++) {
+            if (value) rows[r] |= mask;
+            else rows[r] &= ~mask;
+        }
+    }
+
+    public boolean isRegionVacant(int x, int y, int spanX, int spanY) {
+        if (x < 0 || y < 0 || x + spanX > countX || y + spanY > countY) return false;
+        long mask = spanMask(x, spanX);
+        for (int r = y; r < y + spanY; r++) {
+            if ((rows[r] & mask) != 0) return false;
+        }
+        return true;
+    }
+
+    public void clear() {
+        for (int r = 0; r < countY; r++) rows[r] = 0;
+    }
+
+    public void copyTo(GridOccupancy dest) {
+        System.arraycopy(rows, 0, dest.rows, 0, Math.min(countY, dest.countY));
+    }
+
+    /**
+     * Finds the vacant spanX x spanY area whose top-left cell is closest to (cellX, cellY).
+     * Writes the result into out[0], out[1] and returns false if the grid has no such area.
+     */
+    public boolean findNearestVacantArea(int cellX, int cellY, int spanX, int spanY, int[] out) {
+        long bestDist = Long.MAX_VALUE;
+        for (int y = 0; y + spanY <= countY; y++) {
+            int dy = y - cellY;
+            if ((long) dy * dy >= bestDist) continue;
+            for (int x = 0; x + spanX <= countX; x++) {
+                int dx = x - cellX;
+                long dist = (long) dx * dx + (long) dy * dy;
+                if (dist < bestDist && isRegionVacant(x, y, spanX, spanY)) {
+                    bestDist = dist;
+                    out[0] = x;
+                    out[1] = y;
+                    if (dist == 0) return true;
+                }
+            }
+        }
+        return bestDist != Long.MAX_VALUE;
+    }
+
+    /** Vacant area closest to the top-left corner, or false if there is none. */
+    public boolean findVacantArea(int spanX, int spanY, int[] out) {
+        return findNearestVacantArea(0, 0, spanX, spanY, out);
+    }
+
+    private static long spanMask(int x, int spanX) {
+        long bits = spanX >= 64 ? -1L : (1L << spanX) - 1;
+        return bits << x;
+    }
+}
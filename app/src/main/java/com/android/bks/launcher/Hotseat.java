@@ -2,49 +2,80 @@ package com.android.bks.launcher;
 
 import android.content.Context;
 import android.util.AttributeSet;
+import android.view.View;
 import android.widget.FrameLayout;
 import android.widget.LinearLayout;
 
 import java.util.List;
 
 /**
- * Hotseat - fixed bottom row (4 slots)
+ * Hotseat - fixed bottom row (slot count from DeviceProfile)
  */
 public class Hotseat extends FrameLayout {
 
-    public static final int NUM = 4; // Number of icons in the hotseat
+    private final int numSlots; // Number of icons in the hotseat
 
     public Hotseat(Context context) {
 
         super(context);
+        numSlots = new DeviceProfile(context).numHotseatIcons;
     }
 
     public Hotseat(Context context, AttributeSet attrs) {
         super(context, attrs);
+        numSlots = new DeviceProfile(context).numHotseatIcons;
     }
 
     public Hotseat(Context context, AttributeSet attrs, int defStyleAttr) {
         super(context, attrs, defStyleAttr);
+        numSlots = new DeviceProfile(context).numHotseatIcons;
     }
 
+    public int getNumSlots() { return numSlots; }
 
 
-    public void bindApps(List<ApplicationInfo> apps) {
-        removeAllViews();
-        for (int i = 0; i < NUM; i++) {
-            if (i < apps.size()) {
-                ApplicationInfo app = apps.get(i);
-                BubbleTextView btv = new BubbleTextView(getContext());
-                btv.applyFromApplicationInfo(app, false);
-                LinearLayout.LayoutParams lp = new LinearLayout.LayoutParams(0,
-                        LinearLayout.LayoutParams.WRAP_CONTENT, 1f);
 
-                addView(btv, lp);
+    /**
+     * Reconciles the hotseat slots with the given apps. Slots that still hold the same
+     * item are only updated, items that changed slot are moved, and views for items
+     * that left the hotseat are recycled.
+     */
+    public void bindApps(List<ApplicationInfo> apps, ItemViewBinder binder) {
+        int count = Math.min(numSlots, apps.size());
+        for (int i = 0; i < count; i++) {
+            ApplicationInfo app = apps.get(i);
+            View existing = i < getChildCount() ? getChildAt(i) : null;
+            ItemInfo bound = existing != null ? (ItemInfo) existing.getTag() : null;
+            if (bound != null && bound.id == app.id) {
+                if (bound != app) binder.updateView(existing, app);
+                continue;
+            }
+
+            View view = findViewForItem(app.id, i + 1);
+            if (view != null) {
+                removeView(view);
             } else {
-                // placeholder empty slot
-                //LinearLayout.LayoutParams lp = new LinearLayout.LayoutParams(0, LinearLayout.LayoutParams.WRAP_CONTENT, 1f);
-                //addView(new android.view.View(getContext()), lp);
+                view = binder.createView(app);
             }
+            LinearLayout.LayoutParams lp = new LinearLayout.LayoutParams(0,
+                    LinearLayout.LayoutParams.WRAP_CONTENT, 1f);
+            addView(view, i, lp);
+            if (view.getTag() != app) binder.updateView(view, app);
+        }
+
+        while (getChildCount() > count) {
+            View extra = getChildAt(count);
+            removeViewAt(count);
+            binder.recycleView(extra);
+        }
+    }
+
+    private View findViewForItem(long id, int fromIndex) {
+        for (int i = fromIndex; i < getChildCount(); i++) {
+            View child = getChildAt(i);
+            ItemInfo info = (ItemInfo) child.getTag();
+            if (info != null && info.id == id) return child;
         }
+        return null;
     }
 }
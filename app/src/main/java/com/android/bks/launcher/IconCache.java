@@ -2,6 +2,7 @@ package com.android.bks.launcher;
 
 import android.content.ComponentName;
 import android.content.Context;
+import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.content.pm.ResolveInfo;
 import android.graphics.Bitmap;
@@ -11,15 +12,43 @@ import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
 
 public class IconCache {
+    private static final MetricsRegistry.Counter HITS = MetricsRegistry.get().counter("icon_cache.hits");
+    private static final MetricsRegistry.Counter MISSES = MetricsRegistry.get().counter("icon_cache.misses");
+    private static final MetricsRegistry.Gauge BYTES = MetricsRegistry.get().gauge("icon_cache.bytes");
+    private static final MetricsRegistry.Gauge ENTRIES = MetricsRegistry.get().gauge("icon_cache.entries");
+
     private final PackageManager mPm;
     private final HashMap<ComponentName, Bitmap> mCache = new HashMap<>();
+    // null for the apps' own icons
+    private IconTheme mTheme;
+    private IconThemePipeline mThemePipeline;
 
     public IconCache(Context context) {
         mPm = context.getPackageManager();
     }
 
+    /**
+     * Returns the icon of the activity intent launches, or null when nothing handles it.
+     * Resolves the intent only on a cache miss.
+     */
+    public Bitmap getIcon(Intent intent) {
+        ComponentName cn = intent.getComponent();
+        if (cn != null) {
+            synchronized (this) {
+                Bitmap b = mCache.get(cn);
+                if (b != null) {
+                    HITS.inc();
+                    return b;
+                }
+            }
+        }
+        return getIcon(mPm.resolveActivity(intent, 0));
+    }
+
     /**
      * Returns a bitmap for the given ResolveInfo. Caches by ComponentName.
      */
@@ -28,14 +57,57 @@ public class IconCache {
 
         ComponentName cn = new ComponentName(ri.activityInfo.packageName, ri.activityInfo.name);
         Bitmap b = mCache.get(cn);
-        if (b != null) return b;
+        if (b != null) {
+            HITS.inc();
+            return b;
+        }
+        MISSES.inc();
 
-        Drawable d = ri.loadIcon(mPm);
-        b = drawableToBitmap(d);
-        mCache.put(cn, b);
+        if (mTheme != null) {
+            b = mThemePipeline.getIcon(mTheme, ri);
+        } else {
+            b = drawableToBitmap(ri.loadIcon(mPm));
+        }
+        if (b != null) {
+            mCache.put(cn, b);
+            BYTES.add(b.getAllocationByteCount());
+            ENTRIES.set(mCache.size());
+        }
         return b;
     }
 
+    /** Drops the icons of packageName, e.g. after the app was updated or removed. */
+    public synchronized void removePackage(String packageName) {
+        long bytes = 0;
+        for (Iterator<Map.Entry<ComponentName, Bitmap>> it = mCache.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<ComponentName, Bitmap> e = it.next();
+            if (e.getKey().getPackageName().equals(packageName)) {
+                bytes += e.getValue().getAllocationByteCount();
+                it.remove();
+            }
+        }
+        BYTES.add(-bytes);
+        ENTRIES.set(mCache.size());
+    }
+
+    /**
+     * Replaces the cached icons with those rendered by the pipeline for theme; later misses
+     * go through the pipeline too. A null theme goes back to the apps' own icons.
+     */
+    public synchronized void setTheme(IconTheme theme, IconThemePipeline pipeline,
+                                      Map<ComponentName, Bitmap> icons) {
+        mTheme = theme;
+        mThemePipeline = pipeline;
+        mCache.clear();
+        long bytes = 0;
+        if (theme != null) {
+            mCache.putAll(icons);
+            for (Bitmap b : icons.values()) bytes += b.getAllocationByteCount();
+        }
+        BYTES.set(bytes);
+        ENTRIES.set(mCache.size());
+    }
+
     private Bitmap drawableToBitmap(Drawable drawable) {
         if (drawable == null) return null;
 
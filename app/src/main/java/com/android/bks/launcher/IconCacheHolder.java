@@ -4,6 +4,7 @@ import android.content.Context;
 
 public final class IconCacheHolder {
     private static volatile IconCache sIconCache;
+    private static volatile IconThemePipeline sThemePipeline;
 
     public static IconCache get(Context ctx) {
         if (sIconCache == null) {
@@ -15,4 +16,15 @@ public final class IconCacheHolder {
         }
         return sIconCache;
     }
+
+    public static IconThemePipeline getThemePipeline(Context ctx) {
+        if (sThemePipeline == null) {
+            synchronized (IconCacheHolder.class) {
+                if (sThemePipeline == null) {
+                    sThemePipeline = new IconThemePipeline(ctx.getApplicationContext());
+                }
+            }
+        }
+        return sThemePipeline;
+    }
 }
@@ -0,0 +1,145 @@
+package com.android.bks.launcher;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.content.pm.PackageManager;
+import android.content.pm.ResolveInfo;
+import android.content.res.Resources;
+import android.content.res.XmlResourceParser;
+import android.graphics.drawable.Drawable;
+import android.util.Log;
+
+import org.xmlpull.v1.XmlPullParser;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+
+/**
+ * IconTheme - how app icons are transformed: an optional icon pack (appfilter.xml mapping
+ * of components to drawables), a mask shape, a tint and a drop shadow. {@link #id}
+ * identifies the rendered results on disk, so it must change whenever any of the other
+ * settings do.
+ */
+public class IconTheme {
+    private static final String TAG = "HOMETEST_IconTheme";
+
+    public static final int MASK_NONE = 0;
+    public static final int MASK_CIRCLE = 1;
+    public static final int MASK_ROUNDED_SQUARE = 2;
+
+    private static final String PREFS = "icon_theme";
+    /** Activity action icon packs declare; their appfilter.xml maps components to icons. */
+    private static final String ACTION_ICON_PACK = "org.adw.launcher.THEMES";
+
+    public final String id;
+    /** Package of the icon pack, or null to start from the app's own icon. */
+    public final String iconPack;
+    public final int mask;
+    /** ARGB multiplied into the icon, or 0 for no tint. */
+    public final int tint;
+    public final boolean shadow;
+
+    // icon pack mapping, loaded by loadIconPack()
+    private Resources packResources;
+    private HashMap<String, Integer> packDrawables;
+
+    public IconTheme(String id, String iconPack, int mask, int tint, boolean shadow) {
+        this.id = id;
+        this.iconPack = iconPack;
+        this.mask = mask;
+        this.tint = tint;
+        this.shadow = shadow;
+    }
+
+    /** The theme last saved with {@link #save}, or null for the plain app icons. */
+    public static IconTheme load(Context ctx) {
+        SharedPreferences prefs = ctx.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+        String id = prefs.getString("id", null);
+        if (id == null) return null;
+        return new IconTheme(id, prefs.getString("icon_pack", null), prefs.getInt("mask", MASK_NONE),
+                prefs.getInt("tint", 0), prefs.getBoolean("shadow", false));
+    }
+
+    /**
+     * The themes the launcher offers, by label: the built-in masks, then each installed
+     * icon pack as is.
+     */
+    public static LinkedHashMap<String, IconTheme> getAvailable(Context ctx) {
+        LinkedHashMap<String, IconTheme> themes = new LinkedHashMap<>();
+        themes.put("Circles", new IconTheme("circle", null, MASK_CIRCLE, 0, true));
+        themes.put("Rounded squares", new IconTheme("rounded", null, MASK_ROUNDED_SQUARE, 0, true));
+        PackageManager pm = ctx.getPackageManager();
+        for (ResolveInfo ri : pm.queryIntentActivities(new Intent(ACTION_ICON_PACK), 0)) {
+            String pack = ri.activityInfo.packageName;
+            themes.put(ri.loadLabel(pm).toString(), new IconTheme("pack_" + pack, pack, MASK_NONE, 0, false));
+        }
+        return themes;
+    }
+
+    /** Saves theme, or clears the saved one when it is null. */
+    public static void save(Context ctx, IconTheme theme) {
+        SharedPreferences.Editor editor = ctx.getSharedPreferences(PREFS, Context.MODE_PRIVATE).edit().clear();
+        if (theme != null) {
+            editor.putString("id", theme.id)
+                    .putString("icon_pack", theme.iconPack)
+                    .putInt("mask", theme.mask)
+                    .putInt("tint", theme.tint)
+                    .putBoolean("shadow", theme.shadow);
+        }
+        editor.apply();
+    }
+
+    /**
+     * Reads the icon pack's appfilter.xml. Call once, off the main thread, before
+     * {@link #getPackIcon}; a missing or broken pack leaves every icon unmapped.
+     */
+    synchronized void loadIconPack(PackageManager pm) {
+        if (packDrawables != null) return;
+        packDrawables = new HashMap<>();
+        if (iconPack == null) return;
+        try {
+            packResources = pm.getResourcesForApplication(iconPack);
+        } catch (PackageManager.NameNotFoundException e) {
+            Log.w(TAG, "icon pack not installed: " + iconPack);
+            return;
+        }
+        int xmlId = packResources.getIdentifier("appfilter", "xml", iconPack);
+        if (xmlId == 0) {
+            Log.w(TAG, "icon pack has no appfilter.xml: " + iconPack);
+            return;
+        }
+        try (XmlResourceParser parser = packResources.getXml(xmlId)) {
+            for (int type = parser.getEventType(); type != XmlPullParser.END_DOCUMENT; type = parser.next()) {
+                if (type != XmlPullParser.START_TAG || !"item".equals(parser.getName())) continue;
+                String component = parser.getAttributeValue(null, "component");
+                String drawable = parser.getAttributeValue(null, "drawable");
+                ComponentName cn = parseComponent(component);
+                if (cn == null || drawable == null) continue;
+                int resId = packResources.getIdentifier(drawable, "drawable", iconPack);
+                if (resId != 0) packDrawables.put(cn.flattenToString(), resId);
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "cannot read appfilter.xml of " + iconPack, e);
+        }
+        Log.i(TAG, "icon pack " + iconPack + ": " + packDrawables.size() + " icons");
+    }
+
+    /** The pack's drawable for cn, or null when the pack does not cover it. */
+    Drawable getPackIcon(ComponentName cn, int density) {
+        Integer resId = packDrawables != null ? packDrawables.get(cn.flattenToString()) : null;
+        if (resId == null) return null;
+        try {
+            return packResources.getDrawableForDensity(resId, density, null);
+        } catch (Resources.NotFoundException e) {
+            return null;
+        }
+    }
+
+    /** appfilter components look like "ComponentInfo{com.example/com.example.Main}". */
+    private static ComponentName parseComponent(String s) {
+        if (s == null || !s.startsWith("ComponentInfo{") || !s.endsWith("}")) return null;
+        return ComponentName.unflattenFromString(s.substring("ComponentInfo{".length(), s.length() - 1));
+    }
+}
@@ -0,0 +1,323 @@
+package com.android.bks.launcher;
+
+import android.app.ActivityManager;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.content.pm.ResolveInfo;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BlurMaskFilter;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffXfermode;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * IconThemePipeline - renders the icons of all launchable apps through an {@link IconTheme}
+ * (icon pack mapping, mask, tint, shadow) on a bounded worker pool, one task per icon.
+ * Results are PNGs in cacheDir/themed_icons/&lt;theme&gt;, keyed by component and the
+ * app's lastUpdateTime, so re-applying a theme - after a theme switch or a reboot - only
+ * renders the icons of apps that were installed or updated since.
+ */
+public class IconThemePipeline {
+    private static final String TAG = "HOMETEST_IconThemePipeline";
+
+    private static final String CACHE_DIR = "themed_icons";
+    /** Rendered themes kept on disk; switching between these costs no rendering. */
+    private static final int MAX_CACHED_THEMES = 3;
+    /** One core is left to the main thread. */
+    private static final int POOL_SIZE = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+
+    private static final MetricsRegistry.Counter RENDERED = MetricsRegistry.get().counter("icon_theme.rendered");
+    private static final MetricsRegistry.Counter DISK_HITS = MetricsRegistry.get().counter("icon_theme.disk_hits");
+    private static final LatencyHistogram RENDER_MS = MetricsRegistry.get().histogram("icon_theme.render_ms");
+    private static final LatencyHistogram APPLY_MS = MetricsRegistry.get().histogram("icon_theme.apply_ms");
+    private static final MetricsRegistry.Gauge ICONS_PER_SEC = MetricsRegistry.get().gauge("icon_theme.icons_per_sec");
+
+    public interface Callback {
+        /** Main thread; not called when another theme was applied in the meantime. */
+        void onThemeApplied(IconTheme theme, Map<ComponentName, Bitmap> icons);
+    }
+
+    private final PackageManager pm;
+    private final File cacheDir;
+    private final int iconSize;
+    private final int density;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final int poolSize;
+    private final ExecutorService pool;
+    private final AtomicInteger generation = new AtomicInteger();
+
+    public IconThemePipeline(Context context) {
+        this(context, POOL_SIZE);
+    }
+
+    /** With poolSize render threads; for IconThemeBenchmark, which compares pool sizes. */
+    IconThemePipeline(Context context, int poolSize) {
+        pm = context.getPackageManager();
+        cacheDir = new File(context.getCacheDir(), CACHE_DIR);
+        ActivityManager am = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        iconSize = am.getLauncherLargeIconSize();
+        density = am.getLauncherLargeIconDensity();
+        this.poolSize = poolSize;
+        pool = newPool(poolSize, "icon-theme-");
+    }
+
+    private static ExecutorService newPool(int size, String name) {
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(size, size, 10, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(() -> {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        r.run();
+                    }, name + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Renders, or reads from disk, the themed icon of every launchable activity and hands
+     * them over at once. A later call supersedes a run that is still in progress.
+     */
+    public void applyTheme(IconTheme theme, Callback callback) {
+        int gen = generation.incrementAndGet();
+        long start = SystemClock.uptimeMillis();
+        pool.execute(() -> {
+            List<ResolveInfo> apps = queryLauncherActivities();
+            theme.loadIconPack(pm);
+            File dir = themeDir(theme);
+            trimThemeDirs(dir);
+            ConcurrentHashMap<String, Long> versions = new ConcurrentHashMap<>();
+            ConcurrentHashMap<ComponentName, Bitmap> icons = new ConcurrentHashMap<>();
+            AtomicInteger diskHits = new AtomicInteger();
+            AtomicInteger remaining = new AtomicInteger(apps.size());
+            Runnable finish = () -> {
+                long elapsed = Math.max(1, SystemClock.uptimeMillis() - start);
+                int rendered = icons.size() - diskHits.get();
+                APPLY_MS.record(elapsed);
+                if (rendered > 0) ICONS_PER_SEC.set(rendered * 1000L / elapsed);
+                Log.i(TAG, "theme " + theme.id + ": " + icons.size() + " icons, " + rendered
+                        + " rendered, " + diskHits.get() + " from disk in " + elapsed + "ms on "
+                        + poolSize + " threads");
+                mainHandler.post(() -> {
+                    if (gen == generation.get()) callback.onThemeApplied(theme, new HashMap<>(icons));
+                });
+            };
+            if (apps.isEmpty()) {
+                finish.run();
+                return;
+            }
+            for (ResolveInfo ri : apps) {
+                pool.execute(() -> {
+                    try {
+                        if (gen != generation.get()) return;
+                        ComponentName cn = componentOf(ri);
+                        long version = versions.computeIfAbsent(cn.getPackageName(), this::getPackageVersion);
+                        File file = iconFile(dir, cn, version);
+                        Bitmap b = BitmapFactory.decodeFile(file.getPath());
+                        if (b != null) {
+                            diskHits.incrementAndGet();
+                            DISK_HITS.inc();
+                        } else {
+                            b = renderTimed(theme, ri, cn);
+                            if (b != null) writeToDisk(dir, cn, file, b);
+                        }
+                        if (b != null) icons.put(cn, b);
+                    } finally {
+                        if (remaining.decrementAndGet() == 0 && gen == generation.get()) finish.run();
+                    }
+                });
+            }
+        });
+    }
+
+    /** Drops a run of applyTheme that is still in progress; its callback is not called. */
+    public void cancel() {
+        generation.incrementAndGet();
+    }
+
+    /** The themed icon of one activity, through the disk cache; for apps the last run did not cover. */
+    public Bitmap getIcon(IconTheme theme, ResolveInfo ri) {
+        theme.loadIconPack(pm);
+        ComponentName cn = componentOf(ri);
+        File dir = themeDir(theme);
+        File file = iconFile(dir, cn, getPackageVersion(cn.getPackageName()));
+        Bitmap b = BitmapFactory.decodeFile(file.getPath());
+        if (b != null) {
+            DISK_HITS.inc();
+            return b;
+        }
+        b = renderTimed(theme, ri, cn);
+        if (b != null) writeToDisk(dir, cn, file, b);
+        return b;
+    }
+
+    private List<ResolveInfo> queryLauncherActivities() {
+        Intent main = new Intent(Intent.ACTION_MAIN).addCategory(Intent.CATEGORY_LAUNCHER);
+        return pm.queryIntentActivities(main, 0);
+    }
+
+    private static ComponentName componentOf(ResolveInfo ri) {
+        return new ComponentName(ri.activityInfo.packageName, ri.activityInfo.name);
+    }
+
+    /** Changes with every install or update of the package; call off the main thread. */
+    private long getPackageVersion(String packageName) {
+        try {
+            PackageInfo pi = pm.getPackageInfo(packageName, 0);
+            return pi.lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            return 0;
+        }
+    }
+
+    /** An update of the icon pack makes a new directory; older ones age out in trimThemeDirs. */
+    private File themeDir(IconTheme theme) {
+        long packVersion = theme.iconPack != null ? getPackageVersion(theme.iconPack) : 0;
+        return new File(cacheDir, safeName(theme.id) + "@" + packVersion + "_" + iconSize);
+    }
+
+    private static File iconFile(File dir, ComponentName cn, long version) {
+        return new File(dir, filePrefix(cn) + version + ".png");
+    }
+
+    private static String filePrefix(ComponentName cn) {
+        return safeName(cn.flattenToShortString()) + "@";
+    }
+
+    private static String safeName(String s) {
+        return s.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+
+    /** Keeps the directory in use plus the most recently used others, up to MAX_CACHED_THEMES. */
+    private void trimThemeDirs(File current) {
+        if (!current.isDirectory() && !current.mkdirs()) return;
+        current.setLastModified(System.currentTimeMillis());
+        File[] dirs = cacheDir.listFiles(File::isDirectory);
+        if (dirs == null || dirs.length <= MAX_CACHED_THEMES) return;
+        Arrays.sort(dirs, (a, b) -> Long.compare(b.lastModified(), a.lastModified()));
+        for (int i = MAX_CACHED_THEMES; i < dirs.length; i++) {
+            File[] files = dirs[i].listFiles();
+            if (files != null) {
+                for (File f : files) f.delete();
+            }
+            dirs[i].delete();
+        }
+    }
+
+    /** Writes the icon and drops files of older versions of the same component. */
+    private void writeToDisk(File dir, ComponentName cn, File file, Bitmap icon) {
+        if (!dir.isDirectory() && !dir.mkdirs()) return;
+        String prefix = filePrefix(cn);
+        File[] old = dir.listFiles((d, name) -> name.startsWith(prefix) && !name.equals(file.getName()));
+        if (old != null) {
+            for (File f : old) f.delete();
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            icon.compress(Bitmap.CompressFormat.PNG, 100, out);
+        } catch (IOException e) {
+            Log.w(TAG, "writeToDisk(): " + file.getName(), e);
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(file)) tmp.delete();
+    }
+
+    private Bitmap renderTimed(IconTheme theme, ResolveInfo ri, ComponentName cn) {
+        long start = SystemClock.uptimeMillis();
+        Bitmap b = render(theme, ri, cn);
+        RENDER_MS.record(SystemClock.uptimeMillis() - start);
+        RENDERED.inc();
+        return b;
+    }
+
+    /**
+     * Source icon (icon pack, else the app's own) drawn at iconSize, then clipped to the
+     * mask, tinted and given a drop shadow. The tint's alpha is its strength. Package-private
+     * for IconThemeBenchmark, which times it without the disk cache.
+     */
+    Bitmap render(IconTheme theme, ResolveInfo ri, ComponentName cn) {
+        Drawable d = theme.getPackIcon(cn, density);
+        if (d == null) d = ri.activityInfo.loadIcon(pm);
+        if (d == null) return null;
+
+        // room for the shadow below the icon
+        int inset = theme.shadow ? iconSize / 16 : 0;
+        RectF bounds = new RectF(inset, inset / 2f, iconSize - inset, iconSize - inset * 1.5f);
+
+        Bitmap icon = Bitmap.createBitmap(iconSize, iconSize, Bitmap.Config.ARGB_8888);
+        Canvas c = new Canvas(icon);
+        d.setBounds(Math.round(bounds.left), Math.round(bounds.top),
+                Math.round(bounds.right), Math.round(bounds.bottom));
+        d.draw(c);
+
+        if (theme.mask != IconTheme.MASK_NONE) {
+            Path shape = new Path();
+            if (theme.mask == IconTheme.MASK_CIRCLE) {
+                shape.addOval(bounds, Path.Direction.CW);
+            } else {
+                float r = bounds.width() / 5;
+                shape.addRoundRect(bounds, r, r, Path.Direction.CW);
+            }
+            // keep only what is inside the shape
+            Path outside = new Path();
+            outside.addRect(0, 0, iconSize, iconSize, Path.Direction.CW);
+            outside.op(shape, Path.Op.DIFFERENCE);
+            Paint clear = new Paint(Paint.ANTI_ALIAS_FLAG);
+            clear.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.CLEAR));
+            c.drawPath(outside, clear);
+        }
+
+        // over the icon's own pixels only
+        if (theme.tint != 0) c.drawColor(theme.tint, PorterDuff.Mode.SRC_ATOP);
+
+        if (!theme.shadow) {
+            c.setBitmap(null);
+            return icon;
+        }
+        Bitmap out = Bitmap.createBitmap(iconSize, iconSize, Bitmap.Config.ARGB_8888);
+        Canvas oc = new Canvas(out);
+        Paint blur = new Paint(Paint.ANTI_ALIAS_FLAG);
+        blur.setMaskFilter(new BlurMaskFilter(Math.max(1, inset / 2f), BlurMaskFilter.Blur.NORMAL));
+        int[] offset = new int[2];
+        Bitmap shadow = icon.extractAlpha(blur, offset);
+        Paint shadowPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        shadowPaint.setColor(0x40000000);
+        oc.drawBitmap(shadow, offset[0], offset[1] + inset / 2f, shadowPaint);
+        oc.drawBitmap(icon, 0, 0, null);
+        oc.setBitmap(null);
+        shadow.recycle();
+        icon.recycle();
+        return out;
+    }
+}
@@ -4,11 +4,36 @@ package com.android.bks.launcher;
  * ItemInfo - base class for workspace items (Launcher3-style)
  */
 public class ItemInfo {
+    public static final int NO_ID = -1;
+
+    /** Containers below zero are fixed; items inside a folder use the folder's id. */
+    public static final int CONTAINER_DESKTOP = -100;
+    public static final int CONTAINER_HOTSEAT = -101;
+
+    public static final int ITEM_TYPE_APPLICATION = 0;
+    public static final int ITEM_TYPE_FOLDER = 2;
+    public static final int ITEM_TYPE_APPWIDGET = 4;
+
     public long id;
     public int cellX;
     public int cellY;
     public int spanX = 1;
     public int spanY = 1;
-    public String container; // "workspace", "hotseat", "folder", "all_apps"
+    public long container = CONTAINER_DESKTOP;
     public int screen;
+    public int itemType = ITEM_TYPE_APPLICATION;
+
+    /** A plain ItemInfo with this item's id and position, for handing a position change to the model. */
+    public ItemInfo copyPosition() {
+        ItemInfo copy = new ItemInfo();
+        copy.id = id;
+        copy.cellX = cellX;
+        copy.cellY = cellY;
+        copy.spanX = spanX;
+        copy.spanY = spanY;
+        copy.container = container;
+        copy.screen = screen;
+        copy.itemType = itemType;
+        return copy;
+    }
 }
@@ -0,0 +1,19 @@
+package com.android.bks.launcher;
+
+import android.view.View;
+
+/**
+ * ItemViewBinder - creates, updates and recycles the views that stand for model items.
+ * Containers call it while reconciling their children against a new model snapshot;
+ * every view it hands out must carry its {@link ItemInfo} as the view tag.
+ */
+public interface ItemViewBinder {
+
+    View createView(ItemInfo info);
+
+    /** Called when a bound view's item was reloaded; should leave the view alone if nothing visible changed. */
+    void updateView(View view, ItemInfo info);
+
+    /** Called after the view was removed from its parent. */
+    void recycleView(View view);
+}
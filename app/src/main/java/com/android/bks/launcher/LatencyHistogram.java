@@ -0,0 +1,89 @@
+package com.android.bks.launcher;
+
+import java.io.PrintWriter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * LatencyHistogram - fixed-bucket, lock-free histogram of millisecond latencies.
+ * Safe to record from any thread; percentiles resolve to the upper bound of a bucket.
+ */
+public class LatencyHistogram {
+
+    /** Default bucket upper bounds (ms). The last bucket catches everything above. */
+    public static final long[] DEFAULT_BOUNDS_MS = {1, 2, 4, 8, 16, 32, 64, 128, 256, 512, 1024};
+
+    private final long[] bounds;
+    private final AtomicLongArray counts;
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public LatencyHistogram() {
+        this(DEFAULT_BOUNDS_MS);
+    }
+
+    public LatencyHistogram(long[] boundsMs) {
+        bounds = boundsMs.clone();
+        counts = new AtomicLongArray(bounds.length + 1);
+    }
+
+    public void record(long valueMs) {
+        if (valueMs < 0) valueMs = 0;
+        counts.incrementAndGet(bucketFor(valueMs));
+        total.incrementAndGet();
+        sum.addAndGet(valueMs);
+        long m;
+        while (valueMs > (m = max.get()) && !max.compareAndSet(m, valueMs)) { }
+    }
+
+    private int bucketFor(long valueMs) {
+        for (int i = 0; i < bounds.length; i++) {
+            if (valueMs <= bounds[i]) return i;
+        }
+        return bounds.length;
+    }
+
+    public long getCount() { return total.get(); }
+
+    public long getMax() { return max.get(); }
+
+    public long getMean() {
+        long n = total.get();
+        return n == 0 ? 0 : sum.get() / n;
+    }
+
+    /**
+     * Returns the bucket upper bound holding the given percentile (0..100),
+     * or the observed max for the overflow bucket.
+     */
+    public long getPercentile(double percentile) {
+        long n = total.get();
+        if (n == 0) return 0;
+        long rank = (long) Math.ceil(n * percentile / 100d);
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return i < bounds.length ? bounds[i] : max.get();
+            }
+        }
+        return max.get();
+    }
+
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) counts.set(i, 0);
+        total.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    public void dump(String prefix, String name, PrintWriter pw) {
+        pw.println(prefix + name + ": count=" + getCount()
+                + " mean=" + getMean() + "ms"
+                + " p50=" + getPercentile(50) + "ms"
+                + " p90=" + getPercentile(90) + "ms"
+                + " p99=" + getPercentile(99) + "ms"
+                + " max=" + getMax() + "ms");
+    }
+}
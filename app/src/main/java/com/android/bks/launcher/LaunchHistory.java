@@ -0,0 +1,405 @@
+package com.android.bks.launcher;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.LauncherApps;
+import android.content.pm.PackageManager;
+import android.content.pm.ResolveInfo;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.os.UserHandle;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * LaunchHistory - records app launches into a fixed ring buffer (component, time, source
+ * surface) without allocating, and hands them to a worker thread that appends them to
+ * files/launch_history every {@link #FLUSH_INTERVAL_MS} and feeds {@link AppPredictor}.
+ * For the top {@link #NUM_PREDICTIONS} components the worker resolves icon, label and
+ * launch intent ahead of time, so the predicted-apps row binds from ready
+ * ApplicationInfos. One instance per process (see {@link #get}); activities attach to it
+ * with {@link #setListener}. Resolved apps are dropped when their package is updated or
+ * removed.
+ */
+public class LaunchHistory {
+    private static final String TAG = "HOMETEST_LaunchHistory";
+
+    public static final int SOURCE_WORKSPACE = 0;
+    public static final int SOURCE_HOTSEAT = 1;
+    public static final int SOURCE_FOLDER = 2;
+    public static final int SOURCE_ALL_APPS = 3;
+    public static final int SOURCE_PREDICTION = 4;
+
+    public static final int NUM_PREDICTIONS = 4;
+
+    static final String FILE_NAME = "launch_history";
+    private static final int CAPACITY = 256;
+    /** Older events are dropped from the file once it holds more than this. */
+    static final int MAX_PERSISTED = 4096;
+    /** Flushes append this many events past MAX_PERSISTED before the file is trimmed again. */
+    static final int TRIM_SLACK = CAPACITY;
+    private static final long FLUSH_INTERVAL_MS = 30_000;
+    /** Launches arriving within this window are predicted for together. */
+    private static final long PREDICT_DELAY_MS = 500;
+
+    private static final MetricsRegistry.Counter RECORDED = MetricsRegistry.get().counter("launches.recorded");
+    private static final MetricsRegistry.Counter OVERRUNS = MetricsRegistry.get().counter("launches.overruns");
+    private static final LatencyHistogram FLUSH_MS = MetricsRegistry.get().histogram("launches.flush_ms");
+
+    private static volatile LaunchHistory sInstance;
+
+    public interface Listener {
+        /** Main thread; the list is not modified afterwards. */
+        void onPredictionsChanged(List<ApplicationInfo> predictions);
+    }
+
+    // ring buffer, guarded by this; written on the main thread, drained on the worker
+    private final int[] ringComponent = new int[CAPACITY];
+    private final long[] ringTime = new long[CAPACITY];
+    private final byte[] ringSource = new byte[CAPACITY];
+    private long head; // sequence number of the next event
+    private final HashMap<ComponentName, Integer> componentIds = new HashMap<>();
+    private final ArrayList<ComponentName> components = new ArrayList<>();
+
+    // worker thread only
+    private long flushedUpTo;
+    private int persistedCount; // events in the file
+    private long predictedUpTo;
+    private final AppPredictor predictor = new AppPredictor();
+    private final int[] topN = new int[NUM_PREDICTIONS];
+    private final double[] topScores = new double[NUM_PREDICTIONS];
+    private final HashMap<ComponentName, ApplicationInfo> warmed = new HashMap<>();
+    private List<ApplicationInfo> predicted = new ArrayList<>(); // null republishes
+    private final int[] drainComponent = new int[CAPACITY];
+    private final long[] drainTime = new long[CAPACITY];
+    private final byte[] drainSource = new byte[CAPACITY];
+
+    private final Context context;
+    private final PackageManager pm;
+    private final File file;
+    private final HandlerThread worker;
+    private final Handler workerHandler;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // main thread
+    private Listener listener;
+    private boolean flushScheduled;
+    private List<ApplicationInfo> predictions = new ArrayList<>();
+
+    private final Runnable flushRunnable = this::flushOnWorker;
+    private final Runnable predictRunnable = this::predictOnWorker;
+
+    private final LauncherApps.Callback packageCallback = new LauncherApps.Callback() {
+        @Override
+        public void onPackageRemoved(String packageName, UserHandle user) {
+            onPackagesChanged(packageName);
+        }
+
+        @Override
+        public void onPackageAdded(String packageName, UserHandle user) {
+            onPackagesChanged(packageName);
+        }
+
+        @Override
+        public void onPackageChanged(String packageName, UserHandle user) {
+            onPackagesChanged(packageName);
+        }
+
+        @Override
+        public void onPackagesAvailable(String[] packageNames, UserHandle user, boolean replacing) {
+            onPackagesChanged(packageNames);
+        }
+
+        @Override
+        public void onPackagesUnavailable(String[] packageNames, UserHandle user, boolean replacing) {
+            onPackagesChanged(packageNames);
+        }
+    };
+
+    /** The process-wide instance; the worker and its history outlive activity recreation. */
+    public static LaunchHistory get(Context context) {
+        if (sInstance == null) {
+            synchronized (LaunchHistory.class) {
+                if (sInstance == null) {
+                    sInstance = new LaunchHistory(context.getApplicationContext());
+                }
+            }
+        }
+        return sInstance;
+    }
+
+    /** Use {@link #get}; tests create their own. */
+    LaunchHistory(Context context) {
+        this.context = context;
+        this.pm = context.getPackageManager();
+        file = new File(context.getFilesDir(), FILE_NAME);
+        worker = new HandlerThread("launch-history", Process.THREAD_PRIORITY_BACKGROUND);
+        worker.start();
+        workerHandler = new Handler(worker.getLooper());
+        workerHandler.post(() -> {
+            loadOnWorker();
+            predictOnWorker();
+        });
+        context.getSystemService(LauncherApps.class).registerCallback(packageCallback, mainHandler);
+    }
+
+    /** Main thread. Receives prediction changes from now on; null detaches. */
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /** Main thread. Detaches listener unless another one was attached since. */
+    public void removeListener(Listener listener) {
+        if (this.listener == listener) this.listener = null;
+    }
+
+    /** Main thread. Allocates only the first time a component is seen. */
+    public void record(ComponentName component, int source) {
+        if (component == null) return;
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            int slot = (int) (head % CAPACITY);
+            ringComponent[slot] = intern(component);
+            ringTime[slot] = now;
+            ringSource[slot] = (byte) source;
+            head++;
+        }
+        RECORDED.inc();
+        workerHandler.removeCallbacks(predictRunnable);
+        workerHandler.postDelayed(predictRunnable, PREDICT_DELAY_MS);
+        if (!flushScheduled) {
+            flushScheduled = true;
+            workerHandler.postDelayed(flushRunnable, FLUSH_INTERVAL_MS);
+        }
+    }
+
+    /** Writes pending events now, e.g. when the launcher goes to the background. */
+    public void flush() {
+        workerHandler.removeCallbacks(flushRunnable);
+        workerHandler.post(flushRunnable);
+    }
+
+    /** Re-resolves the predicted apps, e.g. after the icon theme changed. */
+    public void onIconsChanged() {
+        workerHandler.post(() -> {
+            warmed.clear();
+            predicted = null;
+            predictOnWorker();
+        });
+    }
+
+    /**
+     * Forgets what was resolved for the packages, so an updated app shows its new icon and
+     * label and a removed one leaves the predictions.
+     */
+    void onPackagesChanged(String... packageNames) {
+        workerHandler.post(() -> {
+            boolean stale = false;
+            for (String packageName : packageNames) {
+                IconCacheHolder.get(context).removePackage(packageName);
+                for (Iterator<ComponentName> it = warmed.keySet().iterator(); it.hasNext(); ) {
+                    if (it.next().getPackageName().equals(packageName)) {
+                        it.remove();
+                        stale = true;
+                    }
+                }
+            }
+            if (stale) predicted = null;
+            // also re-predicts for added packages: a top app that did not resolve may be back
+            predictOnWorker();
+        });
+    }
+
+    /** Main thread; the latest list of predictions. */
+    public List<ApplicationInfo> getPredictions() {
+        return predictions;
+    }
+
+    private int intern(ComponentName component) {
+        Integer id = componentIds.get(component);
+        if (id == null) {
+            id = components.size();
+            components.add(component);
+            componentIds.put(component, id);
+        }
+        return id;
+    }
+
+    /**
+     * Copies the events from sequence number from up to head into the drain arrays and
+     * returns the sequence number of the first one copied; events that were overwritten
+     * before being drained are skipped.
+     */
+    private long drain(long from, int[] count) {
+        synchronized (this) {
+            long start = Math.max(from, head - CAPACITY);
+            if (start > from) OVERRUNS.add(start - from);
+            int n = (int) (head - start);
+            for (int i = 0; i < n; i++) {
+                int slot = (int) ((start + i) % CAPACITY);
+                drainComponent[i] = ringComponent[slot];
+                drainTime[i] = ringTime[slot];
+                drainSource[i] = ringSource[slot];
+            }
+            count[0] = n;
+            return start;
+        }
+    }
+
+    private ComponentName componentFor(int id) {
+        synchronized (this) {
+            return components.get(id);
+        }
+    }
+
+    private void flushOnWorker() {
+        mainHandler.post(() -> flushScheduled = false);
+        int[] count = new int[1];
+        long start = drain(flushedUpTo, count);
+        if (count[0] == 0) return;
+        long t = android.os.SystemClock.uptimeMillis();
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file, true)))) {
+            for (int i = 0; i < count[0]; i++) {
+                out.writeUTF(componentFor(drainComponent[i]).flattenToString());
+                out.writeLong(drainTime[i]);
+                out.writeByte(drainSource[i]);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "flush(): " + e);
+            return;
+        }
+        flushedUpTo = start + count[0];
+        persistedCount += count[0];
+        // a launcher process lives for weeks; keep the file bounded without re-reading it per flush
+        if (persistedCount > MAX_PERSISTED + TRIM_SLACK) trimOnWorker();
+        FLUSH_MS.record(android.os.SystemClock.uptimeMillis() - t);
+    }
+
+    /** Replays the persisted events into the predictor and trims the file when it grew too long. */
+    private void loadOnWorker() {
+        if (!file.isFile()) return;
+        ArrayList<String> names = new ArrayList<>();
+        ArrayList<long[]> events = new ArrayList<>(); // {time, source}
+        readFile(names, events);
+
+        int from = Math.max(0, names.size() - MAX_PERSISTED);
+        for (int i = from; i < names.size(); i++) {
+            ComponentName cn = ComponentName.unflattenFromString(names.get(i));
+            if (cn == null) continue;
+            int id;
+            synchronized (this) {
+                id = intern(cn);
+            }
+            predictor.onLaunch(id, events.get(i)[0]);
+        }
+        if (from > 0) rewrite(names, events, from);
+        persistedCount = names.size() - from;
+        Log.i(TAG, "load(): replayed " + (names.size() - from) + " launches");
+    }
+
+    /** Keeps the newest MAX_PERSISTED events in the file; the predictor already has them all. */
+    private void trimOnWorker() {
+        ArrayList<String> names = new ArrayList<>();
+        ArrayList<long[]> events = new ArrayList<>();
+        readFile(names, events);
+        int from = Math.max(0, names.size() - MAX_PERSISTED);
+        if (from > 0) rewrite(names, events, from);
+        persistedCount = names.size() - from;
+    }
+
+    private void readFile(List<String> names, List<long[]> events) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                String name = in.readUTF();
+                long time = in.readLong();
+                byte source = in.readByte();
+                names.add(name);
+                events.add(new long[]{time, source});
+            }
+        } catch (EOFException e) {
+            // end of file; a partially written last record is dropped
+        } catch (IOException e) {
+            Log.w(TAG, "read(): " + e);
+        }
+    }
+
+    private void rewrite(List<String> names, List<long[]> events, int from) {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            for (int i = from; i < names.size(); i++) {
+                out.writeUTF(names.get(i));
+                out.writeLong(events.get(i)[0]);
+                out.writeByte((int) events.get(i)[1]);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "rewrite(): " + e);
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(file)) tmp.delete();
+    }
+
+    /** Feeds new events to the predictor and republishes the top N when it changed. */
+    private void predictOnWorker() {
+        int[] count = new int[1];
+        long start = drain(predictedUpTo, count);
+        for (int i = 0; i < count[0]; i++) predictor.onLaunch(drainComponent[i], drainTime[i]);
+        predictedUpTo = start + count[0];
+
+        int n = predictor.getTopN(System.currentTimeMillis(), topN, topScores);
+        ArrayList<ApplicationInfo> list = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            ApplicationInfo app = warm(componentFor(topN[i]));
+            if (app != null) list.add(app);
+        }
+        if (predicted != null && sameComponents(list, predicted)) return;
+        predicted = list;
+        mainHandler.post(() -> {
+            predictions = list;
+            if (listener != null) listener.onPredictionsChanged(list);
+        });
+    }
+
+    /** Resolves icon, label and launch intent once per component; null if it is gone. */
+    private ApplicationInfo warm(ComponentName cn) {
+        ApplicationInfo app = warmed.get(cn);
+        if (app != null) return app;
+        Intent intent = new Intent(Intent.ACTION_MAIN)
+                .addCategory(Intent.CATEGORY_LAUNCHER)
+                .setComponent(cn)
+                .setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_RESET_TASK_IF_NEEDED);
+        ResolveInfo ri = pm.resolveActivity(intent, 0);
+        if (ri == null || ri.activityInfo == null) return null;
+        app = new ApplicationInfo();
+        app.id = ItemInfo.NO_ID;
+        app.title = ri.loadLabel(pm).toString();
+        app.intent = intent;
+        app.icon = IconCacheHolder.get(context).getIcon(ri);
+        warmed.put(cn, app);
+        return app;
+    }
+
+    private static boolean sameComponents(List<ApplicationInfo> a, List<ApplicationInfo> b) {
+        if (a.size() != b.size()) return false;
+        for (int i = 0; i < a.size(); i++) {
+            if (!a.get(i).intent.getComponent().equals(b.get(i).intent.getComponent())) return false;
+        }
+        return true;
+    }
+}
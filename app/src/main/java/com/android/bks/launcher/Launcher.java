@@ -1,23 +1,40 @@
 package com.android.bks.launcher;
 
+import android.appwidget.AppWidgetManager;
+import android.appwidget.AppWidgetProviderInfo;
+import android.content.ActivityNotFoundException;
+import android.content.ComponentName;
 import android.content.Intent;
-import android.content.pm.PackageManager;
 import android.graphics.Color;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Debug;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.provider.Settings;
 import android.util.Log;
+import android.util.LongSparseArray;
+import android.view.View;
+import android.view.ViewStub;
+import android.view.ViewTreeObserver;
 import android.view.Window;
 import android.view.WindowManager;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.lifecycle.ViewModelProvider;
+import androidx.recyclerview.widget.RecyclerView;
 
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Main Launcher activity (corrected)
@@ -30,14 +47,54 @@ public class Launcher extends AppCompatActivity {
     private Workspace workspace;
     private Hotseat hotseat;
     private TextView searchText;
-    private AllAppsContainerView allApps;
+    private AllAppsContainerView allApps; // null until inflated from allAppsStub
+    private ViewStub allAppsStub;
+    private List<ApplicationInfo> pendingAllApps;
+    private RecyclerView.RecycledViewPool appsViewPool;
     private LauncherViewModel viewModel;
+    private BubbleTextViewPool viewPool;
+    private LauncherAppWidgetHost appWidgetHost;
+    private WidgetPreviewLoader widgetPreviewLoader;
+    private WidgetsPickerView widgetsPicker;
+    // widget being added while the bind or configure activity is showing
+    private ApplicationInfo pendingWidget;
+
+    private static final int REQUEST_BIND_APPWIDGET = 11;
+    private static final int REQUEST_CONFIGURE_APPWIDGET = 12;
+    private Folder openFolder; // content view of the open folder, null while all are closed
+    private final FrameMetricsTracker frameMetrics = new FrameMetricsTracker();
+    private LaunchHistory launchHistory;
+    private final LaunchHistory.Listener predictionsListener = predictions -> {
+        if (allApps != null) allApps.setPredictions(predictions);
+    };
+
+    // bind metrics, printed by dump()
+    private static final MetricsRegistry.Counter BIND_COUNT = MetricsRegistry.get().counter("bind.count");
+    private static final MetricsRegistry.Counter WORKSPACE_ITEMS = MetricsRegistry.get().counter("bind.workspace_items");
+    private static final MetricsRegistry.Counter HOTSEAT_ITEMS = MetricsRegistry.get().counter("bind.hotseat_items");
+    private static final MetricsRegistry.Counter ALL_APPS_ITEMS = MetricsRegistry.get().counter("bind.all_apps_items");
+    private static final LatencyHistogram BIND_WORKSPACE_MS = MetricsRegistry.get().histogram("bind.workspace_ms");
+    private static final LatencyHistogram BIND_HOTSEAT_MS = MetricsRegistry.get().histogram("bind.hotseat_ms");
+    private static final LatencyHistogram BIND_ALL_APPS_MS = MetricsRegistry.get().histogram("bind.all_apps_ms");
+    private static final LatencyHistogram FIRST_VISIBLE_ICON_MS = MetricsRegistry.get().histogram("startup.first_visible_icon_ms");
+    private static final LatencyHistogram FULLY_BOUND_MS = MetricsRegistry.get().histogram("startup.fully_bound_ms");
+    private long createdAt;
+    private boolean firstIconShown;
+    private boolean fullyBound;
+    // contents of the bound folders, by folder id
+    private LongSparseArray<List<ApplicationInfo>> boundFolderContents = new LongSparseArray<>();
+    // model delivered during a drag, bound when it ends
+    private List<ApplicationInfo> pendingBind;
+
+    // enough for two full pages plus the hotseat
+    private static final int VIEW_POOL_SIZE = 40;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
         Log.i(TAG, "onCreate() called");
+        createdAt = SystemClock.uptimeMillis();
 
         setupSystemUi();
         setContentView(R.layout.launcher);
@@ -46,37 +103,55 @@ public class Launcher extends AppCompatActivity {
         workspace = findViewById(R.id.workspace);
         hotseat = findViewById(R.id.hotseat);
         searchText = findViewById(R.id.search_text);
-        allApps = findViewById(R.id.all_apps_container);
+        allAppsStub = findViewById(R.id.all_apps_stub);
 
         viewModel = new ViewModelProvider(this).get(LauncherViewModel.class);
 
-        // create two fixed pages
-        for (int i = 0; i < 2; i++) {
-            CellLayout page = new CellLayout(this);
-            workspace.addPage(page);
-        }
+        viewPool = new BubbleTextViewPool(this, VIEW_POOL_SIZE);
+        appWidgetHost = new LauncherAppWidgetHost(this);
+        launchHistory = LaunchHistory.get(this);
+        launchHistory.setListener(predictionsListener);
+        IconTheme iconTheme = IconTheme.load(this);
+        if (iconTheme != null) startIconTheme(iconTheme);
+
+        // pages are created by bindWorkspace() from the screens the model references
+        workspace.setItemViewBinder(itemBinder);
+        workspace.setOnEmptyLongPressListener(this::showHomescreenMenu);
+
+        // first-run defaults are imported by the repository before its first load
+
+        // observe apps and bind; registered before the first-screen observer so that on
+        // re-creation the full model is bound first and the partial one is ignored
+        viewModel.getAppsLive().observe(this, this::bindModel);
+
+        // startup phase one: the first screen and hotseat, before the rest is loaded
+        viewModel.getFirstScreenLive().observe(this, apps -> {
+            if (fullyBound || dragLayer.isDragging()) return;
+            ModelGroups groups = ModelGroups.group(apps);
+            bindWorkspace(groups);
+            bindHotseat(groups.hotseat);
+            onIconsBound(apps);
+        });
 
-        // first-run defaults if DB empty
-        if (viewModel.isDbEmpty()) {
-            Log.i(TAG, "onCreate(): DB empty -> inserting defaults");
-            populateDefaultsAndPersist();
-        }
+        workspace.setOnScrollStateListener(scrolling -> frameMetrics.setState(scrolling
+                ? FrameMetricsTracker.STATE_PAGE_SWIPE : FrameMetricsTracker.STATE_WORKSPACE_IDLE));
 
-        // observe apps and bind
-        viewModel.getAppsLive().observe(this, apps -> {
-            Log.i(TAG, "LiveData callback: apps=" + apps.size());
-            bindWorkspace(apps);
-            bindHotseat(apps);
-            bindAllApps(apps);
-        });
+        dragLayer.setDragListener(dragListener);
 
         // swipe-up opens all apps (DragLayer listener)
         dragLayer.setOnSwipeUpListener(() -> {
-            if (!allApps.isShownPanel()) {
-                allApps.show();
+            AllAppsContainerView panel = getOrInflateAllApps();
+            if (!panel.isShownPanel()) {
+                panel.show();
             }
         });
 
+        // prefetch All Apps once the first frame is out and the main thread goes idle
+        dragLayer.post(() -> Looper.myQueue().addIdleHandler(() -> {
+            if (!isDestroyed()) getOrInflateAllApps();
+            return false;
+        }));
+
         // search click launches web search
         searchText.setOnClickListener(v -> {
             try {
@@ -106,74 +181,418 @@ public class Launcher extends AppCompatActivity {
         }
     }
 
-    private void bindWorkspace(List<ApplicationInfo> apps) {
-        Log.i(TAG, "bindWorkspace() : total apps=" + apps.size());
+    /** Starts the time-to-first-visible-icon measurement for the first bind that shows an icon. */
+    private void onIconsBound(List<ApplicationInfo> apps) {
+        if (firstIconShown || apps.isEmpty()) return;
+        firstIconShown = true;
+        recordOnNextFrame(FIRST_VISIBLE_ICON_MS);
+    }
 
-        // Clear pages
-        for (int p = 0; p < workspace.getPageCount(); p++) {
-            CellLayout page = workspace.getPageAt(p);
-            page.removeAllViews();
+    /** Records the time from onCreate to the next frame, i.e. the one showing what was just bound. */
+    private void recordOnNextFrame(LatencyHistogram histogram) {
+        ViewTreeObserver vto = dragLayer.getViewTreeObserver();
+        vto.addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                dragLayer.getViewTreeObserver().removeOnPreDrawListener(this);
+                histogram.record(SystemClock.uptimeMillis() - createdAt);
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Binds a full model. While a drag is in progress the list is held back until the drag
+     * ends: rebinding could remove the dragged page or recycle the dragged view.
+     */
+    private void bindModel(List<ApplicationInfo> apps) {
+        if (dragLayer.isDragging()) {
+            pendingBind = apps;
+            return;
         }
+        BIND_COUNT.inc();
+        long start = SystemClock.uptimeMillis();
+        ModelGroups groups = ModelGroups.group(apps);
+        bindWorkspace(groups);
+        long workspaceDone = SystemClock.uptimeMillis();
+        bindHotseat(groups.hotseat);
+        long hotseatDone = SystemClock.uptimeMillis();
+        bindAllApps(apps);
+        BIND_WORKSPACE_MS.record(workspaceDone - start);
+        BIND_HOTSEAT_MS.record(hotseatDone - workspaceDone);
+        BIND_ALL_APPS_MS.record(SystemClock.uptimeMillis() - hotseatDone);
+        if (!fullyBound) {
+            fullyBound = true;
+            onIconsBound(apps);
+            recordOnNextFrame(FULLY_BOUND_MS);
+        }
+    }
+
+    private void bindWorkspace(ModelGroups groups) {
+        // the workspace adds and removes pages to match, pages near the current one reconcile
+        // their children, the others just keep the items until they are scrolled into range
+        WORKSPACE_ITEMS.add(groups.workspaceItems);
+        boundFolderContents = groups.folderContents;
+        workspace.bindScreens(groups.screens);
+    }
 
-        // Collect folder_google contents from DB first
-        List<ApplicationInfo> folderGoogleApps = new ArrayList<>();
-        for (ApplicationInfo app : apps) {
-            if ("folder_google".equals(app.container)) {
-                folderGoogleApps.add(app);
+    /**
+     * Creates workspace/hotseat views on demand; a folder item becomes a FolderIcon
+     * populated from the items whose container is the folder's id, a widget item a
+     * placeholder whose host view is created after the bind.
+     */
+    private final ItemViewBinder itemBinder = new ItemViewBinder() {
+        @Override
+        public View createView(ItemInfo info) {
+            ApplicationInfo app = (ApplicationInfo) info;
+            if (app.itemType == ItemInfo.ITEM_TYPE_FOLDER) {
+                FolderIcon folderIcon = new FolderIcon(Launcher.this);
+                folderIcon.setTitle("Google Folder".equals(app.title) || app.title == null ? "Google" : app.title);
+                folderIcon.setContents(folderContents(app));
+                folderIcon.setTag(app);
+                folderIcon.setOnClickListener(v -> openFolder((FolderIcon) v));
+                return folderIcon;
             }
+            if (app.itemType == ItemInfo.ITEM_TYPE_APPWIDGET) {
+                LauncherWidgetView widgetView = new LauncherWidgetView(Launcher.this);
+                widgetView.bind(app);
+                widgetView.setOnLongClickListener(itemLongClickListener);
+                appWidgetHost.inflateAsync(widgetView);
+                return widgetView;
+            }
+
+            BubbleTextView btv = viewPool.acquire();
+            btv.applyFromApplicationInfo(app, false);
+            btv.setOnClickListener(itemClickListener);
+            // long-press popup
+            btv.setOnLongClickListener(itemLongClickListener);
+            return btv;
         }
 
-        // Now place workspace apps; if a "Google Folder" placeholder is present, create FolderIcon using folderGoogleApps
-        for (ApplicationInfo app : apps) {
-            if ("workspace".equals(app.container)) {
-                int screen = Math.max(0, Math.min(app.screen, workspace.getPageCount() - 1));
-                CellLayout page = workspace.getPageAt(screen);
-
-                if ("Google Folder".equals(app.title)) {
-                    // Create folder icon and populate from DB-collected google apps
-                    FolderIcon folderIcon = new FolderIcon(this);
-                    folderIcon.setTitle("Google");
-                    folderIcon.setContents(folderGoogleApps);
-                    page.addViewToCell(folderIcon, app.cellX, app.cellY);
-                } else {
-                    BubbleTextView btv = new BubbleTextView(this);
+        @Override
+        public void updateView(View view, ItemInfo info) {
+            ApplicationInfo app = (ApplicationInfo) info;
+            if (view instanceof FolderIcon) {
+                FolderIcon folderIcon = (FolderIcon) view;
+                folderIcon.setTag(app);
+                List<ApplicationInfo> contents = folderContents(app);
+                if (!sameItems(folderIcon.getFolderInfo().contents, contents)) {
+                    if (openFolder != null && openFolder.getFolderIcon() == folderIcon) {
+                        closeFolder();
+                    }
+                    folderIcon.setContents(contents);
+                }
+            } else if (view instanceof LauncherWidgetView) {
+                // the widget id never changes; the host view keeps updating itself
+                ((LauncherWidgetView) view).bind(app);
+            } else if (view instanceof BubbleTextView) {
+                BubbleTextView btv = (BubbleTextView) view;
+                if (btv.needsRebind(app)) {
                     btv.applyFromApplicationInfo(app, false);
-
-                    btv.setOnClickListener(v -> {
-                        if (app.intent != null) {
-                            try {
-                                startActivity(app.intent);
-                            } catch (Exception e) {
-                                Toast.makeText(this, "Cannot launch app", Toast.LENGTH_SHORT).show();
-                            }
-                        }
-                    });
-
-                    // long-press popup
-                    btv.setOnLongClickListener(v -> {
-                        showHomescreenPopup(app);
-                        return true;
-                    });
-
-                    Log.i(TAG, "bindWorkspace(): app title="+app.title+", cellx="+app.cellX+", celly="+app.cellY);
-                    page.addViewToCell(btv, app.cellX, app.cellY);
+                } else {
+                    btv.updateInfo(app);
                 }
             }
         }
+
+        @Override
+        public void recycleView(View view) {
+            if (openFolder != null && openFolder.getFolderIcon() == view) {
+                closeFolder();
+            }
+            if (view instanceof LauncherWidgetView) {
+                appWidgetHost.cancelInflation((LauncherWidgetView) view);
+                return;
+            }
+            viewPool.recycle(view);
+        }
+    };
+
+    private void openFolder(FolderIcon icon) {
+        if (openFolder != null) closeFolder();
+        openFolder = new Folder(this, viewPool);
+        openFolder.bind(icon, v -> {
+            // launch before closing; closing recycles v
+            itemClickListener.onClick(v);
+            closeFolder();
+        });
+        openFolder.setOnClickListener(v -> closeFolder());
+        dragLayer.addView(openFolder, new DragLayer.LayoutParams(
+                DragLayer.LayoutParams.MATCH_PARENT, DragLayer.LayoutParams.MATCH_PARENT));
+    }
+
+    /** Removes the open folder and releases its content views. */
+    private void closeFolder() {
+        if (openFolder == null) return;
+        dragLayer.removeView(openFolder);
+        openFolder.recycle();
+        openFolder = null;
+    }
+
+    private final View.OnClickListener itemClickListener = v -> {
+        ApplicationInfo app = ((BubbleTextView) v).getApplicationInfo();
+        if (app == null) return;
+        launchApp(app, app.container == ItemInfo.CONTAINER_HOTSEAT ? LaunchHistory.SOURCE_HOTSEAT
+                : app.container >= 0 ? LaunchHistory.SOURCE_FOLDER : LaunchHistory.SOURCE_WORKSPACE);
+    };
+
+    private final AllAppsAdapter.OnAppClickListener allAppsClickListener = (v, app, predicted) ->
+            launchApp(app, predicted ? LaunchHistory.SOURCE_PREDICTION : LaunchHistory.SOURCE_ALL_APPS);
+
+    private void launchApp(ApplicationInfo app, int source) {
+        if (app.intent == null) return;
+        try {
+            startActivity(app.intent);
+        } catch (Exception e) {
+            Toast.makeText(this, "Cannot launch app", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        // URI-only shortcuts have no component to predict
+        launchHistory.record(app.intent.getComponent(), source);
+    }
+
+    private final View.OnLongClickListener itemLongClickListener = v -> {
+        ApplicationInfo app = (ApplicationInfo) v.getTag();
+        if (app == null) return true;
+        if (v.getParent() instanceof CellLayout && v.getParent().getParent() == workspace) {
+            // drag on move; releasing in place shows the popup (onDragAbandoned)
+            dragLayer.startDrag(v, (CellLayout) v.getParent());
+        } else {
+            showHomescreenPopup(app);
+        }
+        return true;
+    };
+
+    private final DragLayer.DragListener dragListener = new DragLayer.DragListener() {
+        @Override
+        public void onDrop(List<ItemInfo> movedItems) {
+            // the list is reused by DragLayer; copy before handing it to the model thread
+            viewModel.updateApps(new ArrayList<>(movedItems));
+            // a model held back during the drag has the pre-drop cells and would move the
+            // items back; the refresh that follows this write supersedes it
+            pendingBind = null;
+        }
+
+        @Override
+        public void onDragAbandoned(View view) {
+            ApplicationInfo app = (ApplicationInfo) view.getTag();
+            if (app != null) showHomescreenPopup(app);
+        }
+
+        @Override
+        public void onDragEnded() {
+            if (pendingBind != null) {
+                List<ApplicationInfo> apps = pendingBind;
+                pendingBind = null;
+                bindModel(apps);
+            }
+        }
+    };
+
+    private List<ApplicationInfo> folderContents(ItemInfo folder) {
+        List<ApplicationInfo> contents = boundFolderContents.get(folder.id);
+        return contents != null ? contents : Collections.emptyList();
     }
 
-    private void bindHotseat(List<ApplicationInfo> apps) {
-        Log.i(TAG, "bindHotseat() : total apps=" + apps.size());
-        List<ApplicationInfo> hs = new ArrayList<>();
-        for (ApplicationInfo app : apps) {
-            if ("hotseat".equals(app.container)) hs.add(app);
+    private static boolean sameItems(List<ApplicationInfo> a, List<ApplicationInfo> b) {
+        if (a.size() != b.size()) return false;
+        for (int i = 0; i < a.size(); i++) {
+            ApplicationInfo x = a.get(i);
+            ApplicationInfo y = b.get(i);
+            if (x.id != y.id || x.icon != y.icon
+                    || !(x.title == null ? y.title == null : x.title.equals(y.title))) {
+                return false;
+            }
         }
-        hotseat.bindApps(hs);
+        return true;
+    }
+
+    private void bindHotseat(List<ApplicationInfo> hs) {
+        HOTSEAT_ITEMS.add(hs.size());
+        hotseat.bindApps(hs, itemBinder);
     }
 
     private void bindAllApps(List<ApplicationInfo> apps) {
-        Log.i(TAG, "bindAllApps() : total apps=" + apps.size());
-        allApps.setApps(apps);
+        apps = ModelGroups.appsOnly(apps);
+        ALL_APPS_ITEMS.add(apps.size());
+        if (allApps != null) {
+            allApps.setApps(apps);
+        } else {
+            // not inflated yet; hand over the latest list on inflation
+            pendingAllApps = apps;
+        }
+    }
+
+    /** Long press on an empty spot of the workspace: widgets and the icon theme. */
+    private void showHomescreenMenu() {
+        if (widgetsPicker != null || dragLayer.isDragging()) return;
+        android.widget.PopupMenu popup = new android.widget.PopupMenu(this, findViewById(android.R.id.content));
+        popup.getMenu().add("Widgets");
+        popup.getMenu().add("Icon theme");
+        popup.setOnMenuItemClickListener(item -> {
+            if (item.getTitle().equals("Widgets")) {
+                showWidgetsPicker();
+            } else {
+                showIconThemeMenu();
+            }
+            return true;
+        });
+        popup.show();
+    }
+
+    private void showIconThemeMenu() {
+        Map<String, IconTheme> themes = IconTheme.getAvailable(this);
+        IconTheme current = IconTheme.load(this);
+        android.widget.PopupMenu popup = new android.widget.PopupMenu(this, findViewById(android.R.id.content));
+        popup.getMenu().add("App icons").setCheckable(true).setChecked(current == null);
+        for (Map.Entry<String, IconTheme> e : themes.entrySet()) {
+            popup.getMenu().add(e.getKey()).setCheckable(true)
+                    .setChecked(current != null && current.id.equals(e.getValue().id));
+        }
+        popup.setOnMenuItemClickListener(item -> {
+            applyIconTheme(themes.get(item.getTitle().toString())); // null for "App icons"
+            return true;
+        });
+        popup.show();
+    }
+
+    /** Opens the picker; the widget goes to the first vacant area of the current page. */
+    private void showWidgetsPicker() {
+        if (widgetsPicker != null || dragLayer.isDragging()) return;
+        if (widgetPreviewLoader == null) widgetPreviewLoader = new WidgetPreviewLoader(this);
+        CellLayout page = workspace.getPageAt(workspace.getCurrentPage());
+        widgetsPicker = new WidgetsPickerView(this, widgetPreviewLoader,
+                page.getCellWidth(), page.getCellHeight(), page.getCountX(), page.getCountY());
+        widgetsPicker.setOnWidgetPickedListener((info, label, spanX, spanY) -> {
+            closeWidgetsPicker();
+            addWidget(info, label, spanX, spanY);
+        });
+        dragLayer.addView(widgetsPicker, new DragLayer.LayoutParams(
+                DragLayer.LayoutParams.MATCH_PARENT, DragLayer.LayoutParams.MATCH_PARENT));
+    }
+
+    private void closeWidgetsPicker() {
+        if (widgetsPicker == null) return;
+        widgetsPicker.close();
+        dragLayer.removeView(widgetsPicker);
+        widgetsPicker = null;
+    }
+
+    private void addWidget(AppWidgetProviderInfo info, String label, int spanX, int spanY) {
+        int page = workspace.getCurrentPage();
+        int[] cell = new int[2];
+        if (!workspace.getPageAt(page).findNearestVacantArea(0, 0, spanX, spanY, cell)) {
+            Toast.makeText(this, "No room on this page", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        ApplicationInfo item = new ApplicationInfo();
+        item.itemType = ItemInfo.ITEM_TYPE_APPWIDGET;
+        item.title = label;
+        item.container = ItemInfo.CONTAINER_DESKTOP;
+        item.screen = workspace.getScreenIdForPage(page);
+        item.cellX = cell[0];
+        item.cellY = cell[1];
+        item.spanX = spanX;
+        item.spanY = spanY;
+        item.appWidgetProvider = info.provider;
+        item.appWidgetId = appWidgetHost.allocateAppWidgetId();
+        pendingWidget = item;
+
+        if (AppWidgetManager.getInstance(this).bindAppWidgetIdIfAllowed(item.appWidgetId, info.provider)) {
+            configureOrCompleteWidget();
+        } else {
+            Intent bind = new Intent(AppWidgetManager.ACTION_APPWIDGET_BIND)
+                    .putExtra(AppWidgetManager.EXTRA_APPWIDGET_ID, item.appWidgetId)
+                    .putExtra(AppWidgetManager.EXTRA_APPWIDGET_PROVIDER, info.provider);
+            startActivityForResult(bind, REQUEST_BIND_APPWIDGET);
+        }
+    }
+
+    private void configureOrCompleteWidget() {
+        AppWidgetProviderInfo info = AppWidgetManager.getInstance(this).getAppWidgetInfo(pendingWidget.appWidgetId);
+        if (info != null && info.configure != null) {
+            try {
+                appWidgetHost.startAppWidgetConfigureActivityForResult(this, pendingWidget.appWidgetId,
+                        0, REQUEST_CONFIGURE_APPWIDGET, null);
+                return;
+            } catch (ActivityNotFoundException | SecurityException e) {
+                Log.w(TAG, "configureOrCompleteWidget(): cannot configure " + info.provider, e);
+                cancelPendingWidget();
+                return;
+            }
+        }
+        viewModel.insertApp(pendingWidget);
+        pendingWidget = null;
+    }
+
+    private void cancelPendingWidget() {
+        if (pendingWidget == null) return;
+        appWidgetHost.deleteAppWidgetId(pendingWidget.appWidgetId);
+        pendingWidget = null;
+    }
+
+    @Override
+    protected void onActivityResult(int requestCode, int resultCode, @Nullable Intent data) {
+        super.onActivityResult(requestCode, resultCode, data);
+        if (pendingWidget == null) return;
+        if (resultCode != RESULT_OK) {
+            cancelPendingWidget();
+        } else if (requestCode == REQUEST_BIND_APPWIDGET) {
+            configureOrCompleteWidget();
+        } else if (requestCode == REQUEST_CONFIGURE_APPWIDGET) {
+            viewModel.insertApp(pendingWidget);
+            pendingWidget = null;
+        }
+    }
+
+    /** Switches the icon theme, or back to the apps' own icons when theme is null, and keeps it across restarts. */
+    public void applyIconTheme(@Nullable IconTheme theme) {
+        IconTheme.save(this, theme);
+        if (theme != null) {
+            startIconTheme(theme);
+        } else {
+            IconCacheHolder.getThemePipeline(this).cancel();
+            IconCacheHolder.get(this).setTheme(null, null, Collections.emptyMap());
+            launchHistory.onIconsChanged();
+            viewModel.refresh();
+        }
+    }
+
+    private void startIconTheme(IconTheme theme) {
+        IconThemePipeline pipeline = IconCacheHolder.getThemePipeline(this);
+        IconCache iconCache = IconCacheHolder.get(this);
+        // icons requested before the batch is done are rendered one by one in the new theme
+        iconCache.setTheme(theme, pipeline, Collections.emptyMap());
+        pipeline.applyTheme(theme, (t, icons) -> {
+            iconCache.setTheme(t, pipeline, icons);
+            launchHistory.onIconsChanged();
+            // bound items hold the previous icons; a reload hands out the themed ones
+            viewModel.refresh();
+        });
+    }
+
+    /** Holder pool shared by All Apps and future app lists (search results, predictions). */
+    public RecyclerView.RecycledViewPool getAppsViewPool() {
+        if (appsViewPool == null) {
+            appsViewPool = AllAppsContainerView.createSharedViewPool(new DeviceProfile(this).numColumns);
+        }
+        return appsViewPool;
+    }
+
+    private AllAppsContainerView getOrInflateAllApps() {
+        if (allApps == null) {
+            allApps = (AllAppsContainerView) allAppsStub.inflate();
+            allAppsStub = null;
+            allApps.setRecycledViewPool(getAppsViewPool());
+            allApps.setFrameMetricsTracker(frameMetrics);
+            allApps.setOnAppClickListener(allAppsClickListener);
+            allApps.setPredictions(launchHistory.getPredictions());
+            if (pendingAllApps != null) {
+                allApps.setApps(pendingAllApps);
+                pendingAllApps = null;
+            }
+        }
+        return allApps;
     }
 
     private void showHomescreenPopup(ApplicationInfo app) {
@@ -182,13 +601,18 @@ public class Launcher extends AppCompatActivity {
         popup.getMenu().add("App Info");
         popup.setOnMenuItemClickListener(item -> {
             if (item.getTitle().equals("Remove")) {
+                if (app.itemType == ItemInfo.ITEM_TYPE_APPWIDGET) {
+                    appWidgetHost.deleteAppWidgetId(app.appWidgetId);
+                }
                 viewModel.deleteApp(app);
                 Toast.makeText(this, "Removed", Toast.LENGTH_SHORT).show();
             } else {
                 try {
-                    if (app.intent != null && app.intent.getComponent() != null) {
+                    ComponentName cn = app.appWidgetProvider != null ? app.appWidgetProvider
+                            : app.intent != null ? app.intent.getComponent() : null;
+                    if (cn != null) {
                         Intent i = new Intent(Settings.ACTION_APPLICATION_DETAILS_SETTINGS);
-                        i.setData(Uri.parse("package:" + app.intent.getComponent().getPackageName()));
+                        i.setData(Uri.parse("package:" + cn.getPackageName()));
                         startActivity(i);
                     } else {
                         Toast.makeText(this, "No app info available", Toast.LENGTH_SHORT).show();
@@ -202,109 +626,65 @@ public class Launcher extends AppCompatActivity {
         popup.show();
     }
 
-    /**
-     * Insert defaults into DB only when the corresponding launch Intent is actually resolvable.
-     */
-    private void populateDefaultsAndPersist() {
-        PackageManager pm = getPackageManager();
-
-        List<ApplicationInfo> applicationInfoList = new ArrayList<>();
-
-        // Workspace last row (screen 0) - only insert if intent resolves
-        Intent contactsIntent = Util.getContactIntent();
-        if (contactsIntent != null) {
-            applicationInfoList.add(makeAppFromIntent("Contacts", contactsIntent, "workspace", 0, 0, 3));
-            Log.i(TAG, "Inserted Contacts into workspace");
-        }
-
-        Intent phoneIntent = Util.getPhoneAppIntent();
-        if (phoneIntent != null) {
-            applicationInfoList.add(makeAppFromIntent("Phone", phoneIntent, "workspace", 0, 1, 3));
-            Log.i(TAG, "Inserted Phone into workspace");
-        }
+    @Override
+    protected void onStart() {
+        super.onStart();
+        appWidgetHost.startListening();
+    }
 
-        Intent messagesIntent = Util.getMessageIntent();
-        if (messagesIntent != null) {
-            //viewModel.insertApp(makeAppFromIntent("Messages", messagesIntent, "workspace", 0, 2, 3));
-            //Log.i(TAG, "Inserted Messages into workspace");
-        }
+    @Override
+    protected void onStop() {
+        super.onStop();
+        appWidgetHost.stopListening();
+        launchHistory.flush();
+    }
 
-        /*String[] googlePkgs = new String[]{
-                "com.google.android.gm",           // Gmail
-                "com.google.android.apps.maps",   // Maps
-                "com.google.android.youtube",     // YouTube
-                "com.google.android.apps.docs"    // Drive
-        };
-        boolean anyGoogle = false;
-        for (String pkg : googlePkgs) {
-            Intent launch = pm.getLaunchIntentForPackage(pkg);
-            if (launch != null) {
-                ApplicationInfo ai = new ApplicationInfo();
-                ai.title = pkg; // optionally change to human-friendly names
-                ai.intent = launch;
-                ai.container = "folder_google";
-                ai.screen = 0;
-                ai.cellX = 0;
-                ai.cellY = 0;
-                viewModel.insertApp(ai);
-                Log.i(TAG, "Inserted Google app into folder: " + pkg);
-                anyGoogle = true;
-            }
-        }
-        if (anyGoogle) {
-            ApplicationInfo folderPlaceholder = new ApplicationInfo();
-            folderPlaceholder.title = "Google Folder";
-            folderPlaceholder.container = "workspace";
-            folderPlaceholder.screen = 0;
-            folderPlaceholder.cellX = 3;
-            folderPlaceholder.cellY = 3;
-            viewModel.insertApp(folderPlaceholder);
-            Log.i(TAG, "Inserted Google Folder placeholder on workspace");
-        }*/
-
-        Intent cameraIntent = Util.getCameraAppIntent(); // uses MediaStore.INTENT_ACTION_STILL_IMAGE_CAMERA
-        Intent settingsIntent = Util.getSettingAppIntent();
-
-        //Intent[] hotIntents = new Intent[]{contactsIntent, phoneIntent, cameraIntent, settingsIntent};
-        //String[] hotTitles = new String[]{"Contacts", "Phone", "Camera", "Settings"};
-
-        applicationInfoList.add(makeAppFromIntent("Messages", messagesIntent, "hotseat", 0, 0, 0));
-        applicationInfoList.add(makeAppFromIntent("Camera", cameraIntent, "hotseat", 0, 1, 0));
-        applicationInfoList.add(makeAppFromIntent("Settings", settingsIntent, "hotseat", 0, 2, 0));
-
-        /*for (int i = 0; i < hotIntents.length; i++) {
-            Intent intent = hotIntents[i];
-            if (intent != null) {
-                // verify it resolves (Settings normally will)
-                ResolveInfo ri = pm.resolveActivity(intent, PackageManager.MATCH_DEFAULT_ONLY);
-                if (ri != null) {
-                    viewModel.insertApp(makeAppFromIntent(hotTitles[i], intent, "hotseat", 0, i, 0));
-                    Log.i(TAG, "Inserted hotseat item: " + hotTitles[i]);
-                } else {
-                    Log.i(TAG, "Hotseat intent not resolved for: " + hotTitles[i]);
-                }
-            } else {
-                Log.i(TAG, "Hotseat intent null for: " + hotTitles[i]);
-            }
-        }*/
+    @Override
+    protected void onDestroy() {
+        appWidgetHost.cancelAllInflations();
+        closeWidgetsPicker();
+        launchHistory.removeListener(predictionsListener);
+        super.onDestroy();
     }
 
-    private ApplicationInfo makeAppFromIntent(String title, Intent intent, String container, int screen, int cellX, int cellY) {
-        ApplicationInfo ai = new ApplicationInfo();
-        ai.title = title;
-        ai.intent = intent;
-        ai.container = container;
-        ai.screen = screen;
-        ai.cellX = cellX;
-        ai.cellY = cellY;
-        return ai;
+    @Override
+    protected void onResume() {
+        super.onResume();
+        frameMetrics.start(getWindow());
     }
 
+    @Override
+    protected void onPause() {
+        frameMetrics.stop();
+        super.onPause();
+    }
 
+    @Override
+    public void dump(@NonNull String prefix, @Nullable FileDescriptor fd,
+                     @NonNull PrintWriter writer, @Nullable String[] args) {
+        super.dump(prefix, fd, writer, args);
+        writer.println(prefix + "Launcher: gc-count=" + Debug.getRuntimeStat("art.gc.gc-count"));
+        MetricsRegistry.get().dump(prefix + "  ", writer);
+        frameMetrics.dump(prefix + "  ", writer);
+        viewPool.dump(prefix + "  ", writer);
+        viewModel.dump(prefix + "  ", writer);
+        AllAppsSearchScheduler search = allApps != null ? allApps.getSearchScheduler() : null;
+        if (search != null) {
+            search.getLatencyHistogram().dump(prefix + "  ", "searchLatency", writer);
+        }
+    }
 
     @Override
     public void onBackPressed() {
-        if (allApps.isShownPanel()) {
+        if (widgetsPicker != null) {
+            closeWidgetsPicker();
+            return;
+        }
+        if (openFolder != null) {
+            closeFolder();
+            return;
+        }
+        if (allApps != null && allApps.isShownPanel()) {
             allApps.hide();
             return;
         }
@@ -0,0 +1,118 @@
+package com.android.bks.launcher;
+
+import android.appwidget.AppWidgetHost;
+import android.appwidget.AppWidgetHostView;
+import android.appwidget.AppWidgetManager;
+import android.appwidget.AppWidgetProviderInfo;
+import android.content.Context;
+import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
+import android.view.Choreographer;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LauncherAppWidgetHost - hosts the workspace widgets. Binding a widget item only creates
+ * its {@link LauncherWidgetView} placeholder; the AppWidgetHostViews are created here
+ * afterwards, a few per frame, so a bind never waits for widget inflation. On Q and
+ * later the RemoteViews of a host view are also inflated on a background thread.
+ */
+public class LauncherAppWidgetHost extends AppWidgetHost {
+
+    public static final int APPWIDGET_HOST_ID = 1024;
+
+    /** Main-thread time per frame spent on creating host views. */
+    private static final long FRAME_BUDGET_NANOS = 4_000_000L;
+
+    private static final MetricsRegistry.Counter VIEWS_CREATED = MetricsRegistry.get().counter("widgets.host_views_created");
+    private static final LatencyHistogram CREATE_MS = MetricsRegistry.get().histogram("widgets.create_view_ms");
+
+    private final Context context;
+    private final AppWidgetManager appWidgetManager;
+    private final ArrayDeque<LauncherWidgetView> pending = new ArrayDeque<>();
+    private final Executor inflationExecutor;
+    private boolean frameCallbackPosted;
+
+    private final Choreographer.FrameCallback createPendingViews = frameTimeNanos -> {
+        frameCallbackPosted = false;
+        long deadline = System.nanoTime() + FRAME_BUDGET_NANOS;
+        while (!pending.isEmpty() && System.nanoTime() < deadline) {
+            createHostView(pending.poll());
+        }
+        if (!pending.isEmpty()) postFrameCallback();
+    };
+
+    public LauncherAppWidgetHost(Context context) {
+        super(context, APPWIDGET_HOST_ID);
+        this.context = context;
+        appWidgetManager = AppWidgetManager.getInstance(context);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 10, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(() -> {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        r.run();
+                    }, "widget-inflation");
+                    t.setDaemon(true);
+                    return t;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        inflationExecutor = executor;
+    }
+
+    @Override
+    protected AppWidgetHostView onCreateView(Context context, int appWidgetId, AppWidgetProviderInfo appWidget) {
+        AppWidgetHostView view = new AppWidgetHostView(context);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            // createView() applies the current RemoteViews right after this returns
+            view.setExecutor(inflationExecutor);
+        }
+        return view;
+    }
+
+    /** Queues creation of the host view shown inside the given placeholder. */
+    public void inflateAsync(LauncherWidgetView view) {
+        if (pending.contains(view)) return;
+        pending.add(view);
+        postFrameCallback();
+    }
+
+    /** Drops a queued creation, e.g. when the item view was recycled before it ran. */
+    public void cancelInflation(LauncherWidgetView view) {
+        pending.remove(view);
+    }
+
+    /** Drops all queued creations; the views' context is going away. */
+    public void cancelAllInflations() {
+        pending.clear();
+        if (frameCallbackPosted) {
+            frameCallbackPosted = false;
+            Choreographer.getInstance().removeFrameCallback(createPendingViews);
+        }
+    }
+
+    private void postFrameCallback() {
+        if (frameCallbackPosted) return;
+        frameCallbackPosted = true;
+        Choreographer.getInstance().postFrameCallback(createPendingViews);
+    }
+
+    private void createHostView(LauncherWidgetView view) {
+        ApplicationInfo item = view.getItemInfo();
+        if (item == null) return;
+        AppWidgetProviderInfo info = appWidgetManager.getAppWidgetInfo(item.appWidgetId);
+        if (info == null) {
+            view.showUnavailable();
+            return;
+        }
+        long start = SystemClock.uptimeMillis();
+        AppWidgetHostView hostView = createView(context, item.appWidgetId, info);
+        view.setHostView(hostView);
+        CREATE_MS.record(SystemClock.uptimeMillis() - start);
+        VIEWS_CREATED.inc();
+    }
+}
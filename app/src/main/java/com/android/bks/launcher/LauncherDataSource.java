@@ -1,15 +1,26 @@
 package com.android.bks.launcher;
 
+import android.content.ComponentName;
+import android.content.ContentProviderOperation;
 import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.Intent;
+import android.content.OperationApplicationException;
 import android.database.Cursor;
+import android.os.RemoteException;
+import android.text.TextUtils;
+import android.util.Log;
 
 
+import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 
 public class LauncherDataSource {
+    private static final String TAG = "HOMETEST_LauncherDataSource";
+    private static final int MAX_SELECTION_ARGS = 500;
     private final ContentResolver resolver;
 
     public LauncherDataSource(Context context) {
@@ -17,57 +28,159 @@ public class LauncherDataSource {
     }
 
     public List<ApplicationInfo> getAllApps() {
-        List<ApplicationInfo> apps = new ArrayList<>();
         Cursor c = resolver.query(LauncherProvider.CONTENT_URI, null, null, null,
                 "title COLLATE NOCASE ASC");
-        if (c != null) {
-            while (c.moveToNext()) {
-                ApplicationInfo ai = cursorToApp(c);
-                apps.add(ai);
-            }
-            c.close();
+        return readApps(c);
+    }
+
+    /**
+     * The order of {@link #getAllApps}, for merging rows into a loaded list. NOCASE only
+     * folds ASCII letters and otherwise compares UTF-8 bytes, i.e. code points; NULL first.
+     */
+    static final Comparator<ApplicationInfo> TITLE_ORDER = (a, b) -> {
+        if (a.title == null) return b.title == null ? 0 : -1;
+        if (b.title == null) return 1;
+        return compareNoCase(a.title, b.title);
+    };
+
+    static int compareNoCase(String a, String b) {
+        int i = 0, j = 0;
+        while (i < a.length() && j < b.length()) {
+            int ca = a.codePointAt(i);
+            int cb = b.codePointAt(j);
+            if (ca >= 'A' && ca <= 'Z') ca += 'a' - 'A';
+            if (cb >= 'A' && cb <= 'Z') cb += 'a' - 'A';
+            if (ca != cb) return ca < cb ? -1 : 1;
+            i += Character.charCount(ca);
+            j += Character.charCount(cb);
         }
-        return apps;
+        return Boolean.compare(i < a.length(), j < b.length());
     }
 
     public List<ApplicationInfo> getWorkspaceApps() {
-        List<ApplicationInfo> apps = new ArrayList<>();
-        Cursor c = resolver.query(LauncherProvider.CONTENT_URI, null, "container=?", new String[]{"workspace"},
-                "screen ASC, cellY ASC, cellX ASC");
-        if (c != null) {
-            while (c.moveToNext()) apps.add(cursorToApp(c));
-            c.close();
+        Cursor c = resolver.query(LauncherProvider.CONTENT_URI, null,
+                "container=" + ItemInfo.CONTAINER_DESKTOP, null, "screen ASC, cellY ASC, cellX ASC");
+        return readApps(c);
+    }
+
+    public List<ApplicationInfo> getHotseatApps() {
+        Cursor c = resolver.query(LauncherProvider.CONTENT_URI, null,
+                "container=" + ItemInfo.CONTAINER_HOTSEAT, null, "cellX ASC");
+        return readApps(c);
+    }
+
+    /** Rows with the given ids; ids without a row (deleted) are simply missing. */
+    public List<ApplicationInfo> getAppsByIds(long[] ids) {
+        List<ApplicationInfo> apps = new ArrayList<>(ids.length);
+        // stay below SQLite's bound-parameter limit
+        for (int from = 0; from < ids.length; from += MAX_SELECTION_ARGS) {
+            int n = Math.min(MAX_SELECTION_ARGS, ids.length - from);
+            StringBuilder sel = new StringBuilder("_id IN (");
+            String[] args = new String[n];
+            for (int i = 0; i < n; i++) {
+                sel.append(i == 0 ? "?" : ",?");
+                args[i] = String.valueOf(ids[from + i]);
+            }
+            sel.append(')');
+            apps.addAll(readApps(resolver.query(LauncherProvider.CONTENT_URI, null, sel.toString(), args, null)));
         }
         return apps;
     }
 
-    public List<ApplicationInfo> getHotseatApps() {
-        List<ApplicationInfo> apps = new ArrayList<>();
-        Cursor c = resolver.query(LauncherProvider.CONTENT_URI, null, "container=?", new String[]{"hotseat"},
-                "cellX ASC");
-        if (c != null) {
-            while (c.moveToNext()) apps.add(cursorToApp(c));
+    /**
+     * Hotseat plus the workspace items of the first screen, i.e. what startup shows first,
+     * and the contents of folders among them.
+     */
+    public List<ApplicationInfo> getFirstScreenAndHotseat() {
+        String firstScreen = "container=" + ItemInfo.CONTAINER_HOTSEAT
+                + " OR (container=" + ItemInfo.CONTAINER_DESKTOP + " AND screen="
+                + "(SELECT MIN(screen) FROM favorites WHERE container=" + ItemInfo.CONTAINER_DESKTOP + "))";
+        Cursor c = resolver.query(LauncherProvider.CONTENT_URI, null,
+                firstScreen + " OR container IN (SELECT _id FROM favorites WHERE itemType="
+                        + ItemInfo.ITEM_TYPE_FOLDER + " AND (" + firstScreen + "))",
+                null, "screen ASC, cellY ASC, cellX ASC");
+        return readApps(c);
+    }
+
+    /** Reads and closes the cursor; column indices are resolved once, not per row. */
+    static List<ApplicationInfo> readApps(Cursor c) {
+        if (c == null) return new ArrayList<>();
+        try {
+            List<ApplicationInfo> apps = new ArrayList<>(Math.max(0, c.getCount()));
+            Columns cols = new Columns(c);
+            while (c.moveToNext()) apps.add(cursorToApp(c, cols));
+            return apps;
+        } finally {
             c.close();
         }
-        return apps;
     }
 
     public void insertApp(ApplicationInfo app) {
-        ContentValues v = appToContentValues(app);
+        ContentValues v = itemToContentValues(app);
         resolver.insert(LauncherProvider.CONTENT_URI, v);
     }
 
+    /**
+     * Inserts all items in one provider transaction. The contents of a {@link FolderInfo}
+     * are inserted right after it with their container set to the folder's new id.
+     */
+    public void insertItems(List<? extends ItemInfo> items) {
+        ArrayList<ContentProviderOperation> ops = new ArrayList<>(items.size());
+        for (ItemInfo item : items) {
+            ops.add(ContentProviderOperation.newInsert(LauncherProvider.CONTENT_URI)
+                    .withValues(itemToContentValues(item))
+                    .build());
+            if (item instanceof FolderInfo) {
+                int folderOp = ops.size() - 1;
+                for (ApplicationInfo child : ((FolderInfo) item).contents) {
+                    ops.add(ContentProviderOperation.newInsert(LauncherProvider.CONTENT_URI)
+                            .withValues(itemToContentValues(child))
+                            .withValueBackReference("container", folderOp)
+                            .build());
+                }
+            }
+        }
+        try {
+            resolver.applyBatch(LauncherProvider.AUTHORITY, ops);
+        } catch (RemoteException | OperationApplicationException e) {
+            Log.e(TAG, "insertItems(): batch failed", e);
+        }
+    }
+
     public void updateApp(ApplicationInfo app) {
-        ContentValues v = new ContentValues();
-        v.put("screen", app.screen);
-        v.put("cellX", app.cellX);
-        v.put("cellY", app.cellY);
-        v.put("container", app.container);
+        ContentValues v = positionValues(app);
         String sel = "_id=?";
         String[] args = { String.valueOf(app.id) };
         resolver.update(LauncherProvider.CONTENT_URI, v, sel, args);
     }
 
+    /** Writes the positions of all given items in one provider transaction. */
+    public void updateApps(List<? extends ItemInfo> items) {
+        ArrayList<ContentProviderOperation> ops = new ArrayList<>(items.size());
+        for (ItemInfo item : items) {
+            ops.add(ContentProviderOperation.newUpdate(LauncherProvider.CONTENT_URI)
+                    .withValues(positionValues(item))
+                    .withSelection("_id=?", new String[]{ String.valueOf(item.id) })
+                    .build());
+        }
+        try {
+            resolver.applyBatch(LauncherProvider.AUTHORITY, ops);
+        } catch (RemoteException | OperationApplicationException e) {
+            Log.e(TAG, "updateApps(): batch failed", e);
+        }
+    }
+
+    private ContentValues positionValues(ItemInfo item) {
+        ContentValues v = new ContentValues();
+        v.put("screen", item.screen);
+        v.put("cellX", item.cellX);
+        v.put("cellY", item.cellY);
+        v.put("spanX", item.spanX);
+        v.put("spanY", item.spanY);
+        v.put("container", item.container);
+        return v;
+    }
+
     public void deleteApp(ApplicationInfo app) {
         String sel = "_id=?";
         String[] args = { String.valueOf(app.id) };
@@ -84,26 +197,73 @@ public class LauncherDataSource {
         return empty;
     }
 
-    private ApplicationInfo cursorToApp(Cursor c) {
+    /** Column indices of a favorites cursor. */
+    static final class Columns {
+        final int id, title, intent, screen, cellX, cellY, spanX, spanY, container, itemType;
+        final int appWidgetId, appWidgetProvider;
+
+        Columns(Cursor c) {
+            id = c.getColumnIndexOrThrow("_id");
+            title = c.getColumnIndexOrThrow("title");
+            intent = c.getColumnIndexOrThrow("intent");
+            screen = c.getColumnIndexOrThrow("screen");
+            cellX = c.getColumnIndexOrThrow("cellX");
+            cellY = c.getColumnIndexOrThrow("cellY");
+            spanX = c.getColumnIndexOrThrow("spanX");
+            spanY = c.getColumnIndexOrThrow("spanY");
+            container = c.getColumnIndexOrThrow("container");
+            itemType = c.getColumnIndexOrThrow("itemType");
+            appWidgetId = c.getColumnIndexOrThrow("appWidgetId");
+            appWidgetProvider = c.getColumnIndexOrThrow("appWidgetProvider");
+        }
+    }
+
+    static ApplicationInfo cursorToApp(Cursor c, Columns cols) {
         ApplicationInfo ai = new ApplicationInfo();
-        ai.id = c.getLong(c.getColumnIndex("_id"));
-        ai.title = c.getString(c.getColumnIndex("title"));
-        ai.screen = c.getInt(c.getColumnIndex("screen"));
-        ai.cellX = c.getInt(c.getColumnIndex("cellX"));
-        ai.cellY = c.getInt(c.getColumnIndex("cellY"));
-        ai.container = c.getString(c.getColumnIndex("container"));
-        // intent leaving null for now (we can parse if stored)
+        ai.id = c.getLong(cols.id);
+        ai.title = c.getString(cols.title);
+        ai.screen = c.getInt(cols.screen);
+        ai.cellX = c.getInt(cols.cellX);
+        ai.cellY = c.getInt(cols.cellY);
+        ai.spanX = c.getInt(cols.spanX);
+        ai.spanY = c.getInt(cols.spanY);
+        ai.container = c.getLong(cols.container);
+        ai.itemType = c.getInt(cols.itemType);
+        if (ai.itemType == ItemInfo.ITEM_TYPE_APPWIDGET) {
+            ai.appWidgetId = c.getInt(cols.appWidgetId);
+            String provider = c.getString(cols.appWidgetProvider);
+            if (provider != null) ai.appWidgetProvider = ComponentName.unflattenFromString(provider);
+        }
+        String uri = c.getString(cols.intent);
+        if (!TextUtils.isEmpty(uri)) {
+            try {
+                ai.intent = Intent.parseUri(uri, 0);
+            } catch (URISyntaxException e) {
+                Log.w(TAG, "cursorToApp(): bad intent for id=" + ai.id);
+            }
+        }
         return ai;
     }
 
-    private ContentValues appToContentValues(ApplicationInfo app) {
-        ContentValues v = new ContentValues();
-        v.put("title", app.title);
-        v.put("container", app.container);
-        v.put("screen", app.screen);
-        v.put("cellX", app.cellX);
-        v.put("cellY", app.cellY);
-        v.put("intent", app.intent != null ? app.intent.toUri(0) : "");
+    private ContentValues itemToContentValues(ItemInfo item) {
+        ContentValues v = positionValues(item);
+        String title = null;
+        Intent intent = null;
+        if (item instanceof ApplicationInfo) {
+            ApplicationInfo app = (ApplicationInfo) item;
+            title = app.title;
+            intent = app.intent;
+            if (app.itemType == ItemInfo.ITEM_TYPE_APPWIDGET) {
+                v.put("appWidgetId", app.appWidgetId);
+                v.put("appWidgetProvider", app.appWidgetProvider != null
+                        ? app.appWidgetProvider.flattenToString() : null);
+            }
+        } else if (item instanceof FolderInfo) {
+            title = ((FolderInfo) item).title;
+        }
+        v.put("title", title);
+        v.put("intent", intent != null ? intent.toUri(0) : "");
+        v.put("itemType", item.itemType);
         return v;
     }
 }
@@ -0,0 +1,97 @@
+package com.android.bks.launcher
+
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.channels.BufferOverflow
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.MutableSharedFlow
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.SharedFlow
+import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.asSharedFlow
+import kotlinx.coroutines.flow.asStateFlow
+import kotlinx.coroutines.flow.conflate
+import kotlinx.coroutines.flow.distinctUntilChanged
+import kotlinx.coroutines.flow.flowOn
+import kotlinx.coroutines.flow.map
+import kotlinx.coroutines.flow.mapNotNull
+
+/**
+ * LauncherModelFlows - Flow view of the launcher model, fed by [LauncherRepository] from the
+ * model thread. [state] is conflated: a slow collector only sees the latest snapshot.
+ * [deltas] carries what changed between snapshots; it buffers [DELTA_BUFFER] events and
+ * drops the oldest beyond that, so collectors that fall behind re-sync from [state].
+ */
+class LauncherModelFlows {
+
+    private val _state = MutableStateFlow<ModelState>(ModelState.Loading)
+    val state: StateFlow<ModelState> = _state.asStateFlow()
+
+    private val _deltas = MutableSharedFlow<ModelDelta>(
+        extraBufferCapacity = DELTA_BUFFER,
+        onBufferOverflow = BufferOverflow.DROP_OLDEST
+    )
+    val deltas: SharedFlow<ModelDelta> = _deltas.asSharedFlow()
+
+    // model thread only: fields of the last published snapshot, by id
+    private var published: Map<Long, Snapshot>? = null
+
+    private data class Snapshot(
+        val container: Long, val screen: Int, val cellX: Int, val cellY: Int,
+        val spanX: Int, val spanY: Int, val title: String?
+    )
+
+    /** Publishes a freshly loaded list; call from the model thread. */
+    fun publish(apps: List<ApplicationInfo>) {
+        val current = HashMap<Long, Snapshot>(apps.size * 2)
+        for (ai in apps) {
+            current[ai.id] = Snapshot(ai.container, ai.screen, ai.cellX, ai.cellY, ai.spanX, ai.spanY, ai.title)
+        }
+        val previous = published
+        published = current
+        if (previous == null) {
+            _state.value = ModelState.FirstBind(apps)
+            return
+        }
+        _state.value = ModelState.Update(apps)
+
+        val added = ArrayList<ApplicationInfo>()
+        val updated = ArrayList<ApplicationInfo>()
+        for (ai in apps) {
+            val before = previous[ai.id]
+            if (before == null) added.add(ai) else if (before != current[ai.id]) updated.add(ai)
+        }
+        val removed = previous.keys.filterNot { current.containsKey(it) }
+        if (added.isNotEmpty()) _deltas.tryEmit(ModelDelta.Added(added))
+        if (updated.isNotEmpty()) _deltas.tryEmit(ModelDelta.Updated(updated))
+        if (removed.isNotEmpty()) _deltas.tryEmit(ModelDelta.Removed(removed.toLongArray()))
+    }
+
+    /**
+     * Items of one container ([ItemInfo.CONTAINER_DESKTOP], [ItemInfo.CONTAINER_HOTSEAT] or a
+     * folder id), filtered on [Dispatchers.Default]. Emits only when the filtered list changes.
+     */
+    fun itemsIn(container: Long): Flow<List<ApplicationInfo>> =
+        state.mapNotNull { it.apps }
+            .map { apps -> apps.filter { it.container == container } }
+            .distinctUntilChanged(::sameItems)
+            .flowOn(Dispatchers.Default)
+            .conflate()
+
+    companion object {
+        const val DELTA_BUFFER = 64
+
+        /** Loads produce new objects every time, so compare the fields observers draw from. */
+        private fun sameItems(a: List<ApplicationInfo>, b: List<ApplicationInfo>): Boolean {
+            if (a.size != b.size) return false
+            for (i in a.indices) {
+                val x = a[i]
+                val y = b[i]
+                if (x.id != y.id || x.screen != y.screen || x.cellX != y.cellX || x.cellY != y.cellY
+                    || x.spanX != y.spanX || x.spanY != y.spanY || x.title != y.title
+                    || x.icon !== y.icon || x.container != y.container
+                ) return false
+            }
+            return true
+        }
+    }
+}
@@ -1,22 +1,41 @@
 package com.android.bks.launcher;
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.net.Uri;
+import android.os.SystemClock;
+import android.text.TextUtils;
 import android.content.Context;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * LauncherProvider - favorites table. Change notifications go to {@link #CONTENT_URI} with the
+ * affected row ids in the {@link #PARAM_IDS} query parameter; changes made inside
+ * {@link #applyBatch} or {@link #bulkInsert} are sent as one notification when the
+ * transaction commits.
+ */
 public class LauncherProvider extends ContentProvider {
 
     public static final String AUTHORITY = "com.android.bks.launcher.settings";
     public static final Uri CONTENT_URI = Uri.parse("content://" + AUTHORITY + "/favorites");
 
+    /** Comma separated ids of the changed rows; absent when everything may have changed. */
+    public static final String PARAM_IDS = "ids";
+    /** Above this many ids a notification carries none and observers reload everything. */
+    private static final int MAX_NOTIFY_IDS = 500;
+
     private static final int FAVORITES = 1;
     private static final int FAVORITE_ID = 2;
 
@@ -26,7 +45,16 @@ public class LauncherProvider extends ContentProvider {
         sUriMatcher.addURI(AUTHORITY, "favorites/#", FAVORITE_ID);
     }
 
+    private static final LatencyHistogram QUERY_MS = MetricsRegistry.get().histogram("provider.query_ms");
+    private static final LatencyHistogram INSERT_MS = MetricsRegistry.get().histogram("provider.insert_ms");
+    private static final LatencyHistogram UPDATE_MS = MetricsRegistry.get().histogram("provider.update_ms");
+    private static final LatencyHistogram DELETE_MS = MetricsRegistry.get().histogram("provider.delete_ms");
+
+    private static final MetricsRegistry.Counter NOTIFICATIONS = MetricsRegistry.get().counter("provider.notifications");
+
     private LauncherDbHelper mDbHelper;
+    /** Ids changed by the batch running on this thread, null outside of batches. */
+    private final ThreadLocal<ArrayList<Long>> mBatchIds = new ThreadLocal<>();
 
     @Override
     public boolean onCreate() {
@@ -38,6 +66,7 @@ public class LauncherProvider extends ContentProvider {
     @Override
     public Cursor query(@NonNull Uri uri, @Nullable String[] projection, @Nullable String selection,
                         @Nullable String[] selectionArgs, @Nullable String sortOrder) {
+        long start = SystemClock.uptimeMillis();
         SQLiteDatabase db = mDbHelper.getReadableDatabase();
         Cursor c;
         switch (sUriMatcher.match(uri)) {
@@ -52,6 +81,8 @@ public class LauncherProvider extends ContentProvider {
                 throw new IllegalArgumentException("Unknown URI: " + uri);
         }
         c.setNotificationUri(getContext().getContentResolver(), uri);
+        c.getCount(); // runs the query now, so the time below includes it
+        QUERY_MS.record(SystemClock.uptimeMillis() - start);
         return c;
     }
 
@@ -62,11 +93,12 @@ public class LauncherProvider extends ContentProvider {
         long rowId;
         switch (sUriMatcher.match(uri)) {
             case FAVORITES:
+                long start = SystemClock.uptimeMillis();
                 rowId = db.insert("favorites", null, values);
+                INSERT_MS.record(SystemClock.uptimeMillis() - start);
                 if (rowId > 0) {
-                    Uri newUri = ContentUris.withAppendedId(CONTENT_URI, rowId);
-                    getContext().getContentResolver().notifyChange(newUri, null);
-                    return newUri;
+                    onRowsChanged(new long[]{rowId});
+                    return ContentUris.withAppendedId(CONTENT_URI, rowId);
                 }
                 break;
             default:
@@ -78,42 +110,134 @@ public class LauncherProvider extends ContentProvider {
     @Override
     public int update(@NonNull Uri uri, @Nullable ContentValues values, @Nullable String selection,
                       @Nullable String[] selectionArgs) {
+        long start = SystemClock.uptimeMillis();
         SQLiteDatabase db = mDbHelper.getWritableDatabase();
         int count;
+        long[] ids;
         switch (sUriMatcher.match(uri)) {
             case FAVORITES:
+                ids = queryIds(db, selection, selectionArgs);
                 count = db.update("favorites", values, selection, selectionArgs);
                 break;
             case FAVORITE_ID:
                 long id = ContentUris.parseId(uri);
+                ids = new long[]{id};
                 count = db.update("favorites", values, "_id=?", new String[]{String.valueOf(id)});
                 break;
             default:
                 throw new IllegalArgumentException("Unknown URI: " + uri);
         }
-        if (count > 0) getContext().getContentResolver().notifyChange(uri, null);
+        UPDATE_MS.record(SystemClock.uptimeMillis() - start);
+        if (count > 0) onRowsChanged(ids);
         return count;
     }
 
     @Override
     public int delete(@NonNull Uri uri, @Nullable String selection, @Nullable String[] selectionArgs) {
+        long start = SystemClock.uptimeMillis();
         SQLiteDatabase db = mDbHelper.getWritableDatabase();
         int count;
+        long[] ids;
         switch (sUriMatcher.match(uri)) {
             case FAVORITES:
+                ids = queryIds(db, selection, selectionArgs);
                 count = db.delete("favorites", selection, selectionArgs);
                 break;
             case FAVORITE_ID:
                 long id = ContentUris.parseId(uri);
+                ids = new long[]{id};
                 count = db.delete("favorites", "_id=?", new String[]{String.valueOf(id)});
                 break;
             default:
                 throw new IllegalArgumentException("Unknown URI: " + uri);
         }
-        if (count > 0) getContext().getContentResolver().notifyChange(uri, null);
+        DELETE_MS.record(SystemClock.uptimeMillis() - start);
+        if (count > 0) onRowsChanged(ids);
         return count;
     }
 
+    /** Ids of the rows a selection is about to touch, so the notification can name them. */
+    private static long[] queryIds(SQLiteDatabase db, String selection, String[] selectionArgs) {
+        try (Cursor c = db.query("favorites", new String[]{"_id"}, selection, selectionArgs,
+                null, null, null)) {
+            long[] ids = new long[c.getCount()];
+            for (int i = 0; c.moveToNext(); i++) ids[i] = c.getLong(0);
+            return ids;
+        }
+    }
+
+    private void onRowsChanged(long[] ids) {
+        ArrayList<Long> batch = mBatchIds.get();
+        if (batch != null) {
+            for (long id : ids) batch.add(id);
+            return;
+        }
+        ArrayList<Long> list = new ArrayList<>(ids.length);
+        for (long id : ids) list.add(id);
+        notifyChanged(list);
+    }
+
+    private void notifyChanged(Collection<Long> ids) {
+        if (ids.isEmpty()) return;
+        NOTIFICATIONS.inc();
+        Uri uri = ids.size() > MAX_NOTIFY_IDS ? CONTENT_URI
+                : CONTENT_URI.buildUpon().appendQueryParameter(PARAM_IDS, TextUtils.join(",", ids)).build();
+        getContext().getContentResolver().notifyChange(uri, null);
+    }
+
+    /** Ids named by a change notification, or null if any row may have changed. */
+    @Nullable
+    public static long[] parseNotifiedIds(Uri uri) {
+        String param = uri.getQueryParameter(PARAM_IDS);
+        if (param == null) return null;
+        String[] parts = param.split(",");
+        long[] ids = new long[parts.length];
+        try {
+            for (int i = 0; i < parts.length; i++) ids[i] = Long.parseLong(parts[i]);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return ids;
+    }
+
+    private interface BatchOp<T, E extends Exception> { T run() throws E; }
+
+    /** Runs op in a transaction; its notifications are collected and sent once it committed. */
+    private <T, E extends Exception> T runBatch(BatchOp<T, E> op) throws E {
+        if (mBatchIds.get() != null) return op.run(); // nested; the outer batch notifies
+        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        ArrayList<Long> ids = new ArrayList<>();
+        mBatchIds.set(ids);
+        boolean success = false;
+        db.beginTransaction();
+        try {
+            T result = op.run();
+            db.setTransactionSuccessful();
+            success = true;
+            return result;
+        } finally {
+            db.endTransaction();
+            mBatchIds.remove();
+            if (success) notifyChanged(ids);
+        }
+    }
+
+    /**
+     * Applies all operations in a single transaction, so a batch either lands completely
+     * or not at all, costs one commit and sends one notification.
+     */
+    @NonNull
+    @Override
+    public ContentProviderResult[] applyBatch(@NonNull ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        return runBatch(() -> super.applyBatch(operations));
+    }
+
+    @Override
+    public int bulkInsert(@NonNull Uri uri, @NonNull ContentValues[] values) {
+        return runBatch(() -> super.bulkInsert(uri, values));
+    }
+
     @Nullable
     @Override
     public String getType(@NonNull Uri uri) {
@@ -130,29 +254,87 @@ public class LauncherProvider extends ContentProvider {
     // Internal DB helper
     private static class LauncherDbHelper extends android.database.sqlite.SQLiteOpenHelper {
         private static final String DB_NAME = "launcher.db";
-        private static final int DB_VERSION = 1;
+        // 2: integer container (ItemInfo.CONTAINER_* or the parent folder's _id) and itemType
+        // 3: appWidgetId and appWidgetProvider for ITEM_TYPE_APPWIDGET rows
+        private static final int DB_VERSION = 3;
 
         LauncherDbHelper(Context context) { super(context, DB_NAME, null, DB_VERSION); }
 
         @Override
         public void onCreate(SQLiteDatabase db) {
+            createFavoritesTable(db);
+            createIndex(db);
+        }
+
+        private static void createFavoritesTable(SQLiteDatabase db) {
             db.execSQL("CREATE TABLE IF NOT EXISTS favorites (" +
                     "_id INTEGER PRIMARY KEY AUTOINCREMENT," +
                     "title TEXT," +
                     "intent TEXT," +
-                    "container TEXT," +    // "workspace","hotseat","folder","all_apps"
+                    "container INTEGER NOT NULL DEFAULT " + ItemInfo.CONTAINER_DESKTOP + "," +
                     "screen INTEGER DEFAULT 0," +
                     "cellX INTEGER DEFAULT 0," +
                     "cellY INTEGER DEFAULT 0," +
                     "spanX INTEGER DEFAULT 1," +
                     "spanY INTEGER DEFAULT 1," +
-                    "itemType TEXT DEFAULT 'APPLICATION'" + // could be FOLDER, APPLICATION
+                    "itemType INTEGER NOT NULL DEFAULT " + ItemInfo.ITEM_TYPE_APPLICATION + "," +
+                    "appWidgetId INTEGER NOT NULL DEFAULT " + ItemInfo.NO_ID + "," +
+                    "appWidgetProvider TEXT" +
                     ")");
         }
 
+        /** Serves the container=? and first-screen queries. */
+        private static void createIndex(SQLiteDatabase db) {
+            db.execSQL("CREATE INDEX IF NOT EXISTS favorites_container ON favorites (container, screen)");
+        }
+
         @Override
         public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-            // No-op for now
+            if (oldVersion < 2) migrateToIntegerContainers(db);
+            if (oldVersion < 3) addAppWidgetColumns(db);
+        }
+
+        /**
+         * v1 stored container and itemType as text. Contents of the single "folder_google"
+         * folder now point at the folder row (the FOLDER item, or the legacy row titled
+         * "Google Folder"); without one they keep NO_ID and stay hidden, as before.
+         * onUpgrade already runs in a transaction.
+         */
+        private static void migrateToIntegerContainers(SQLiteDatabase db) {
+            // the v2 columns only; v3 adds the widget columns afterwards
+            db.execSQL("CREATE TABLE favorites_v2 (" +
+                    "_id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                    "title TEXT," +
+                    "intent TEXT," +
+                    "container INTEGER NOT NULL DEFAULT " + ItemInfo.CONTAINER_DESKTOP + "," +
+                    "screen INTEGER DEFAULT 0," +
+                    "cellX INTEGER DEFAULT 0," +
+                    "cellY INTEGER DEFAULT 0," +
+                    "spanX INTEGER DEFAULT 1," +
+                    "spanY INTEGER DEFAULT 1," +
+                    "itemType INTEGER NOT NULL DEFAULT " + ItemInfo.ITEM_TYPE_APPLICATION +
+                    ")");
+            String isFolder = "(itemType='FOLDER' OR title='Google Folder')";
+            db.execSQL("INSERT INTO favorites_v2 "
+                    + "(_id, title, intent, container, screen, cellX, cellY, spanX, spanY, itemType) "
+                    + "SELECT _id, title, intent, "
+                    + "CASE container"
+                    + " WHEN 'hotseat' THEN " + ItemInfo.CONTAINER_HOTSEAT
+                    + " WHEN 'folder_google' THEN COALESCE("
+                    + "(SELECT MIN(_id) FROM favorites WHERE " + isFolder + "), " + ItemInfo.NO_ID + ")"
+                    + " ELSE " + ItemInfo.CONTAINER_DESKTOP + " END, "
+                    + "screen, cellX, cellY, spanX, spanY, "
+                    + "CASE WHEN " + isFolder + " THEN " + ItemInfo.ITEM_TYPE_FOLDER
+                    + " ELSE " + ItemInfo.ITEM_TYPE_APPLICATION + " END "
+                    + "FROM favorites");
+            db.execSQL("DROP TABLE favorites");
+            db.execSQL("ALTER TABLE favorites_v2 RENAME TO favorites");
+            createIndex(db);
+        }
+
+        private static void addAppWidgetColumns(SQLiteDatabase db) {
+            db.execSQL("ALTER TABLE favorites ADD COLUMN appWidgetId INTEGER NOT NULL DEFAULT " + ItemInfo.NO_ID);
+            db.execSQL("ALTER TABLE favorites ADD COLUMN appWidgetProvider TEXT");
         }
     }
 }
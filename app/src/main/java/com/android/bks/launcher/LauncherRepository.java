@@ -1,70 +1,232 @@
 package com.android.bks.launcher;
 
 import android.content.Context;
+import android.database.ContentObserver;
+import android.net.Uri;
+import android.os.SystemClock;
 import android.util.Log;
 
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 
 
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
 
 /**
- * LauncherRepository - central data access
+ * LauncherRepository - central data access. Writes are not followed by reloads; the
+ * provider's change notifications name the touched rows and only those are re-read and
+ * merged into the current snapshot.
  */
 public class LauncherRepository {
     private final String TAG = "HOMETEST_LauncherRepository";
+    private final Context context;
     private final LauncherDataSource dataSource;
+    private final IconCache iconCache;
     private final MutableLiveData<List<ApplicationInfo>> appsLive = new MutableLiveData<>();
-    private final Executor bg = Executors.newSingleThreadExecutor();
+    private final MutableLiveData<List<ApplicationInfo>> firstScreenLive = new MutableLiveData<>();
+    private volatile boolean fullyLoaded;
+    private final LauncherModelFlows modelFlows = new LauncherModelFlows();
+    private final ModelExecutor bg = new ModelExecutor("launcher-model");
+    /** Collapse key of full reloads; only the latest pending one runs. */
+    private static final Object LOAD_ALL = new Object();
+    private static final Object LOAD_FIRST_SCREEN = new Object();
+    private static final Object REFRESH = new Object();
+
+    // model thread only: the last published list
+    private List<ApplicationInfo> snapshot;
+
+    // ids named by notifications that no refresh has picked up yet; guarded by itself
+    private final HashSet<Long> pendingRefreshIds = new HashSet<>();
+    private boolean pendingFullReload;
+
+    private final ContentObserver observer = new ContentObserver(null) {
+        @Override
+        public void onChange(boolean selfChange, Uri uri) {
+            onProviderChanged(uri);
+        }
+    };
+
+    private static final LatencyHistogram LOAD_ALL_MS = MetricsRegistry.get().histogram("model.load_all_ms");
+    private static final LatencyHistogram LOAD_FIRST_SCREEN_MS = MetricsRegistry.get().histogram("model.load_first_screen_ms");
+    private static final LatencyHistogram LOAD_ICONS_MS = MetricsRegistry.get().histogram("model.load_icons_ms");
+    private static final LatencyHistogram IMPORT_LAYOUT_MS = MetricsRegistry.get().histogram("model.import_default_layout_ms");
+    private static final MetricsRegistry.Counter ROWS_REFRESHED = MetricsRegistry.get().counter("model.rows_refreshed");
+    private static final MetricsRegistry.Gauge ROWS_LOADED = MetricsRegistry.get().gauge("model.rows_loaded");
 
     public LauncherRepository(Context context) {
+        this.context = context;
         dataSource = new LauncherDataSource(context);
+        iconCache = IconCacheHolder.get(context);
+        context.getContentResolver().registerContentObserver(LauncherProvider.CONTENT_URI, true, observer);
         Log.i(TAG , "LauncherRepository(): created");
     }
 
+    /** Stops observing the provider and ends the model thread once queued writes are done. */
+    public void close() {
+        context.getContentResolver().unregisterContentObserver(observer);
+        bg.shutdown();
+    }
+
     public LiveData<List<ApplicationInfo>> getAppsLive() { return appsLive; }
 
+    /**
+     * Hotseat and first-screen items, published ahead of the full model while nothing has
+     * been loaded yet. Observers should ignore it once {@link #getAppsLive()} delivered.
+     */
+    public LiveData<List<ApplicationInfo>> getFirstScreenLive() { return firstScreenLive; }
+
+    /** Typed model states and deltas; see {@link LauncherModelFlows}. */
+    public LauncherModelFlows getModelFlows() { return modelFlows; }
+
+    /**
+     * Imports the default layout (see {@link DefaultLayoutParser}) in a single transaction if
+     * the database is empty. Queued as a read so it runs before the first load.
+     */
+    public void importDefaultLayoutIfEmpty() {
+        bg.execute(ModelExecutor.PRIORITY_READ, () -> {
+            if (!dataSource.isFavoritesEmpty()) return;
+            long start = SystemClock.uptimeMillis();
+            List<ItemInfo> items = new DefaultLayoutParser(context, R.xml.default_workspace).loadDefaultLayout();
+            dataSource.insertItems(items);
+            long elapsed = SystemClock.uptimeMillis() - start;
+            IMPORT_LAYOUT_MS.record(elapsed);
+            Log.i(TAG, "importDefaultLayoutIfEmpty(): imported " + items.size() + " items in " + elapsed + "ms");
+        });
+    }
+
+    /**
+     * Loads everything for display. Until the first full load completed, this runs in two
+     * phases: the first screen and hotseat ahead of anything else, then the full model
+     * behind queued writes.
+     */
     public void loadAll() {
-        bg.execute(() -> {
+        if (fullyLoaded) {
+            scheduleLoad(ModelExecutor.PRIORITY_READ);
+            return;
+        }
+        bg.executeCollapsing(LOAD_FIRST_SCREEN, ModelExecutor.PRIORITY_READ, () -> {
+            if (fullyLoaded) return;
+            long start = SystemClock.uptimeMillis();
+            List<ApplicationInfo> list = dataSource.getFirstScreenAndHotseat();
+            LOAD_FIRST_SCREEN_MS.record(SystemClock.uptimeMillis() - start);
+            loadIcons(list);
+            firstScreenLive.postValue(list);
+        });
+        scheduleLoad(ModelExecutor.PRIORITY_RELOAD);
+    }
+
+    private void scheduleLoad(int priority) {
+        bg.executeCollapsing(LOAD_ALL, priority, () -> {
+            long start = SystemClock.uptimeMillis();
             List<ApplicationInfo> list = dataSource.getAllApps();
-            Log.i(TAG, "loadAll(): total apps loaded=" + list.size());
-            appsLive.postValue(list);
+            LOAD_ALL_MS.record(SystemClock.uptimeMillis() - start);
+            ROWS_LOADED.set(list.size());
+            loadIcons(list);
+            fullyLoaded = true;
+            publish(list);
         });
     }
 
+    private void publish(List<ApplicationInfo> list) {
+        snapshot = list;
+        appsLive.postValue(list);
+        modelFlows.publish(list);
+    }
+
+    /**
+     * Model thread. App icons come from {@link IconCache}, so they follow the icon theme; a
+     * theme change reloads the model (see {@link #loadAll()}) to hand out the new ones.
+     */
+    private void loadIcons(List<ApplicationInfo> items) {
+        long start = SystemClock.uptimeMillis();
+        for (ApplicationInfo ai : items) {
+            if (ai.itemType == ItemInfo.ITEM_TYPE_APPLICATION && ai.intent != null && ai.icon == null) {
+                ai.icon = iconCache.getIcon(ai.intent);
+            }
+        }
+        LOAD_ICONS_MS.record(SystemClock.uptimeMillis() - start);
+    }
+
+    /** Binder thread: queues a refresh of the notified rows, coalescing bursts into one. */
+    private void onProviderChanged(Uri uri) {
+        long[] ids = uri != null ? LauncherProvider.parseNotifiedIds(uri) : null;
+        synchronized (pendingRefreshIds) {
+            if (ids == null) {
+                pendingFullReload = true;
+            } else {
+                for (long id : ids) pendingRefreshIds.add(id);
+            }
+        }
+        bg.executeCollapsing(REFRESH, ModelExecutor.PRIORITY_RELOAD, this::refreshChangedRows);
+    }
+
+    private void refreshChangedRows() {
+        long[] ids;
+        boolean full;
+        synchronized (pendingRefreshIds) {
+            full = pendingFullReload;
+            ids = new long[pendingRefreshIds.size()];
+            int i = 0;
+            for (Long id : pendingRefreshIds) ids[i++] = id;
+            pendingRefreshIds.clear();
+            pendingFullReload = false;
+        }
+        // before the first full load there is nothing to merge into; that load reads everything
+        if (snapshot == null) return;
+        if (full) {
+            scheduleLoad(ModelExecutor.PRIORITY_RELOAD);
+            return;
+        }
+        if (ids.length == 0) return;
+
+        List<ApplicationInfo> changed = dataSource.getAppsByIds(ids);
+        loadIcons(changed);
+        HashSet<Long> touched = new HashSet<>(ids.length * 2);
+        for (long id : ids) touched.add(id);
+        List<ApplicationInfo> merged = new ArrayList<>(snapshot.size() + changed.size());
+        for (ApplicationInfo ai : snapshot) {
+            if (!touched.contains(ai.id)) merged.add(ai);
+        }
+        merged.addAll(changed); // rows that were deleted are not returned
+        Collections.sort(merged, LauncherDataSource.TITLE_ORDER);
+        ROWS_REFRESHED.add(changed.size());
+        ROWS_LOADED.set(merged.size());
+        publish(merged);
+    }
+
     public void insertApp(ApplicationInfo app) {
         bg.execute(() -> {
             dataSource.insertApp(app);
-            loadAll();
         });
     }
 
     public void insertApps(List<ApplicationInfo> applicationInfoList) {
         bg.execute(() -> {
-            synchronized (this){
-                for(ApplicationInfo appInfo : applicationInfoList){
-                    dataSource.insertApp(appInfo);
-                }
-                Log.i(TAG, "insertApps(): total apps inserted="+applicationInfoList.size());
-                loadAll();
-            }
+            dataSource.insertItems(applicationInfoList);
+            Log.i(TAG, "insertApps(): total apps inserted="+applicationInfoList.size());
         });
     }
 
     public void updateApp(ApplicationInfo app) {
         bg.execute(() -> {
             dataSource.updateApp(app);
-            loadAll();
+        });
+    }
+
+    public void updateApps(List<? extends ItemInfo> items) {
+        bg.execute(() -> {
+            dataSource.updateApps(items);
+            Log.i(TAG, "updateApps(): total items updated=" + items.size());
         });
     }
 
     public void deleteApp(ApplicationInfo app) {
         bg.execute(() -> {
             dataSource.deleteApp(app);
-            loadAll();
         });
     }
 
@@ -79,4 +241,8 @@ public class LauncherRepository {
     public List<ApplicationInfo> getHotseatAppsSync() {
         return dataSource.getHotseatApps();
     }
+
+    public void dump(String prefix, PrintWriter pw) {
+        bg.dump(prefix, pw);
+    }
 }
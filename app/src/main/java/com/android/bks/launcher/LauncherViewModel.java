@@ -9,6 +9,7 @@ import androidx.lifecycle.LiveData;
 
 
 
+import java.io.PrintWriter;
 import java.util.List;
 
 public class LauncherViewModel extends AndroidViewModel {
@@ -21,6 +22,7 @@ public class LauncherViewModel extends AndroidViewModel {
         Log.i(TAG , "LauncherViewModel(): called");
         repo = new LauncherRepository(application.getApplicationContext());
         appsLive = repo.getAppsLive();
+        repo.importDefaultLayoutIfEmpty();
         repo.loadAll();
     }
 
@@ -28,11 +30,16 @@ public class LauncherViewModel extends AndroidViewModel {
 
     public LiveData<List<ApplicationInfo>> getAppsLive() { return appsLive; }
 
+    public LiveData<List<ApplicationInfo>> getFirstScreenLive() { return repo.getFirstScreenLive(); }
+
+    public LauncherModelFlows getModelFlows() { return repo.getModelFlows(); }
+
     public void insertApp(ApplicationInfo app) { repo.insertApp(app); }
 
     public void insertApps(List<ApplicationInfo> appInfoList) { repo.insertApps(appInfoList); }
 
     public void updateApp(ApplicationInfo app) { repo.updateApp(app); }
+    public void updateApps(List<? extends ItemInfo> items) { repo.updateApps(items); }
     public void deleteApp(ApplicationInfo app) { repo.deleteApp(app); }
 
     public boolean isDbEmpty() { return repo.isFavoritesEmpty(); }
@@ -42,4 +49,11 @@ public class LauncherViewModel extends AndroidViewModel {
     public List<ApplicationInfo> getHotseatAppsSync() { return repo.getHotseatAppsSync(); }
 
     public void refresh() { repo.loadAll(); }
+
+    public void dump(String prefix, PrintWriter pw) { repo.dump(prefix, pw); }
+
+    @Override
+    protected void onCleared() {
+        repo.close();
+    }
 }
@@ -0,0 +1,105 @@
+package com.android.bks.launcher;
+
+import android.appwidget.AppWidgetHostView;
+import android.content.Context;
+import android.graphics.Color;
+import android.view.Gravity;
+import android.view.MotionEvent;
+import android.view.ViewConfiguration;
+import android.widget.FrameLayout;
+import android.widget.TextView;
+
+/**
+ * LauncherWidgetView - workspace cell content of a widget item. Shows the widget's label
+ * until {@link LauncherAppWidgetHost} supplies the AppWidgetHostView, which is then added
+ * inside this view, so the CellLayout child never changes. Long-presses are detected
+ * here because the widget's own views consume the touches.
+ */
+public class LauncherWidgetView extends FrameLayout {
+
+    private final TextView placeholder;
+    private final int touchSlop;
+    private AppWidgetHostView hostView;
+
+    private float downX, downY;
+    private boolean longPressed;
+    private final Runnable longPressRunnable = () -> {
+        // intercepting the rest of the gesture sends the widget's views a cancel
+        if (getParent() != null && performLongClick()) longPressed = true;
+    };
+
+    public LauncherWidgetView(Context ctx) {
+        super(ctx);
+        touchSlop = ViewConfiguration.get(ctx).getScaledTouchSlop();
+        placeholder = new TextView(ctx);
+        placeholder.setTextColor(Color.WHITE);
+        placeholder.setGravity(Gravity.CENTER);
+        placeholder.setBackgroundColor(0x44000000);
+        addView(placeholder, new LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.MATCH_PARENT));
+    }
+
+    public void bind(ApplicationInfo item) {
+        setTag(item);
+        placeholder.setText(item.title);
+    }
+
+    public ApplicationInfo getItemInfo() {
+        return (ApplicationInfo) getTag();
+    }
+
+    public boolean hasHostView() {
+        return hostView != null;
+    }
+
+    void setHostView(AppWidgetHostView view) {
+        if (hostView != null) removeView(hostView);
+        hostView = view;
+        placeholder.setVisibility(GONE);
+        addView(view, new LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.MATCH_PARENT));
+    }
+
+    /** The provider is gone or the widget id is no longer bound. */
+    void showUnavailable() {
+        placeholder.setText("Widget unavailable");
+        placeholder.setVisibility(VISIBLE);
+    }
+
+    @Override
+    public boolean onInterceptTouchEvent(MotionEvent ev) {
+        handleLongPressEvent(ev);
+        return longPressed;
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent ev) {
+        // nothing inside took the gesture; the down was already seen by onInterceptTouchEvent
+        if (ev.getActionMasked() != MotionEvent.ACTION_DOWN) handleLongPressEvent(ev);
+        return true;
+    }
+
+    private void handleLongPressEvent(MotionEvent ev) {
+        switch (ev.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                longPressed = false;
+                downX = ev.getX();
+                downY = ev.getY();
+                postDelayed(longPressRunnable, ViewConfiguration.getLongPressTimeout());
+                break;
+            case MotionEvent.ACTION_MOVE:
+                if (Math.abs(ev.getX() - downX) > touchSlop || Math.abs(ev.getY() - downY) > touchSlop) {
+                    removeCallbacks(longPressRunnable);
+                }
+                break;
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                removeCallbacks(longPressRunnable);
+                break;
+        }
+    }
+
+    @Override
+    public void cancelLongPress() {
+        super.cancelLongPress();
+        removeCallbacks(longPressRunnable);
+    }
+}
@@ -0,0 +1,86 @@
+package com.android.bks.launcher;
+
+import java.io.PrintWriter;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * MetricsRegistry - named counters, gauges and fixed-bucket histograms for hot paths.
+ * Look a metric up once (e.g. into a static field) and record into it afterwards;
+ * recording is lock-free and allocation-free. Has no Android dependencies, so it can be
+ * exercised on a plain JVM.
+ */
+public class MetricsRegistry {
+
+    private static final MetricsRegistry sInstance = new MetricsRegistry();
+
+    /** Process-wide registry shared by the model, the provider and the UI. */
+    public static MetricsRegistry get() {
+        return sInstance;
+    }
+
+    /** Monotonic count of events. */
+    public static final class Counter {
+        private final AtomicLong value = new AtomicLong();
+
+        public void inc() { value.incrementAndGet(); }
+
+        public void add(long delta) { value.addAndGet(delta); }
+
+        public long get() { return value.get(); }
+    }
+
+    /** Last observed value of a level (sizes, depths). */
+    public static final class Gauge {
+        private final AtomicLong value = new AtomicLong();
+
+        public void set(long v) { value.set(v); }
+
+        public void add(long delta) { value.addAndGet(delta); }
+
+        public long get() { return value.get(); }
+    }
+
+    private final ConcurrentHashMap<String, Counter> counters = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Gauge> gauges = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, n -> new Counter());
+    }
+
+    public Gauge gauge(String name) {
+        return gauges.computeIfAbsent(name, n -> new Gauge());
+    }
+
+    /** Millisecond histogram with the default buckets. */
+    public LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, n -> new LatencyHistogram());
+    }
+
+    /** Current counter and gauge values by name, sorted. */
+    public Map<String, Long> snapshot() {
+        TreeMap<String, Long> out = new TreeMap<>();
+        for (Map.Entry<String, Counter> e : counters.entrySet()) out.put(e.getKey(), e.getValue().get());
+        for (Map.Entry<String, Gauge> e : gauges.entrySet()) out.put(e.getKey(), e.getValue().get());
+        return out;
+    }
+
+    /** Resets counters and histograms; gauges keep their level. */
+    public void reset() {
+        for (Counter c : counters.values()) c.value.set(0);
+        for (LatencyHistogram h : histograms.values()) h.reset();
+    }
+
+    public void dump(String prefix, PrintWriter pw) {
+        pw.println(prefix + "Metrics:");
+        for (Map.Entry<String, Long> e : snapshot().entrySet()) {
+            pw.println(prefix + "  " + e.getKey() + "=" + e.getValue());
+        }
+        for (Map.Entry<String, LatencyHistogram> e : new TreeMap<>(histograms).entrySet()) {
+            e.getValue().dump(prefix + "  ", e.getKey(), pw);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.android.bks.launcher;
+
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.PrintWriter;
+import java.util.HashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ModelExecutor - single model thread that runs tasks by priority instead of FIFO:
+ * user-visible reads first, then writes, then background reloads. Tasks of equal
+ * priority keep submission order. Keyed tasks collapse: queuing one cancels a pending
+ * task with the same key that has not started yet. The thread runs at background priority
+ * and stops with {@link #shutdown()}.
+ */
+public class ModelExecutor implements Executor {
+    private static final String TAG = "HOMETEST_ModelExecutor";
+
+    public static final int PRIORITY_READ = 0;
+    public static final int PRIORITY_WRITE = 1;
+    public static final int PRIORITY_RELOAD = 2;
+
+    private final PriorityBlockingQueue<Task> queue = new PriorityBlockingQueue<>();
+    private final HashMap<Object, Task> pendingByKey = new HashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final Thread thread;
+    private volatile boolean shutdown;
+
+    // metrics
+    private final LatencyHistogram waitTime;
+    private final MetricsRegistry.Gauge queueDepth;
+    private final AtomicLong executed = new AtomicLong();
+    private final AtomicLong collapsed = new AtomicLong();
+    private volatile int maxQueueDepth;
+
+    private final class Task implements Comparable<Task> {
+        final Runnable runnable;
+        final Object key;
+        final int priority;
+        final long seq = sequence.incrementAndGet();
+        final long enqueuedAt = SystemClock.uptimeMillis();
+        volatile boolean cancelled;
+
+        Task(Runnable runnable, Object key, int priority) {
+            this.runnable = runnable;
+            this.key = key;
+            this.priority = priority;
+        }
+
+        @Override
+        public int compareTo(Task o) {
+            if (priority != o.priority) return Integer.compare(priority, o.priority);
+            return Long.compare(seq, o.seq);
+        }
+    }
+
+    public ModelExecutor(String name) {
+        waitTime = MetricsRegistry.get().histogram("executor." + name + ".wait_ms");
+        queueDepth = MetricsRegistry.get().gauge("executor." + name + ".queue_depth");
+        thread = new Thread(this::loop, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Runs the task as a write. */
+    @Override
+    public void execute(Runnable r) {
+        execute(PRIORITY_WRITE, r);
+    }
+
+    public void execute(int priority, Runnable r) {
+        enqueue(new Task(r, null, priority));
+    }
+
+    /**
+     * Queues a task that supersedes any pending task with the same key. The replacement
+     * keeps the more urgent of the two priorities, so a read is never demoted to a reload.
+     */
+    public void executeCollapsing(Object key, int priority, Runnable r) {
+        Task task;
+        synchronized (pendingByKey) {
+            Task previous = pendingByKey.get(key);
+            if (previous != null) {
+                previous.cancelled = true;
+                queue.remove(previous);
+                collapsed.incrementAndGet();
+                priority = Math.min(priority, previous.priority);
+            }
+            task = new Task(r, key, priority);
+            pendingByKey.put(key, task);
+        }
+        enqueue(task);
+    }
+
+    private void enqueue(Task task) {
+        if (shutdown) {
+            Log.w(TAG, "enqueue(): executor " + thread.getName() + " is shut down, task dropped");
+            return;
+        }
+        queue.add(task);
+        int depth = queue.size();
+        queueDepth.set(depth);
+        if (depth > maxQueueDepth) maxQueueDepth = depth;
+    }
+
+    public boolean isModelThread() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * Stops the model thread. Writes already queued still run so no edit is lost; reads and
+     * reloads are dropped, and tasks queued afterwards are ignored.
+     */
+    public void shutdown() {
+        shutdown = true;
+        thread.interrupt();
+    }
+
+    private void loop() {
+        // reloads must not compete with the UI thread
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+        while (true) {
+            Task task;
+            if (shutdown) {
+                task = queue.poll();
+                if (task == null) return;
+                if (task.priority != PRIORITY_WRITE) continue;
+            } else {
+                try {
+                    task = queue.take();
+                } catch (InterruptedException e) {
+                    continue; // shutdown() interrupts; the check above ends the loop
+                }
+            }
+            queueDepth.set(queue.size());
+            if (task.key != null) {
+                synchronized (pendingByKey) {
+                    if (task.cancelled) continue;
+                    // from here on a new task with this key queues behind instead of replacing it
+                    pendingByKey.remove(task.key);
+                }
+            }
+            waitTime.record(SystemClock.uptimeMillis() - task.enqueuedAt);
+            executed.incrementAndGet();
+            try {
+                task.runnable.run();
+            } catch (RuntimeException e) {
+                // keep the model thread alive for the tasks behind this one
+                Log.e(TAG, "model task failed", e);
+            }
+        }
+    }
+
+    public int getQueueDepth() { return queue.size(); }
+
+    public int getMaxQueueDepth() { return maxQueueDepth; }
+
+    public LatencyHistogram getWaitTime() { return waitTime; }
+
+    public long getExecutedCount() { return executed.get(); }
+
+    public long getCollapsedCount() { return collapsed.get(); }
+
+    public void dump(String prefix, PrintWriter pw) {
+        pw.println(prefix + "ModelExecutor " + thread.getName() + ": depth=" + getQueueDepth()
+                + " maxDepth=" + maxQueueDepth
+                + " executed=" + executed.get()
+                + " collapsed=" + collapsed.get());
+    }
+}
@@ -0,0 +1,69 @@
+package com.android.bks.launcher;
+
+import android.util.LongSparseArray;
+import android.util.SparseArray;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * ModelGroups - a loaded model split the way Launcher binds it, in one pass: workspace
+ * items per screen, hotseat items, and folder contents per folder id ordered by rank.
+ */
+final class ModelGroups {
+
+    final SparseArray<List<ItemInfo>> screens = new SparseArray<>();
+    final List<ApplicationInfo> hotseat = new ArrayList<>();
+    final LongSparseArray<List<ApplicationInfo>> folderContents = new LongSparseArray<>();
+    int workspaceItems;
+
+    private ModelGroups() {}
+
+    static ModelGroups group(List<ApplicationInfo> apps) {
+        ModelGroups groups = new ModelGroups();
+        for (int i = 0; i < apps.size(); i++) {
+            ApplicationInfo app = apps.get(i);
+            if (app.container == ItemInfo.CONTAINER_DESKTOP) {
+                List<ItemInfo> items = groups.screens.get(app.screen);
+                if (items == null) {
+                    items = new ArrayList<>();
+                    groups.screens.put(app.screen, items);
+                }
+                items.add(app);
+                groups.workspaceItems++;
+            } else if (app.container == ItemInfo.CONTAINER_HOTSEAT) {
+                groups.hotseat.add(app);
+            } else if (app.container >= 0) {
+                List<ApplicationInfo> contents = groups.folderContents.get(app.container);
+                if (contents == null) {
+                    contents = new ArrayList<>();
+                    groups.folderContents.put(app.container, contents);
+                }
+                contents.add(app);
+            }
+        }
+        // the model is sorted by title; folders show their items by rank
+        for (int i = 0; i < groups.folderContents.size(); i++) {
+            Collections.sort(groups.folderContents.valueAt(i), (a, b) -> Integer.compare(a.cellX, b.cellX));
+        }
+        return groups;
+    }
+
+    /**
+     * Folders and widgets have no place in app lists (the apps inside folders do); returns
+     * apps itself when it holds neither.
+     */
+    static List<ApplicationInfo> appsOnly(List<ApplicationInfo> apps) {
+        List<ApplicationInfo> filtered = null;
+        for (int i = 0; i < apps.size(); i++) {
+            ApplicationInfo app = apps.get(i);
+            if (app.itemType != ItemInfo.ITEM_TYPE_APPLICATION) {
+                if (filtered == null) filtered = new ArrayList<>(apps.subList(0, i));
+            } else if (filtered != null) {
+                filtered.add(app);
+            }
+        }
+        return filtered != null ? filtered : apps;
+    }
+}
@@ -0,0 +1,31 @@
+package com.android.bks.launcher
+
+/**
+ * ModelState - snapshot of the launcher model as seen by observers.
+ * [FirstBind] is published once for the first completed load; later loads are [Update]s.
+ */
+sealed class ModelState {
+    /** Items of the snapshot, or null while still loading. */
+    open val apps: List<ApplicationInfo>? get() = null
+
+    object Loading : ModelState()
+
+    data class FirstBind(override val apps: List<ApplicationInfo>) : ModelState()
+
+    data class Update(override val apps: List<ApplicationInfo>) : ModelState()
+}
+
+/**
+ * ModelDelta - items that changed between two consecutive model snapshots.
+ */
+sealed class ModelDelta {
+    data class Added(val items: List<ApplicationInfo>) : ModelDelta()
+
+    /** Items whose container, position, span or title changed. */
+    data class Updated(val items: List<ApplicationInfo>) : ModelDelta()
+
+    data class Removed(val ids: LongArray) : ModelDelta() {
+        override fun equals(other: Any?) = other is Removed && ids.contentEquals(other.ids)
+        override fun hashCode() = ids.contentHashCode()
+    }
+}
@@ -17,12 +17,24 @@ import androidx.annotation.Nullable;
  */
 public class PagedView extends ViewGroup {
 
+    /** Reports when pages start moving (swipe or fling) and when they settle. */
+    public interface OnScrollStateListener { void onScrollStateChanged(boolean scrolling); }
+
     private OverScroller scroller;
     private VelocityTracker velocityTracker;
     private int touchSlop, minimumVelocity, maximumVelocity;
     private float lastX;
+    private float downX, downY;
     private int currentPage = 0;
 
+    private static final int TOUCH_STATE_REST = 0;
+    private static final int TOUCH_STATE_SCROLLING = 1;
+    private int touchState = TOUCH_STATE_REST;
+
+    private boolean pageMoving;
+    private OnScrollStateListener scrollStateListener;
+    private final Runnable pageMotionEndedRunnable = this::onPageMotionEnded;
+
     public PagedView(Context context) {
         this(context, null);
     }
@@ -56,11 +68,75 @@ public class PagedView extends ViewGroup {
         return currentPage;
     }
 
+    /** Jumps to the page without animating, e.g. after pages before it were removed. */
+    public void setCurrentPage(int whichPage) {
+        whichPage = Math.max(0, Math.min(whichPage, getChildCount() - 1));
+        scroller.forceFinished(true);
+        currentPage = whichPage;
+        scrollTo(whichPage * getWidth(), 0);
+    }
+
     @Override
     public void computeScroll() {
         if (scroller.computeScrollOffset()) {
             scrollTo(scroller.getCurrX(), scroller.getCurrY());
-            postInvalidate();
+            postInvalidateOnAnimation();
+        } else if (pageMoving && touchState == TOUCH_STATE_REST) {
+            // page settled; drop the layers outside of this draw pass
+            removeCallbacks(pageMotionEndedRunnable);
+            post(pageMotionEndedRunnable);
+        }
+    }
+
+    /**
+     * Called when a swipe or fling starts moving pages. Pages near the current one are
+     * rendered into hardware layers while they move, so a swipe or fling only
+     * re-composites them instead of redrawing their view trees.
+     */
+    private void onPageMotionStarted() {
+        removeCallbacks(pageMotionEndedRunnable);
+        if (pageMoving) return;
+        pageMoving = true;
+        if (scrollStateListener != null) scrollStateListener.onScrollStateChanged(true);
+        if (!isHardwareAccelerated()) return;
+        int from = Math.max(0, currentPage - 1);
+        int to = Math.min(getChildCount() - 1, currentPage + 1);
+        for (int i = from; i <= to; i++) {
+            getChildAt(i).setLayerType(LAYER_TYPE_HARDWARE, null);
+        }
+    }
+
+    /** Called once the page settled and no finger is down; drops the layers. */
+    private void onPageMotionEnded() {
+        if (!pageMoving || touchState != TOUCH_STATE_REST || !scroller.isFinished()) return;
+        pageMoving = false;
+        for (int i = 0; i < getChildCount(); i++) {
+            View child = getChildAt(i);
+            if (child.getLayerType() != LAYER_TYPE_NONE) {
+                child.setLayerType(LAYER_TYPE_NONE, null);
+            }
+        }
+        if (scrollStateListener != null) scrollStateListener.onScrollStateChanged(false);
+    }
+
+    public void setOnScrollStateListener(OnScrollStateListener l) {
+        this.scrollStateListener = l;
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int width = getDefaultSize(getSuggestedMinimumWidth(), widthMeasureSpec);
+        int height = getDefaultSize(getSuggestedMinimumHeight(), heightMeasureSpec);
+        setMeasuredDimension(width, height);
+
+        // every page fills the viewport
+        int childWidthSpec = MeasureSpec.makeMeasureSpec(width, MeasureSpec.EXACTLY);
+        int childHeightSpec = MeasureSpec.makeMeasureSpec(height, MeasureSpec.EXACTLY);
+        for (int i = 0; i < getChildCount(); i++) {
+            View child = getChildAt(i);
+            if (child.getVisibility() != GONE) {
+                child.measure(childWidthSpec, childHeightSpec);
+            }
         }
     }
 
@@ -78,47 +154,113 @@ public class PagedView extends ViewGroup {
 
     @Override
     public boolean onInterceptTouchEvent(MotionEvent ev) {
-        // Always intercept to handle horizontal swipes
-        return true;
+        int action = ev.getActionMasked();
+        if (action == MotionEvent.ACTION_MOVE && touchState == TOUCH_STATE_SCROLLING) {
+            return true;
+        }
+        acquireVelocityTracker(ev);
+
+        switch (action) {
+            case MotionEvent.ACTION_DOWN:
+                downX = lastX = ev.getX();
+                downY = ev.getY();
+                if (!scroller.isFinished()) {
+                    // catch a settling page; the gesture continues the scroll
+                    scroller.abortAnimation();
+                    touchState = TOUCH_STATE_SCROLLING;
+                    onPageMotionStarted();
+                } else {
+                    touchState = TOUCH_STATE_REST;
+                }
+                break;
+
+            case MotionEvent.ACTION_MOVE:
+                determineScrollingStart(ev);
+                break;
+
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                touchState = TOUCH_STATE_REST;
+                releaseVelocityTracker();
+                break;
+        }
+        // only steal the gesture from children (icon clicks, long-press) once it is a horizontal swipe
+        return touchState == TOUCH_STATE_SCROLLING;
+    }
+
+    /** Starts scrolling once the motion passes touch slop and is more horizontal than vertical. */
+    private void determineScrollingStart(MotionEvent ev) {
+        float x = ev.getX();
+        float xDiff = Math.abs(x - downX);
+        float yDiff = Math.abs(ev.getY() - downY);
+        if (xDiff > touchSlop && xDiff > yDiff) {
+            touchState = TOUCH_STATE_SCROLLING;
+            lastX = x;
+            onPageMotionStarted();
+            if (getParent() != null) {
+                getParent().requestDisallowInterceptTouchEvent(true);
+            }
+        }
     }
 
     @Override
     public boolean onTouchEvent(MotionEvent ev) {
-        if (velocityTracker == null) {
-            velocityTracker = VelocityTracker.obtain();
-        }
-        velocityTracker.addMovement(ev);
+        acquireVelocityTracker(ev);
 
-        switch (ev.getAction()) {
+        switch (ev.getActionMasked()) {
             case MotionEvent.ACTION_DOWN:
-                if (!scroller.isFinished()) scroller.abortAnimation();
-                lastX = ev.getX();
+                if (!scroller.isFinished()) {
+                    scroller.abortAnimation();
+                    touchState = TOUCH_STATE_SCROLLING;
+                    onPageMotionStarted();
+                }
+                downX = lastX = ev.getX();
+                downY = ev.getY();
                 break;
 
             case MotionEvent.ACTION_MOVE:
-                float dx = lastX - ev.getX();
-                lastX = ev.getX();
-                scrollBy((int) dx, 0);
+                if (touchState == TOUCH_STATE_REST) {
+                    determineScrollingStart(ev);
+                } else {
+                    float dx = lastX - ev.getX();
+                    lastX = ev.getX();
+                    scrollBy((int) dx, 0);
+                }
                 break;
 
             case MotionEvent.ACTION_UP:
             case MotionEvent.ACTION_CANCEL:
-                velocityTracker.computeCurrentVelocity(1000, maximumVelocity);
-                float vx = velocityTracker.getXVelocity();
+                if (touchState == TOUCH_STATE_SCROLLING) {
+                    velocityTracker.computeCurrentVelocity(1000, maximumVelocity);
+                    float vx = velocityTracker.getXVelocity();
 
-                int targetPage = currentPage;
-                if (Math.abs(vx) > minimumVelocity) {
-                    if (vx < 0) targetPage++;
-                    else targetPage--;
-                } else {
-                    targetPage = (getScrollX() + getWidth() / 2) / getWidth();
+                    int targetPage = currentPage;
+                    if (Math.abs(vx) > minimumVelocity) {
+                        if (vx < 0) targetPage++;
+                        else targetPage--;
+                    } else {
+                        targetPage = (getScrollX() + getWidth() / 2) / getWidth();
+                    }
+                    snapToPage(targetPage);
                 }
-                snapToPage(targetPage);
-
-                velocityTracker.recycle();
-                velocityTracker = null;
+                touchState = TOUCH_STATE_REST;
+                releaseVelocityTracker();
                 break;
         }
         return true;
     }
+
+    private void acquireVelocityTracker(MotionEvent ev) {
+        if (velocityTracker == null) {
+            velocityTracker = VelocityTracker.obtain();
+        }
+        velocityTracker.addMovement(ev);
+    }
+
+    private void releaseVelocityTracker() {
+        if (velocityTracker != null) {
+            velocityTracker.recycle();
+            velocityTracker = null;
+        }
+    }
 }
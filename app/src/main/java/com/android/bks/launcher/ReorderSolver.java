@@ -0,0 +1,91 @@
+package com.android.bks.launcher;
+
+import android.view.View;
+
+/**
+ * ReorderSolver - finds new cells for the items covering a drop area so the dragged item
+ * fits. Each displaced item goes to the vacant area nearest to its current cell. All
+ * buffers are preallocated per grid size, so solving does not allocate; a deadline
+ * bounds the work spent per frame.
+ */
+public class ReorderSolver {
+
+    private GridOccupancy scratch;
+    private View[] movedViews = new View[0];
+    private int[] movedX = new int[0];
+    private int[] movedY = new int[0];
+    private int movedCount;
+    private final int[] cell = new int[2];
+
+    /** Sizes the buffers for the given page; call when a drag starts, not per move. */
+    public void prepare(CellLayout layout) {
+        int countX = layout.getCountX();
+        int countY = layout.getCountY();
+        if (scratch == null || scratch.getCountX() != countX || scratch.getCountY() != countY) {
+            scratch = new GridOccupancy(countX, countY);
+        }
+        int capacity = countX * countY;
+        if (movedViews.length < capacity) {
+            movedViews = new View[capacity];
+            movedX = new int[capacity];
+            movedY = new int[capacity];
+        }
+    }
+
+    /**
+     * Computes the moves that free (x, y, spanX, spanY) for dragView, based on the current
+     * cells of the children. Returns false if no solution exists or the deadline
+     * ({@link System#nanoTime()} based) passed; the moves are then incomplete.
+     */
+    public boolean solve(CellLayout layout, View dragView, int x, int y, int spanX, int spanY,
+                         long deadlineNanos) {
+        clear();
+        scratch.clear();
+        int childCount = layout.getChildCount();
+        for (int i = 0; i < childCount; i++) {
+            View child = layout.getChildAt(i);
+            if (child == dragView) continue;
+            CellLayout.LayoutParams lp = (CellLayout.LayoutParams) child.getLayoutParams();
+            if (!overlaps(lp, x, y, spanX, spanY)) {
+                scratch.markCells(lp.cellX, lp.cellY, lp.cellHSpan, lp.cellVSpan, true);
+            }
+        }
+        scratch.markCells(x, y, spanX, spanY, true);
+
+        for (int i = 0; i < childCount; i++) {
+            View child = layout.getChildAt(i);
+            if (child == dragView) continue;
+            CellLayout.LayoutParams lp = (CellLayout.LayoutParams) child.getLayoutParams();
+            if (!overlaps(lp, x, y, spanX, spanY)) continue;
+
+            if (System.nanoTime() > deadlineNanos) return false;
+            if (!scratch.findNearestVacantArea(lp.cellX, lp.cellY, lp.cellHSpan, lp.cellVSpan, cell)) {
+                return false;
+            }
+            scratch.markCells(cell[0], cell[1], lp.cellHSpan, lp.cellVSpan, true);
+            movedViews[movedCount] = child;
+            movedX[movedCount] = cell[0];
+            movedY[movedCount] = cell[1];
+            movedCount++;
+        }
+        return true;
+    }
+
+    private static boolean overlaps(CellLayout.LayoutParams lp, int x, int y, int spanX, int spanY) {
+        return lp.cellX < x + spanX && x < lp.cellX + lp.cellHSpan
+                && lp.cellY < y + spanY && y < lp.cellY + lp.cellVSpan;
+    }
+
+    public int getMoveCount() { return movedCount; }
+
+    public View getMovedView(int i) { return movedViews[i]; }
+
+    public int getMovedCellX(int i) { return movedX[i]; }
+
+    public int getMovedCellY(int i) { return movedY[i]; }
+
+    public void clear() {
+        for (int i = 0; i < movedCount; i++) movedViews[i] = null;
+        movedCount = 0;
+    }
+}
@@ -0,0 +1,194 @@
+package com.android.bks.launcher;
+
+import android.appwidget.AppWidgetProviderInfo;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * WidgetPreviewLoader - widget picker previews, rendered on a small worker pool at exactly
+ * the size they are shown at. Results are kept in memory and as PNGs in
+ * cacheDir/widget_previews, keyed by provider, package version and size, so a package
+ * update invalidates its previews. Callbacks run on the main thread, and not at all
+ * once the request was cancelled.
+ */
+public class WidgetPreviewLoader {
+    private static final String TAG = "HOMETEST_WidgetPreviewLoader";
+
+    private static final String CACHE_DIR = "widget_previews";
+    private static final int POOL_SIZE = 2;
+
+    private static final MetricsRegistry.Counter MEMORY_HITS = MetricsRegistry.get().counter("widget_preview.memory_hits");
+    private static final MetricsRegistry.Counter DISK_HITS = MetricsRegistry.get().counter("widget_preview.disk_hits");
+    private static final MetricsRegistry.Counter GENERATED = MetricsRegistry.get().counter("widget_preview.generated");
+    private static final LatencyHistogram GENERATE_MS = MetricsRegistry.get().histogram("widget_preview.generate_ms");
+
+    public interface Callback { void onPreviewLoaded(Bitmap preview); }
+
+    /** A pending load; cancel it when the target is recycled. */
+    public static final class Request {
+        private volatile boolean cancelled;
+        private Future<?> future;
+
+        public void cancel() {
+            cancelled = true;
+            if (future != null) future.cancel(false);
+        }
+    }
+
+    private final Context context;
+    private final PackageManager pm;
+    private final File cacheDir;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService pool;
+    private final LruCache<String, Bitmap> memoryCache;
+
+    public WidgetPreviewLoader(Context context) {
+        this.context = context.getApplicationContext();
+        pm = context.getPackageManager();
+        cacheDir = new File(context.getCacheDir(), CACHE_DIR);
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE, 10, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(() -> {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        r.run();
+                    }, "widget-preview-" + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        pool = executor;
+        // an eighth of the heap limit, counted in KB
+        memoryCache = new LruCache<String, Bitmap>((int) (Runtime.getRuntime().maxMemory() / 1024 / 8)) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                return value.getAllocationByteCount() / 1024;
+            }
+        };
+    }
+
+    /** Work for the pool that is not a preview, e.g. listing the providers. */
+    public void execute(Runnable r) {
+        pool.execute(r);
+    }
+
+    /**
+     * Delivers the preview of info scaled to fit width x height. version is the provider
+     * package's {@link #getPackageVersion}. Memory hits are delivered before this returns.
+     */
+    public Request load(AppWidgetProviderInfo info, long version, int width, int height, Callback callback) {
+        Request request = new Request();
+        String key = cacheKey(info.provider, version, width, height);
+        Bitmap cached = memoryCache.get(key);
+        if (cached != null) {
+            MEMORY_HITS.inc();
+            callback.onPreviewLoaded(cached);
+            return request;
+        }
+        request.future = pool.submit(() -> {
+            if (request.cancelled) return;
+            Bitmap preview = loadFromDisk(key);
+            if (preview != null) {
+                DISK_HITS.inc();
+            } else {
+                long start = SystemClock.uptimeMillis();
+                preview = generate(info, width, height);
+                GENERATE_MS.record(SystemClock.uptimeMillis() - start);
+                GENERATED.inc();
+                if (preview != null) writeToDisk(info.provider, version, key, preview);
+            }
+            if (preview == null) return;
+            memoryCache.put(key, preview);
+            Bitmap result = preview;
+            mainHandler.post(() -> {
+                if (!request.cancelled) callback.onPreviewLoaded(result);
+            });
+        });
+        return request;
+    }
+
+    /** Changes with every install or update of the package; call off the main thread. */
+    public long getPackageVersion(String packageName) {
+        try {
+            PackageInfo pi = pm.getPackageInfo(packageName, 0);
+            return pi.lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            return 0;
+        }
+    }
+
+    private static String filePrefix(ComponentName provider) {
+        return provider.flattenToShortString().replaceAll("[^A-Za-z0-9._-]", "_") + "@";
+    }
+
+    private static String cacheKey(ComponentName provider, long version, int width, int height) {
+        return filePrefix(provider) + version + "_" + width + "x" + height;
+    }
+
+    private Bitmap loadFromDisk(String key) {
+        File f = new File(cacheDir, key + ".png");
+        return f.isFile() ? BitmapFactory.decodeFile(f.getPath()) : null;
+    }
+
+    /** Writes the preview and drops files of older versions of the same provider. */
+    private void writeToDisk(ComponentName provider, long version, String key, Bitmap preview) {
+        if (!cacheDir.isDirectory() && !cacheDir.mkdirs()) return;
+        String prefix = filePrefix(provider);
+        File[] old = cacheDir.listFiles((dir, name) ->
+                name.startsWith(prefix) && !name.startsWith(prefix + version + "_"));
+        if (old != null) {
+            for (File f : old) f.delete();
+        }
+        File tmp = new File(cacheDir, key + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            preview.compress(Bitmap.CompressFormat.PNG, 100, out);
+        } catch (IOException e) {
+            Log.w(TAG, "writeToDisk(): " + key, e);
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(new File(cacheDir, key + ".png"))) tmp.delete();
+    }
+
+    /** Draws the provider's preview image, or its icon, scaled to fit width x height. */
+    private Bitmap generate(AppWidgetProviderInfo info, int width, int height) {
+        int density = context.getResources().getDisplayMetrics().densityDpi;
+        Drawable d = info.loadPreviewImage(context, density);
+        if (d == null) d = info.loadIcon(context, density);
+        if (d == null || width <= 0 || height <= 0) return null;
+
+        int dw = d.getIntrinsicWidth() > 0 ? d.getIntrinsicWidth() : width;
+        int dh = d.getIntrinsicHeight() > 0 ? d.getIntrinsicHeight() : height;
+        float scale = Math.min((float) width / dw, (float) height / dh);
+        int w = Math.max(1, Math.round(dw * scale));
+        int h = Math.max(1, Math.round(dh * scale));
+        Bitmap b = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
+        Canvas c = new Canvas(b);
+        d.setBounds(0, 0, w, h);
+        d.draw(c);
+        c.setBitmap(null);
+        return b;
+    }
+}
@@ -0,0 +1,235 @@
+package com.android.bks.launcher;
+
+import android.appwidget.AppWidgetManager;
+import android.appwidget.AppWidgetProviderInfo;
+import android.content.Context;
+import android.graphics.Color;
+import android.view.Gravity;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+import android.widget.ImageView;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * WidgetsPickerView - full-screen list of the installed widget providers. The list is
+ * built on the preview pool; each row asks {@link WidgetPreviewLoader} for its preview at
+ * the size the widget would cover on the workspace (scaled down to the row), only once
+ * the row is bound, and cancels the request when the row is recycled.
+ */
+public class WidgetsPickerView extends FrameLayout {
+
+    public interface OnWidgetPickedListener {
+        void onWidgetPicked(AppWidgetProviderInfo info, String label, int spanX, int spanY);
+    }
+
+    /** A provider with what the rows need, resolved off the main thread. */
+    private static final class Entry {
+        final AppWidgetProviderInfo info;
+        final String label;
+        final long version;
+        final int spanX;
+        final int spanY;
+
+        Entry(AppWidgetProviderInfo info, String label, long version, int spanX, int spanY) {
+            this.info = info;
+            this.label = label;
+            this.version = version;
+            this.spanX = spanX;
+            this.spanY = spanY;
+        }
+    }
+
+    private final WidgetPreviewLoader previewLoader;
+    private final int cellWidth;
+    private final int cellHeight;
+    private final int countX;
+    private final int countY;
+    private final int maxPreviewWidth;
+    private final int maxPreviewHeight;
+    private final TextView emptyText;
+    private final RecyclerView list;
+    private final Adapter adapter = new Adapter();
+    private OnWidgetPickedListener listener;
+    private boolean closed;
+
+    /** Cell size and grid are those of the workspace page the widget would be added to. */
+    public WidgetsPickerView(Context ctx, WidgetPreviewLoader previewLoader,
+                             int cellWidth, int cellHeight, int countX, int countY) {
+        super(ctx);
+        this.previewLoader = previewLoader;
+        this.cellWidth = Math.max(1, cellWidth);
+        this.cellHeight = Math.max(1, cellHeight);
+        this.countX = countX;
+        this.countY = countY;
+        setBackgroundColor(0xEE222222);
+        setClickable(true); // keep taps from reaching the workspace
+
+        int pad = dp(16);
+        maxPreviewWidth = getResources().getDisplayMetrics().widthPixels - 2 * pad;
+        maxPreviewHeight = getResources().getDisplayMetrics().heightPixels / 3;
+
+        LinearLayout panel = new LinearLayout(ctx);
+        panel.setOrientation(LinearLayout.VERTICAL);
+        panel.setPadding(pad, pad, pad, pad);
+
+        TextView title = new TextView(ctx);
+        title.setText("Widgets");
+        title.setTextColor(Color.WHITE);
+        title.setTextSize(20);
+        panel.addView(title, new LinearLayout.LayoutParams(
+                LinearLayout.LayoutParams.MATCH_PARENT, LinearLayout.LayoutParams.WRAP_CONTENT));
+
+        emptyText = new TextView(ctx);
+        emptyText.setText("Loading…");
+        emptyText.setTextColor(Color.LTGRAY);
+        emptyText.setPadding(0, pad, 0, 0);
+        panel.addView(emptyText, new LinearLayout.LayoutParams(
+                LinearLayout.LayoutParams.MATCH_PARENT, LinearLayout.LayoutParams.WRAP_CONTENT));
+
+        list = new RecyclerView(ctx);
+        list.setLayoutManager(new LinearLayoutManager(ctx));
+        list.setHasFixedSize(true);
+        list.setAdapter(adapter);
+        panel.addView(list, new LinearLayout.LayoutParams(
+                LinearLayout.LayoutParams.MATCH_PARENT, 0, 1f));
+
+        addView(panel, new LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.MATCH_PARENT));
+        loadProviders();
+    }
+
+    public void setOnWidgetPickedListener(OnWidgetPickedListener l) {
+        listener = l;
+    }
+
+    /** Cancels the outstanding preview loads; call when the picker is removed. */
+    public void close() {
+        closed = true;
+        list.setAdapter(null); // recycles the rows, which cancels their requests
+    }
+
+    private void loadProviders() {
+        Context ctx = getContext().getApplicationContext();
+        previewLoader.execute(() -> {
+            List<AppWidgetProviderInfo> providers = AppWidgetManager.getInstance(ctx).getInstalledProviders();
+            ArrayList<Entry> entries = new ArrayList<>(providers.size());
+            for (AppWidgetProviderInfo info : providers) {
+                int spanX = Math.max(1, Math.min(countX, (int) Math.ceil(info.minWidth / (float) cellWidth)));
+                int spanY = Math.max(1, Math.min(countY, (int) Math.ceil(info.minHeight / (float) cellHeight)));
+                entries.add(new Entry(info, info.loadLabel(ctx.getPackageManager()),
+                        previewLoader.getPackageVersion(info.provider.getPackageName()), spanX, spanY));
+            }
+            Collections.sort(entries, (a, b) -> String.CASE_INSENSITIVE_ORDER.compare(
+                    a.label != null ? a.label : "", b.label != null ? b.label : ""));
+            post(() -> {
+                if (closed) return;
+                emptyText.setVisibility(entries.isEmpty() ? VISIBLE : GONE);
+                emptyText.setText("No widgets installed");
+                adapter.setEntries(entries);
+            });
+        });
+    }
+
+    private final class Adapter extends RecyclerView.Adapter<RowHolder> {
+        private List<Entry> entries = Collections.emptyList();
+
+        void setEntries(List<Entry> list) {
+            entries = list;
+            notifyDataSetChanged();
+        }
+
+        @Override
+        public int getItemCount() {
+            return entries.size();
+        }
+
+        @NonNull
+        @Override
+        public RowHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+            return new RowHolder(getContext());
+        }
+
+        @Override
+        public void onBindViewHolder(@NonNull RowHolder holder, int position) {
+            holder.bind(entries.get(position));
+        }
+
+        @Override
+        public void onViewRecycled(@NonNull RowHolder holder) {
+            holder.unbind();
+        }
+    }
+
+    private final class RowHolder extends RecyclerView.ViewHolder {
+        final TextView label;
+        final ImageView preview;
+        Entry entry;
+        WidgetPreviewLoader.Request request;
+
+        RowHolder(Context ctx) {
+            super(new LinearLayout(ctx));
+            LinearLayout row = (LinearLayout) itemView;
+            row.setOrientation(LinearLayout.VERTICAL);
+            row.setPadding(0, dp(12), 0, dp(12));
+            row.setLayoutParams(new RecyclerView.LayoutParams(
+                    RecyclerView.LayoutParams.MATCH_PARENT, RecyclerView.LayoutParams.WRAP_CONTENT));
+
+            label = new TextView(ctx);
+            label.setTextColor(Color.WHITE);
+            row.addView(label, new LinearLayout.LayoutParams(
+                    LinearLayout.LayoutParams.MATCH_PARENT, LinearLayout.LayoutParams.WRAP_CONTENT));
+
+            preview = new ImageView(ctx);
+            preview.setScaleType(ImageView.ScaleType.FIT_START);
+            LinearLayout.LayoutParams lp = new LinearLayout.LayoutParams(0, 0);
+            lp.gravity = Gravity.START;
+            lp.topMargin = dp(8);
+            row.addView(preview, lp);
+
+            row.setOnClickListener(v -> {
+                if (entry != null && listener != null) {
+                    listener.onWidgetPicked(entry.info, entry.label, entry.spanX, entry.spanY);
+                }
+            });
+        }
+
+        void bind(Entry e) {
+            unbind();
+            entry = e;
+            label.setText(e.label + "  " + e.spanX + " × " + e.spanY);
+
+            // the size the widget covers on the workspace, scaled down to fit the row
+            int w = e.spanX * cellWidth;
+            int h = e.spanY * cellHeight;
+            float scale = Math.min(1f, Math.min((float) maxPreviewWidth / w, (float) maxPreviewHeight / h));
+            w = Math.round(w * scale);
+            h = Math.round(h * scale);
+            ViewGroup.LayoutParams lp = preview.getLayoutParams();
+            if (lp.width != w || lp.height != h) {
+                lp.width = w;
+                lp.height = h;
+                preview.setLayoutParams(lp);
+            }
+            request = previewLoader.load(e.info, e.version, w, h, preview::setImageBitmap);
+        }
+
+        void unbind() {
+            if (request != null) {
+                request.cancel();
+                request = null;
+            }
+            preview.setImageDrawable(null);
+            entry = null;
+        }
+    }
+
+    private int dp(int v) { return Math.round(v * getResources().getDisplayMetrics().density); }
+}
@@ -2,14 +2,52 @@ package com.android.bks.launcher;
 
 import android.content.Context;
 import android.util.AttributeSet;
+import android.util.SparseArray;
+import android.view.MotionEvent;
+import android.view.ViewConfiguration;
 
 import androidx.annotation.Nullable;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * Workspace is a set of pages (CellLayouts) user can swipe through.
+ * Pages follow the model: there is one page per screen id referenced by an item, in
+ * ascending order, and a page goes away once its screen has no items left.
+ * With lazy binding (default) only the current page and its neighbours hold views;
+ * farther pages are empty stubs that keep just their items and are bound as
+ * scrolling approaches them.
  */
 public class Workspace extends PagedView {
 
+    /** Pages at most this far from the current page are bound. */
+    private static final int BOUND_PAGE_RADIUS = 1;
+
+    /** Model state of one page, kept in child order. */
+    private static final class PageState {
+        final int screenId;
+        List<? extends ItemInfo> items = Collections.emptyList();
+        boolean bound;
+
+        PageState(int screenId) { this.screenId = screenId; }
+    }
+
+    private final ArrayList<PageState> pages = new ArrayList<>();
+    private ItemViewBinder binder;
+    private boolean lazyBinding = true;
+    private int boundCenterPage = -1;
+
+    private final Runnable updateBoundPagesRunnable = this::updateBoundPages;
+
+    // long-press on empty space; touches on items are handled by the items
+    private Runnable emptyLongPressListener;
+    private final Runnable emptyLongPressRunnable = () -> {
+        if (emptyLongPressListener != null) emptyLongPressListener.run();
+    };
+    private float touchDownX, touchDownY;
+
     public Workspace(Context context) {
         super(context);
     }
@@ -18,10 +56,6 @@ public class Workspace extends PagedView {
         super(context, attrs);
     }
 
-    public void addPage(CellLayout page) {
-        addView(page);
-    }
-
     public CellLayout getPageAt(int index) {
         return (CellLayout) super.getPageAt(index);
     }
@@ -29,4 +63,167 @@ public class Workspace extends PagedView {
     public int getPageCount() {
         return super.getPageCount();
     }
+
+    public int getScreenIdForPage(int page) {
+        return pages.get(page).screenId;
+    }
+
+    /** Page index showing the given screen, or -1. */
+    public int getPageIndexForScreenId(int screenId) {
+        for (int i = 0; i < pages.size(); i++) {
+            if (pages.get(i).screenId == screenId) return i;
+        }
+        return -1;
+    }
+
+    /** Runs on a long-press that no item took, e.g. to open the widget picker. */
+    public void setOnEmptyLongPressListener(Runnable listener) {
+        emptyLongPressListener = listener;
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent ev) {
+        switch (ev.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                touchDownX = ev.getX();
+                touchDownY = ev.getY();
+                postDelayed(emptyLongPressRunnable, ViewConfiguration.getLongPressTimeout());
+                break;
+            case MotionEvent.ACTION_MOVE:
+                int slop = ViewConfiguration.get(getContext()).getScaledTouchSlop();
+                if (Math.abs(ev.getX() - touchDownX) > slop || Math.abs(ev.getY() - touchDownY) > slop) {
+                    removeCallbacks(emptyLongPressRunnable);
+                }
+                break;
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                removeCallbacks(emptyLongPressRunnable);
+                break;
+        }
+        return super.onTouchEvent(ev);
+    }
+
+    public void setItemViewBinder(ItemViewBinder binder) {
+        this.binder = binder;
+    }
+
+    /** When disabled every page is kept bound. */
+    public void setLazyBinding(boolean lazy) {
+        if (lazyBinding == lazy) return;
+        lazyBinding = lazy;
+        boundCenterPage = -1;
+        updateBoundPages();
+    }
+
+    /**
+     * Binds the workspace items grouped by screen id. Pages of screens that are still in
+     * use keep their views and only reconcile their items; pages of new screens are added
+     * and pages of screens without items are unbound and removed. At least one (empty)
+     * page always remains.
+     */
+    public void bindScreens(SparseArray<List<ItemInfo>> itemsByScreen) {
+        int currentScreen = pages.isEmpty() ? -1
+                : pages.get(Math.min(getCurrentPage(), pages.size() - 1)).screenId;
+
+        // drop pages whose screen is gone; keep one page if the model is empty
+        for (int i = pages.size() - 1; i >= 0; i--) {
+            PageState state = pages.get(i);
+            boolean keepLast = itemsByScreen.size() == 0 && pages.size() == 1;
+            if (itemsByScreen.indexOfKey(state.screenId) < 0 && !keepLast) {
+                removePage(i);
+            }
+        }
+
+        // SparseArray keys are sorted, so pages stay in screen order
+        for (int k = 0; k < itemsByScreen.size(); k++) {
+            int screenId = itemsByScreen.keyAt(k);
+            if (k >= pages.size() || pages.get(k).screenId != screenId) {
+                insertPage(k, screenId);
+            }
+        }
+        if (pages.isEmpty()) insertPage(0, 0);
+
+        int current = getPageIndexForScreenId(currentScreen);
+        if (current < 0) current = Math.min(getCurrentPage(), pages.size() - 1);
+        if (current != getCurrentPage()) setCurrentPage(current);
+
+        boundCenterPage = -1;
+        for (int p = 0; p < pages.size(); p++) {
+            List<ItemInfo> items = itemsByScreen.get(pages.get(p).screenId);
+            bindPageItems(p, items != null ? items : Collections.emptyList());
+        }
+    }
+
+    private void insertPage(int index, int screenId) {
+        addView(new CellLayout(getContext()), index);
+        pages.add(index, new PageState(screenId));
+    }
+
+    private void removePage(int index) {
+        if (pages.get(index).bound) unbindPage(index);
+        removeViewAt(index);
+        pages.remove(index);
+    }
+
+    /**
+     * Stores the items of a page and binds them right away if the page is close to
+     * the current one; otherwise the page stays a stub until it comes into range.
+     */
+    public void bindPageItems(int page, List<? extends ItemInfo> items) {
+        PageState state = pages.get(page);
+        state.items = items;
+        if (shouldBindPage(page, getCenterPage())) {
+            getPageAt(page).bindItems(items, binder);
+            state.bound = true;
+        } else if (state.bound) {
+            unbindPage(page);
+        }
+    }
+
+    public boolean isPageBound(int page) {
+        return pages.get(page).bound;
+    }
+
+    private boolean shouldBindPage(int page, int center) {
+        return !lazyBinding || Math.abs(page - center) <= BOUND_PAGE_RADIUS;
+    }
+
+    private void unbindPage(int page) {
+        getPageAt(page).bindItems(Collections.emptyList(), binder);
+        pages.get(page).bound = false;
+    }
+
+    private int getCenterPage() {
+        int width = getWidth();
+        if (width <= 0) return getCurrentPage();
+        int page = (getScrollX() + width / 2) / width;
+        return Math.max(0, Math.min(page, getPageCount() - 1));
+    }
+
+    private void updateBoundPages() {
+        if (binder == null) return;
+        int center = getCenterPage();
+        if (center == boundCenterPage) return;
+        boundCenterPage = center;
+        for (int p = 0; p < pages.size(); p++) {
+            PageState state = pages.get(p);
+            boolean bind = shouldBindPage(p, center);
+            if (bind && !state.bound) {
+                getPageAt(p).bindItems(state.items, binder);
+                state.bound = true;
+            } else if (!bind && state.bound) {
+                unbindPage(p);
+            }
+        }
+    }
+
+    @Override
+    protected void onScrollChanged(int l, int t, int oldl, int oldt) {
+        super.onScrollChanged(l, t, oldl, oldt);
+        if (lazyBinding && getCenterPage() != boundCenterPage) {
+            // scroll changes arrive during draw; add/remove views afterwards
+            removeCallbacks(updateBoundPagesRunnable);
+            post(updateBoundPagesRunnable);
+        }
+    }
 }
@@ -0,0 +1,197 @@
+package com.android.bks.launcher;
+
+import static org.junit.Assert.assertEquals;
+
+import android.content.Context;
+import android.util.SparseArray;
+import android.view.View;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binds synthetic models into a Workspace and Hotseat the way Launcher does and checks the
+ * views created, CellLayouts re-laid out and heap allocated against perf_budgets.properties.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class BindBudgetTest {
+
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1920;
+
+    @Test
+    public void firstBindCreatesViewsOnlyNearTheCurrentPage() {
+        for (int screens : new int[]{1, 4, 20}) {
+            Fixture f = new Fixture();
+            long misses = f.pool.getMisses();
+            f.bind(layout(screens, 16));
+            PerfBudgets.check("first_bind.views_created", f.pool.getMisses() - misses);
+            assertEquals(screens, f.workspace.getPageCount());
+        }
+    }
+
+    @Test
+    public void bindingAFullPageCreatesOneViewPerItem() {
+        Fixture f = new Fixture();
+        long misses = f.pool.getMisses();
+        f.workspace.bindScreens(byScreen(layout(1, 16)));
+        PerfBudgets.check("page_bind.views_created", f.pool.getMisses() - misses);
+    }
+
+    @Test
+    public void movingAnItemTouchesOnePage() {
+        List<ApplicationInfo> model = layout(4, 15);
+        checkUpdate(model, reload(model, app -> {
+            if (app.id == 1) {
+                app.cellX = 3;
+                app.cellY = 3;
+            }
+        }));
+    }
+
+    @Test
+    public void retitlingAnItemTouchesOnePage() {
+        List<ApplicationInfo> model = layout(4, 15);
+        checkUpdate(model, reload(model, app -> {
+            if (app.id == 1) app.title = "A much longer title than before";
+        }));
+    }
+
+    @Test
+    public void addingAnItemTouchesOnePage() {
+        List<ApplicationInfo> model = layout(4, 15);
+        List<ApplicationInfo> updated = reload(model, app -> {});
+        updated.add(new ApplicationInfo(10_000, "New", null, 0, 3, 3, ItemInfo.CONTAINER_DESKTOP, null));
+        checkUpdate(model, updated);
+    }
+
+    @Test
+    public void firstBindOfALargeModelStaysWithinItsAllocationBudget() {
+        new Fixture().bind(layout(20, 16)); // warm-up: class loading and Robolectric shadows
+        Fixture f = new Fixture();
+        List<ApplicationInfo> model = layout(20, 16);
+        long before = PerfBudgets.allocatedBytes();
+        f.bind(model);
+        PerfBudgets.check("first_bind.allocated_kb", (PerfBudgets.allocatedBytes() - before) / 1024);
+    }
+
+    /** Binds before, lays everything out, binds after and checks what the second bind cost. */
+    private static void checkUpdate(List<ApplicationInfo> before, List<ApplicationInfo> after) {
+        Fixture f = new Fixture();
+        f.workspace.setLazyBinding(false); // every page has views that could be touched
+        f.bind(before);
+        f.layout();
+
+        long misses = f.pool.getMisses();
+        f.bind(after);
+        PerfBudgets.check("update.views_created", f.pool.getMisses() - misses);
+        int relayouts = 0;
+        for (int p = 0; p < f.workspace.getPageCount(); p++) {
+            if (f.workspace.getPageAt(p).isLayoutRequested()) relayouts++;
+        }
+        PerfBudgets.check("update.cell_layouts", relayouts);
+    }
+
+    private interface Edit {
+        void apply(ApplicationInfo app);
+    }
+
+    /** Fresh copies of every item, as a model reload delivers them, with edit applied. */
+    private static List<ApplicationInfo> reload(List<ApplicationInfo> model, Edit edit) {
+        List<ApplicationInfo> copy = new ArrayList<>(model.size());
+        for (ApplicationInfo app : model) {
+            ApplicationInfo c = new ApplicationInfo(app.id, app.title, app.intent, app.screen,
+                    app.cellX, app.cellY, app.container, app.icon);
+            edit.apply(c);
+            copy.add(c);
+        }
+        return copy;
+    }
+
+    /** itemsPerScreen apps on each of screens pages, filled row by row, plus a full hotseat. */
+    static List<ApplicationInfo> layout(int screens, int itemsPerScreen) {
+        List<ApplicationInfo> apps = new ArrayList<>();
+        long id = 1;
+        for (int s = 0; s < screens; s++) {
+            for (int i = 0; i < itemsPerScreen; i++) {
+                apps.add(new ApplicationInfo(id, "App " + id, null, s, i % 4, i / 4,
+                        ItemInfo.CONTAINER_DESKTOP, null));
+                id++;
+            }
+        }
+        for (int i = 0; i < 4; i++) {
+            apps.add(new ApplicationInfo(id, "App " + id, null, 0, i, 0, ItemInfo.CONTAINER_HOTSEAT, null));
+            id++;
+        }
+        return apps;
+    }
+
+    static SparseArray<List<ItemInfo>> byScreen(List<ApplicationInfo> apps) {
+        SparseArray<List<ItemInfo>> screens = new SparseArray<>();
+        for (ApplicationInfo app : apps) {
+            if (app.container != ItemInfo.CONTAINER_DESKTOP) continue;
+            List<ItemInfo> items = screens.get(app.screen);
+            if (items == null) {
+                items = new ArrayList<>();
+                screens.put(app.screen, items);
+            }
+            items.add(app);
+        }
+        return screens;
+    }
+
+    /** Workspace, hotseat and view pool wired up like in Launcher, for app icons. */
+    static final class Fixture implements ItemViewBinder {
+        final Context context = RuntimeEnvironment.getApplication();
+        final BubbleTextViewPool pool = new BubbleTextViewPool(context, 40);
+        final Workspace workspace = new Workspace(context);
+        final Hotseat hotseat = new Hotseat(context);
+
+        Fixture() {
+            workspace.setItemViewBinder(this);
+        }
+
+        void bind(List<ApplicationInfo> apps) {
+            workspace.bindScreens(byScreen(apps));
+            List<ApplicationInfo> hs = new ArrayList<>();
+            for (ApplicationInfo app : apps) {
+                if (app.container == ItemInfo.CONTAINER_HOTSEAT) hs.add(app);
+            }
+            hotseat.bindApps(hs, this);
+        }
+
+        void layout() {
+            workspace.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                    View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+            workspace.layout(0, 0, WIDTH, HEIGHT);
+        }
+
+        @Override
+        public View createView(ItemInfo info) {
+            BubbleTextView btv = pool.acquire();
+            btv.applyFromApplicationInfo((ApplicationInfo) info, false);
+            return btv;
+        }
+
+        @Override
+        public void updateView(View view, ItemInfo info) {
+            BubbleTextView btv = (BubbleTextView) view;
+            ApplicationInfo app = (ApplicationInfo) info;
+            if (btv.needsRebind(app)) {
+                btv.applyFromApplicationInfo(app, false);
+            } else {
+                btv.updateInfo(app);
+            }
+        }
+
+        @Override
+        public void recycleView(View view) {
+            pool.recycle(view);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.android.bks.launcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.ActivityInfo;
+import android.content.pm.ResolveInfo;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.URISyntaxException;
+import java.util.List;
+
+/**
+ * DefaultLayoutParser on the override file and on the layout resources: items, folders and
+ * the hotseat, &lt;include&gt;, and items that do not resolve on the device.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class DefaultLayoutParserTest {
+
+    private static final String HEADER =
+            "<favorites xmlns:launcher=\"http://schemas.android.com/apk/res-auto\">\n";
+    private static final String FOOTER = "</favorites>\n";
+
+    private final Context context = RuntimeEnvironment.getApplication();
+
+    @Test
+    public void overrideFileIsStreamedIntoItemsFoldersAndHotseat() throws IOException {
+        install("com.example.mail", "com.example.mail.Inbox");
+        install("com.example.maps", "com.example.maps.Main");
+        install("com.example.clock", "com.example.clock.Main");
+        writeOverride(HEADER
+                + "<favorite launcher:packageName=\"com.example.mail\" launcher:className=\"com.example.mail.Inbox\""
+                + " launcher:screen=\"1\" launcher:x=\"2\" launcher:y=\"3\" launcher:spanX=\"2\">\n"
+                + "  <extra launcher:key=\"account\" launcher:value=\"work\" />\n"
+                + "</favorite>\n"
+                + "<folder launcher:title=\"Tools\" launcher:x=\"1\" launcher:y=\"1\">\n"
+                + "  <favorite launcher:packageName=\"com.example.maps\" launcher:className=\"com.example.maps.Main\" />\n"
+                + "  <favorite launcher:packageName=\"com.example.clock\" launcher:className=\"com.example.clock.Main\" />\n"
+                + "</folder>\n"
+                + "<favorite launcher:container=\"hotseat\" launcher:title=\"Clock\""
+                + " launcher:packageName=\"com.example.clock\" launcher:x=\"3\" />\n"
+                + FOOTER);
+
+        List<ItemInfo> items = parser().loadDefaultLayout();
+
+        assertEquals(3, items.size());
+        ApplicationInfo mail = (ApplicationInfo) items.get(0);
+        assertEquals(ItemInfo.CONTAINER_DESKTOP, mail.container);
+        assertEquals(1, mail.screen);
+        assertEquals(2, mail.cellX);
+        assertEquals(3, mail.cellY);
+        assertEquals(2, mail.spanX);
+        assertEquals(1, mail.spanY);
+        assertEquals(new ComponentName("com.example.mail", "com.example.mail.Inbox"), mail.intent.getComponent());
+        assertEquals("work", mail.intent.getStringExtra("account"));
+        assertEquals("Inbox", mail.title); // the activity's label
+
+        FolderInfo folder = (FolderInfo) items.get(1);
+        assertEquals("Tools", folder.title);
+        assertEquals(2, folder.contents.size());
+        assertEquals("com.example.maps", folder.contents.get(0).intent.getComponent().getPackageName());
+        assertEquals(0, folder.contents.get(0).cellX); // rank
+        assertEquals(1, folder.contents.get(1).cellX);
+
+        ApplicationInfo clock = (ApplicationInfo) items.get(2);
+        assertEquals(ItemInfo.CONTAINER_HOTSEAT, clock.container);
+        assertEquals(3, clock.cellX);
+        assertEquals("Clock", clock.title);
+    }
+
+    @Test
+    public void unresolvedItemsAndEmptyFoldersAreDropped() throws IOException {
+        install("com.example.maps", "com.example.maps.Main");
+        writeOverride(HEADER
+                + "<favorite launcher:packageName=\"com.example.missing\" launcher:className=\"com.example.missing.Main\" />\n"
+                + "<favorite launcher:title=\"Nothing\" launcher:uri=\"#Intent;action=com.example.NOTHING;end\" />\n"
+                + "<folder launcher:title=\"Gone\">\n"
+                + "  <favorite launcher:packageName=\"com.example.missing\" />\n"
+                + "</folder>\n"
+                // a renamed activity falls back to the package's main activity
+                + "<favorite launcher:packageName=\"com.example.maps\" launcher:className=\"com.example.maps.Old\" />\n"
+                + FOOTER);
+
+        List<ItemInfo> items = parser().loadDefaultLayout();
+
+        assertEquals(1, items.size());
+        assertEquals(new ComponentName("com.example.maps", "com.example.maps.Main"),
+                ((ApplicationInfo) items.get(0)).intent.getComponent());
+    }
+
+    @Test
+    public void uriItemsResolveAgainstTheirIntent() throws IOException, URISyntaxException {
+        String uri = "#Intent;action=com.example.OPEN;end";
+        ResolveInfo ri = resolveInfo("com.example.opener", "com.example.opener.Main");
+        shadowOf(context.getPackageManager()).addResolveInfoForIntent(Intent.parseUri(uri, 0), ri);
+        writeOverride(HEADER + "<favorite launcher:title=\"Open\" launcher:uri=\"" + uri + "\" />\n" + FOOTER);
+
+        List<ItemInfo> items = parser().loadDefaultLayout();
+
+        assertEquals(1, items.size());
+        ApplicationInfo open = (ApplicationInfo) items.get(0);
+        assertEquals("com.example.OPEN", open.intent.getAction());
+        assertNull(open.intent.getComponent());
+    }
+
+    @Test
+    public void includeIsOnlyFollowedInResources() throws IOException {
+        install("com.example.maps", "com.example.maps.Main");
+        writeOverride(HEADER
+                + "<include launcher:workspace=\"@xml/default_hotseat\" />\n"
+                + "<favorite launcher:packageName=\"com.example.maps\" />\n"
+                + FOOTER);
+
+        List<ItemInfo> items = parser().loadDefaultLayout();
+
+        assertEquals(1, items.size());
+        assertEquals(ItemInfo.CONTAINER_DESKTOP, items.get(0).container);
+    }
+
+    @Test
+    public void defaultLayoutPullsInTheHotseatThroughInclude() throws URISyntaxException {
+        String settings = "#Intent;action=android.settings.SETTINGS;launchFlags=0x10000000;end";
+        shadowOf(context.getPackageManager()).addResolveInfoForIntent(Intent.parseUri(settings, 0),
+                resolveInfo("com.android.settings", "com.android.settings.Settings"));
+
+        List<ItemInfo> items = parser().loadDefaultLayout();
+
+        assertEquals(1, items.size());
+        ApplicationInfo app = (ApplicationInfo) items.get(0);
+        assertEquals("Settings", app.title);
+        assertEquals(ItemInfo.CONTAINER_HOTSEAT, app.container);
+        assertEquals(2, app.cellX);
+    }
+
+    @Test
+    public void malformedOverrideImportsNothing() throws IOException {
+        install("com.example.maps", "com.example.maps.Main");
+        writeOverride(HEADER + "<favorite launcher:packageName=\"com.example.maps\"></folder>\n" + FOOTER);
+
+        assertTrue(parser().loadDefaultLayout().isEmpty());
+    }
+
+    private DefaultLayoutParser parser() {
+        return new DefaultLayoutParser(context, R.xml.default_workspace);
+    }
+
+    private void writeOverride(String xml) throws IOException {
+        try (Writer w = new FileWriter(new File(context.getFilesDir(), DefaultLayoutParser.OVERRIDE_FILE))) {
+            w.write(xml);
+        }
+    }
+
+    /** Makes the activity show up as a launcher activity. */
+    private void install(String packageName, String className) {
+        Intent main = new Intent(Intent.ACTION_MAIN).addCategory(Intent.CATEGORY_LAUNCHER);
+        shadowOf(context.getPackageManager()).addResolveInfoForIntent(main, resolveInfo(packageName, className));
+    }
+
+    private static ResolveInfo resolveInfo(String packageName, String className) {
+        ResolveInfo ri = new ResolveInfo();
+        ri.activityInfo = new ActivityInfo();
+        ri.activityInfo.packageName = packageName;
+        ri.activityInfo.name = className;
+        ri.activityInfo.applicationInfo = new android.content.pm.ApplicationInfo();
+        ri.activityInfo.applicationInfo.packageName = packageName;
+        ri.nonLocalizedLabel = className.substring(className.lastIndexOf('.') + 1);
+        return ri;
+    }
+}
@@ -0,0 +1,296 @@
+package com.android.bks.launcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.app.Activity;
+import android.os.Looper;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A 120 Hz drag across a full 4x4 page, as DragLayer sees it from the touch stream: what
+ * one ACTION_MOVE allocates, that the reorder solver finds room within its budget at every
+ * cell, and what the drop hands to the model.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class DragLayerTest {
+
+    private static final long FRAME_MS = 8; // 120 Hz
+    private static final int MOVES_PER_CELL = 8;
+    private static final long REORDER_BUDGET_NANOS = 4_000_000L;
+
+    private final List<List<ItemInfo>> drops = new ArrayList<>();
+    private BindBudgetTest.Fixture f;
+    private DragLayer dragLayer;
+    private CellLayout page;
+    private int[] pageOffset;
+
+    @Before
+    public void setUp() {
+        f = new BindBudgetTest.Fixture();
+        f.bind(BindBudgetTest.layout(1, 16));
+        dragLayer = new DragLayer(f.context);
+        dragLayer.addView(f.workspace, new ViewGroup.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+        Robolectric.buildActivity(Activity.class).setup().get().setContentView(dragLayer);
+        shadowOf(Looper.getMainLooper()).idle();
+        page = f.workspace.getPageAt(0);
+        pageOffset = offsetInDragLayer(page);
+        dragLayer.setDragListener(new DragLayer.DragListener() {
+            @Override
+            public void onDrop(List<ItemInfo> movedItems) {
+                drops.add(new ArrayList<>(movedItems)); // only valid during the call
+            }
+
+            @Override
+            public void onDragAbandoned(View view) {}
+
+            @Override
+            public void onDragEnded() {}
+        });
+    }
+
+    @Test
+    public void movesAllocateNothingBeyondWhatTheFrameworkDoes() {
+        // warm-up: the first pass loads classes and sizes the solver's arrays
+        List<MotionEvent> warmUp = snakePath(0);
+        drag(cellView(0, 0), warmUp, null);
+        MotionEvent end = last(warmUp);
+        dispatch(MotionEvent.obtain(0, end.getEventTime() + FRAME_MS, MotionEvent.ACTION_CANCEL,
+                end.getX(), end.getY(), 0));
+
+        List<MotionEvent> moves = snakePath(10_000); // events are created before measuring
+        long[] allocated = new long[moves.size()];
+        drag(cellView(0, 0), moves, allocated);
+
+        // Robolectric's shadows allocate on framework calls (event getters, invalidate) that
+        // do not allocate on a device; a view making just those calls is the baseline. Moves
+        // that change cells also relayout the pushed views; the solver is checked on its own.
+        long[] framework = frameworkBytesPerMove(moves);
+        int lastCell = -1;
+        for (int i = 0; i < moves.size(); i++) {
+            int cell = cellIndexAt(moves.get(i));
+            if (cell != lastCell) {
+                lastCell = cell;
+                continue;
+            }
+            assertEquals("bytes allocated by move " + i, framework[i], allocated[i]);
+        }
+    }
+
+    @Test
+    public void reorderSolverAllocatesNothingAndMeetsItsDeadlineAtEveryCell() {
+        View dragged = cellView(0, 0);
+        ReorderSolver solver = new ReorderSolver();
+        solver.prepare(page);
+        for (int y = 0; y < page.getCountY(); y++) { // warm-up
+            for (int x = 0; x < page.getCountX(); x++) {
+                solver.solve(page, dragged, x, y, 1, 1, Long.MAX_VALUE);
+            }
+        }
+
+        for (int y = 0; y < page.getCountY(); y++) {
+            for (int x = 0; x < page.getCountX(); x++) {
+                long bytes = PerfBudgets.allocatedBytes();
+                boolean solved = solver.solve(page, dragged, x, y, 1, 1,
+                        System.nanoTime() + REORDER_BUDGET_NANOS);
+                long allocated = PerfBudgets.allocatedBytes() - bytes;
+                // solve() gives up once the deadline passes, so a solution is one within budget
+                assertTrue("no solution within budget for " + x + "," + y, solved);
+                assertEquals("bytes allocated solving " + x + "," + y, 0, allocated);
+            }
+        }
+    }
+
+    @Test
+    public void solverMakesRoomUnderThePointerAtEveryCell() {
+        View dragged = cellView(0, 0);
+        List<MotionEvent> moves = snakePath(0);
+        startDrag(dragged, moves.get(0));
+        for (int i = 0; i < moves.size(); i++) {
+            MotionEvent move = moves.get(i);
+            dispatch(move);
+            if (i % MOVES_PER_CELL != MOVES_PER_CELL - 1) continue;
+            // settled on a cell: the solver pushed its item aside within the per-frame budget
+            int cellX = cellIndexAt(move) % page.getCountX();
+            int cellY = cellIndexAt(move) / page.getCountX();
+            View occupant = viewAt(cellX, cellY, dragged);
+            assertNull("cell " + cellX + "," + cellY + " still holds " + occupant, occupant);
+        }
+    }
+
+    @Test
+    public void dropHandsOverOneBatchOfCopies() {
+        View dragged = cellView(0, 0);
+        ItemInfo draggedInfo = (ItemInfo) dragged.getTag();
+        List<MotionEvent> moves = snakePath(0);
+        drag(dragged, moves, null);
+        MotionEvent end = last(moves);
+        dispatch(MotionEvent.obtain(0, end.getEventTime() + FRAME_MS, MotionEvent.ACTION_UP,
+                end.getX(), end.getY(), 0));
+
+        assertEquals(1, drops.size());
+        List<ItemInfo> moved = drops.get(0);
+        assertTrue(moved.size() > 1); // the dragged item and the neighbours it pushed
+        for (ItemInfo copy : moved) {
+            View view = viewWithId(copy.id);
+            CellLayout.LayoutParams lp = (CellLayout.LayoutParams) view.getLayoutParams();
+            assertNotSame(view.getTag(), copy);
+            assertEquals(lp.cellX, copy.cellX);
+            assertEquals(lp.cellY, copy.cellY);
+            // the bound items keep their cells until the model replaces them
+            ItemInfo bound = (ItemInfo) view.getTag();
+            assertTrue(bound.cellX != copy.cellX || bound.cellY != copy.cellY);
+        }
+        ItemInfo draggedCopy = moved.get(0);
+        assertEquals(draggedInfo.id, draggedCopy.id);
+        assertEquals(0, draggedCopy.cellX);
+        assertEquals(3, draggedCopy.cellY);
+    }
+
+    /** Starts dragging and feeds the moves, recording what each allocates if asked. */
+    private void drag(View dragged, List<MotionEvent> moves, long[] allocated) {
+        startDrag(dragged, moves.get(0));
+        for (int i = 0; i < moves.size(); i++) {
+            MotionEvent move = moves.get(i);
+            long bytes = PerfBudgets.allocatedBytes();
+            dispatch(move);
+            if (allocated != null) allocated[i] = PerfBudgets.allocatedBytes() - bytes;
+        }
+    }
+
+    /** What the same moves allocate in a window whose root only reads them and redraws. */
+    private long[] frameworkBytesPerMove(List<MotionEvent> moves) {
+        FrameLayout root = new FrameLayout(f.context) {
+            @Override
+            public boolean onInterceptTouchEvent(MotionEvent ev) {
+                return true;
+            }
+
+            @Override
+            public boolean onTouchEvent(MotionEvent ev) {
+                if (ev.getActionMasked() == MotionEvent.ACTION_MOVE && ev.getX() >= 0 && ev.getY() >= 0) {
+                    invalidate();
+                }
+                return true;
+            }
+        };
+        root.addView(new View(f.context));
+        Robolectric.buildActivity(Activity.class).setup().get().setContentView(root);
+        shadowOf(Looper.getMainLooper()).idle();
+
+        long[] allocated = new long[moves.size()];
+        for (int pass = 0; pass < 2; pass++) { // the first pass warms up
+            for (int i = 0; i < moves.size(); i++) {
+                long bytes = PerfBudgets.allocatedBytes();
+                root.dispatchTouchEvent(moves.get(i));
+                allocated[i] = PerfBudgets.allocatedBytes() - bytes;
+            }
+        }
+        return allocated;
+    }
+
+    private void startDrag(View dragged, MotionEvent firstMove) {
+        dispatch(MotionEvent.obtain(0, firstMove.getEventTime() - FRAME_MS, MotionEvent.ACTION_DOWN,
+                centerX(0), centerY(0), 0));
+        dragLayer.startDrag(dragged, page);
+    }
+
+    /**
+     * One ACTION_MOVE per 120 Hz frame, row by row and back (a snake), MOVES_PER_CELL frames
+     * per cell, starting at cell 0,0 and ending at 0,3.
+     */
+    private List<MotionEvent> snakePath(long startTime) {
+        List<MotionEvent> events = new ArrayList<>();
+        long time = startTime;
+        float x = centerX(0), y = centerY(0);
+        for (int row = 0; row < page.getCountY(); row++) {
+            for (int i = 0; i < page.getCountX(); i++) {
+                int col = row % 2 == 0 ? i : page.getCountX() - 1 - i;
+                float toX = centerX(col), toY = centerY(row);
+                for (int step = 1; step <= MOVES_PER_CELL; step++) {
+                    float t = (float) step / MOVES_PER_CELL;
+                    time += FRAME_MS;
+                    events.add(MotionEvent.obtain(0, time, MotionEvent.ACTION_MOVE,
+                            x + (toX - x) * t, y + (toY - y) * t, 0));
+                }
+                x = toX;
+                y = toY;
+            }
+        }
+        return events;
+    }
+
+    private void dispatch(MotionEvent event) {
+        dragLayer.dispatchTouchEvent(event);
+    }
+
+    private float centerX(int cellX) {
+        return pageOffset[0] + page.getPaddingLeft() + (cellX + 0.5f) * page.getCellWidth();
+    }
+
+    private float centerY(int cellY) {
+        return pageOffset[1] + page.getPaddingTop() + (cellY + 0.5f) * page.getCellHeight();
+    }
+
+    /** The cell under the pointer, numbered row by row. */
+    private int cellIndexAt(MotionEvent event) {
+        int cellX = (int) ((event.getX() - pageOffset[0] - page.getPaddingLeft()) / page.getCellWidth());
+        int cellY = (int) ((event.getY() - pageOffset[1] - page.getPaddingTop()) / page.getCellHeight());
+        return cellY * page.getCountX() + cellX;
+    }
+
+    private View cellView(int cellX, int cellY) {
+        return viewAt(cellX, cellY, null);
+    }
+
+    /** The child covering the cell other than except, or null. */
+    private View viewAt(int cellX, int cellY, View except) {
+        for (int i = 0; i < page.getChildCount(); i++) {
+            View child = page.getChildAt(i);
+            CellLayout.LayoutParams lp = (CellLayout.LayoutParams) child.getLayoutParams();
+            if (child != except && cellX >= lp.cellX && cellX < lp.cellX + lp.cellHSpan
+                    && cellY >= lp.cellY && cellY < lp.cellY + lp.cellVSpan) {
+                return child;
+            }
+        }
+        return null;
+    }
+
+    private View viewWithId(long id) {
+        for (int i = 0; i < page.getChildCount(); i++) {
+            View child = page.getChildAt(i);
+            if (((ItemInfo) child.getTag()).id == id) return child;
+        }
+        throw new AssertionError("no view for item " + id);
+    }
+
+    private int[] offsetInDragLayer(View view) {
+        int[] self = new int[2];
+        int[] offset = new int[2];
+        dragLayer.getLocationInWindow(self);
+        view.getLocationInWindow(offset);
+        offset[0] -= self[0];
+        offset[1] -= self[1];
+        return offset;
+    }
+
+    private static MotionEvent last(List<MotionEvent> events) {
+        return events.get(events.size() - 1);
+    }
+}
@@ -0,0 +1,81 @@
+package com.android.bks.launcher;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.graphics.Bitmap;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.Collections;
+
+/**
+ * IconCache as the model uses it: icons looked up by launch intent, themed icons handed
+ * out instead of the apps' own, and entries dropped per package.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class IconCacheTest {
+
+    private static final ComponentName MAIL = new ComponentName("com.example.mail", "com.example.mail.Inbox");
+
+    private final Context context = RuntimeEnvironment.getApplication();
+    private final IconCache cache = new IconCache(context);
+
+    @Test
+    public void launchIntentsResolveOnceAndThenHitTheCache() throws Exception {
+        install(MAIL);
+
+        Bitmap icon = cache.getIcon(launchIntent(MAIL));
+
+        assertNotNull(icon);
+        assertSame(icon, cache.getIcon(launchIntent(MAIL)));
+        assertNull(cache.getIcon(launchIntent(new ComponentName("com.example.gone", "com.example.gone.Main"))));
+    }
+
+    @Test
+    public void themedIconsReplaceTheAppsOwn() throws Exception {
+        install(MAIL);
+        assertNotNull(cache.getIcon(launchIntent(MAIL)));
+        Bitmap themed = Bitmap.createBitmap(8, 8, Bitmap.Config.ARGB_8888);
+
+        cache.setTheme(new IconTheme("test", null, IconTheme.MASK_CIRCLE, 0, false),
+                new IconThemePipeline(context), Collections.singletonMap(MAIL, themed));
+        assertSame(themed, cache.getIcon(launchIntent(MAIL)));
+
+        cache.setTheme(null, null, Collections.emptyMap());
+        assertNotSame(themed, cache.getIcon(launchIntent(MAIL)));
+    }
+
+    @Test
+    public void removedPackagesAreLoadedAgain() throws Exception {
+        install(MAIL);
+        Bitmap themed = Bitmap.createBitmap(8, 8, Bitmap.Config.ARGB_8888);
+        cache.setTheme(new IconTheme("test", null, IconTheme.MASK_NONE, 0, false),
+                new IconThemePipeline(context), Collections.singletonMap(MAIL, themed));
+
+        cache.removePackage("com.example.mail");
+
+        assertNotSame(themed, cache.getIcon(launchIntent(MAIL)));
+    }
+
+    private static Intent launchIntent(ComponentName cn) {
+        return new Intent(Intent.ACTION_MAIN).addCategory(Intent.CATEGORY_LAUNCHER).setComponent(cn);
+    }
+
+    private void install(ComponentName cn) throws Exception {
+        shadowOf(context.getPackageManager()).addActivityIfNotPresent(cn);
+        IntentFilter filter = new IntentFilter(Intent.ACTION_MAIN);
+        filter.addCategory(Intent.CATEGORY_LAUNCHER);
+        shadowOf(context.getPackageManager()).addIntentFilterForActivity(cn, filter);
+    }
+}
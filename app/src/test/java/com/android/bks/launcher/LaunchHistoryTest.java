@@ -0,0 +1,139 @@
+package com.android.bks.launcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.PackageManager;
+import android.os.Looper;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+/**
+ * LaunchHistory as the activities see it: one instance per process, and predictions that
+ * follow package updates and removals; and a history file that stays bounded.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class LaunchHistoryTest {
+
+    private static final long TIMEOUT_MS = 10_000;
+    private static final ComponentName MAIL = new ComponentName("com.example.mail", "com.example.mail.Inbox");
+    private static final ComponentName MAPS = new ComponentName("com.example.maps", "com.example.maps.Main");
+
+    private final Context context = RuntimeEnvironment.getApplication();
+
+    @Test
+    public void predictionsSurviveListenersAndFollowPackageChanges() throws Exception {
+        install(MAIL);
+        install(MAPS);
+        LaunchHistory history = LaunchHistory.get(context);
+        assertSame(history, LaunchHistory.get(context));
+
+        // a recreated activity attaches before the old one detaches
+        List<List<ApplicationInfo>> first = new ArrayList<>();
+        List<List<ApplicationInfo>> second = new ArrayList<>();
+        LaunchHistory.Listener oldListener = first::add;
+        LaunchHistory.Listener newListener = second::add;
+        history.setListener(oldListener);
+        history.setListener(newListener);
+        history.removeListener(oldListener);
+
+        // the app launched last is not predicted
+        history.record(MAIL, LaunchHistory.SOURCE_WORKSPACE);
+        history.record(MAPS, LaunchHistory.SOURCE_WORKSPACE);
+        waitFor(() -> !history.getPredictions().isEmpty());
+        assertTrue(first.isEmpty());
+        assertEquals(1, second.size());
+        ApplicationInfo mail = history.getPredictions().get(0);
+        assertEquals(MAIL, mail.intent.getComponent());
+
+        // an update resolves the app again
+        List<ApplicationInfo> before = history.getPredictions();
+        history.onPackagesChanged("com.example.mail");
+        waitFor(() -> history.getPredictions() != before);
+        assertEquals(1, history.getPredictions().size());
+        assertNotSame(mail, history.getPredictions().get(0));
+
+        // a removed app leaves the predictions
+        shadowOf(context.getPackageManager()).removePackage("com.example.mail");
+        history.onPackagesChanged("com.example.mail");
+        waitFor(() -> history.getPredictions().isEmpty());
+        history.removeListener(newListener);
+    }
+
+    @Test
+    public void flushesTrimTheFileOnceItPassesTheLimit() throws Exception {
+        File file = new File(context.getFilesDir(), LaunchHistory.FILE_NAME);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            for (int i = 0; i < LaunchHistory.MAX_PERSISTED; i++) {
+                out.writeUTF(MAIL.flattenToString());
+                out.writeLong(i);
+                out.writeByte(LaunchHistory.SOURCE_WORKSPACE);
+            }
+        }
+        LaunchHistory history = new LaunchHistory(context);
+
+        // up to the slack the flushes only append
+        for (int i = 0; i < LaunchHistory.TRIM_SLACK; i++) history.record(MAPS, LaunchHistory.SOURCE_HOTSEAT);
+        history.flush();
+        waitFor(() -> countRecords(file) == LaunchHistory.MAX_PERSISTED + LaunchHistory.TRIM_SLACK);
+
+        history.record(MAPS, LaunchHistory.SOURCE_HOTSEAT);
+        history.flush();
+        waitFor(() -> countRecords(file) == LaunchHistory.MAX_PERSISTED);
+    }
+
+    private static int countRecords(File file) {
+        int n = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                in.readUTF();
+                in.readLong();
+                in.readByte();
+                n++;
+            }
+        } catch (IOException e) {
+            return n; // EOF, or the file is being replaced
+        }
+    }
+
+    /** Makes the activity resolve as a launcher activity. */
+    private void install(ComponentName cn) throws PackageManager.NameNotFoundException {
+        shadowOf(context.getPackageManager()).addActivityIfNotPresent(cn);
+        IntentFilter filter = new IntentFilter(Intent.ACTION_MAIN);
+        filter.addCategory(Intent.CATEGORY_LAUNCHER);
+        shadowOf(context.getPackageManager()).addIntentFilterForActivity(cn, filter);
+    }
+
+    /** The worker runs on its own thread against Robolectric's clock; advances both. */
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(100));
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}
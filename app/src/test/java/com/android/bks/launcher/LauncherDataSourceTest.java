@@ -0,0 +1,61 @@
+package com.android.bks.launcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/** LauncherDataSource against the real provider and SQLite. */
+@RunWith(RobolectricTestRunner.class)
+public class LauncherDataSourceTest {
+
+    private LauncherDataSource dataSource;
+
+    @Before
+    public void setUp() {
+        Robolectric.setupContentProvider(LauncherProvider.class, LauncherProvider.AUTHORITY);
+        dataSource = new LauncherDataSource(RuntimeEnvironment.getApplication());
+    }
+
+    /** Merged refreshes must keep the list in the order the full query returns. */
+    @Test
+    public void titleOrderMatchesTheQuery() {
+        List<String> titles = Arrays.asList("zoo", "Zebra", "apple", "Apple pie", "_tools", "[x]",
+                "\u00e9clair", "\u00c9clair", "eclair", "\u00c4pfel", "\u00df", "\ufb01le", "\ud83d\ude00 emoji", "\ufffd", "",
+                null, "10", "9");
+        List<ApplicationInfo> items = new ArrayList<>();
+        for (String title : titles) {
+            items.add(new ApplicationInfo(ItemInfo.NO_ID, title, null, 0, 0, 0, ItemInfo.CONTAINER_DESKTOP, null));
+        }
+        dataSource.insertItems(items);
+
+        List<ApplicationInfo> queried = dataSource.getAllApps();
+        List<ApplicationInfo> sorted = new ArrayList<>(queried);
+        Collections.shuffle(sorted);
+        Collections.sort(sorted, LauncherDataSource.TITLE_ORDER);
+
+        assertEquals(titles.size(), queried.size());
+        for (int i = 0; i < queried.size(); i++) {
+            assertEquals("position " + i, queried.get(i).title, sorted.get(i).title);
+        }
+    }
+
+    @Test
+    public void noCaseFoldsAsciiOnly() {
+        assertEquals(0, LauncherDataSource.compareNoCase("Apple", "aPPLE"));
+        assertTrue(LauncherDataSource.compareNoCase("\u00c9clair", "\u00e9clair") < 0);
+        assertTrue(LauncherDataSource.compareNoCase("_", "a") < 0); // '_' sorts before lower case
+        assertTrue(LauncherDataSource.compareNoCase("\ufffd", "\ud83d\ude00") < 0); // by code point
+        assertTrue(LauncherDataSource.compareNoCase("app", "apple") < 0);
+    }
+}
@@ -0,0 +1,70 @@
+package com.android.bks.launcher
+
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.test.UnconfinedTestDispatcher
+import kotlinx.coroutines.test.runCurrent
+import kotlinx.coroutines.test.runTest
+import org.junit.Assert.assertEquals
+import org.junit.Test
+
+/**
+ * [LauncherModelFlows] as its collectors see it: the first load is a FirstBind and later
+ * loads are Updates, a slow collector of the state only sees the latest snapshot, and a
+ * collector that falls behind on the deltas loses the oldest ones.
+ */
+@OptIn(ExperimentalCoroutinesApi::class)
+class LauncherModelFlowsTest {
+
+    private val flows = LauncherModelFlows()
+
+    @Test
+    fun firstLoadIsAFirstBindAndLaterLoadsAreUpdates() = runTest {
+        val states = ArrayList<ModelState>()
+        val collector = launch(UnconfinedTestDispatcher(testScheduler)) { flows.state.collect(states::add) }
+        val first = model("v1")
+        val second = model("v2")
+
+        flows.publish(first)
+        flows.publish(second)
+
+        assertEquals(listOf(ModelState.Loading, ModelState.FirstBind(first), ModelState.Update(second)), states)
+        collector.cancel()
+    }
+
+    @Test
+    fun aSlowCollectorOnlySeesTheLatestState() = runTest {
+        val states = ArrayList<ModelState>()
+        val collector = launch { flows.state.collect(states::add) }
+        runCurrent() // collected Loading and waits for the next state
+
+        val loads = (1..5).map { model("v$it") }
+        loads.forEach(flows::publish) // the collector does not run in between
+
+        runCurrent()
+        assertEquals(listOf(ModelState.Loading, ModelState.Update(loads.last())), states)
+        collector.cancel()
+    }
+
+    @Test
+    fun deltasDropTheOldestWhenACollectorFallsBehind() = runTest {
+        flows.publish(model("v0")) // the first bind has no delta
+        val deltas = ArrayList<ModelDelta>()
+        val collector = launch { flows.deltas.collect(deltas::add) }
+        runCurrent() // subscribed and waiting
+
+        val overflow = 10
+        val loads = (1..LauncherModelFlows.DELTA_BUFFER + overflow).map { model("v$it") }
+        loads.forEach(flows::publish) // each retitles one item: one Updated delta
+
+        runCurrent()
+        assertEquals(loads.drop(overflow).map { ModelDelta.Updated(listOf(it[0])) }, deltas)
+        collector.cancel()
+    }
+
+    /** One workspace item titled title, and a hotseat item that never changes. */
+    private fun model(title: String) = listOf(
+        ApplicationInfo(1, title, null, 0, 0, 0, ItemInfo.CONTAINER_DESKTOP.toLong(), null),
+        ApplicationInfo(2, "Phone", null, 0, 0, 0, ItemInfo.CONTAINER_HOTSEAT.toLong(), null)
+    )
+}
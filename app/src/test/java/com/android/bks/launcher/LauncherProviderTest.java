@@ -0,0 +1,187 @@
+package com.android.bks.launcher;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.ContentObserver;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * LauncherProvider: change notifications as a ContentObserver sees them (one per batch,
+ * naming the affected rows) and the upgrade of databases written by older versions.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class LauncherProviderTest {
+
+    private static final int ROWS = 300;
+
+    private final List<Uri> notifications = new ArrayList<>();
+    private final ContentObserver observer = new ContentObserver(null) {
+        @Override
+        public void onChange(boolean selfChange, Uri uri) {
+            notifications.add(uri);
+        }
+    };
+
+    private ContentResolver resolver;
+    private LauncherDataSource dataSource;
+
+    @Before
+    public void setUp() {
+        Robolectric.setupContentProvider(LauncherProvider.class, LauncherProvider.AUTHORITY);
+        resolver = RuntimeEnvironment.getApplication().getContentResolver();
+        dataSource = new LauncherDataSource(RuntimeEnvironment.getApplication());
+        resolver.registerContentObserver(LauncherProvider.CONTENT_URI, true, observer);
+    }
+
+    @After
+    public void tearDown() {
+        resolver.unregisterContentObserver(observer);
+    }
+
+    @Test
+    public void batchedImportOf300RowsNotifiesOnceWithAllIds() {
+        dataSource.insertItems(items(ROWS));
+
+        assertEquals(1, notifications.size());
+        long[] ids = LauncherProvider.parseNotifiedIds(notifications.get(0));
+        assertEquals(ROWS, ids.length);
+        assertArrayEquals(allIds(), ids);
+    }
+
+    @Test
+    public void bulkInsertOf300RowsNotifiesOnce() {
+        ContentValues[] values = new ContentValues[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            values[i] = new ContentValues();
+            values[i].put("title", "App " + i);
+        }
+        resolver.bulkInsert(LauncherProvider.CONTENT_URI, values);
+
+        assertEquals(1, notifications.size());
+        assertEquals(ROWS, LauncherProvider.parseNotifiedIds(notifications.get(0)).length);
+    }
+
+    @Test
+    public void singleWritesNotifyPerCall() {
+        for (ApplicationInfo app : items(3)) dataSource.insertApp(app);
+        assertEquals(3, notifications.size());
+
+        notifications.clear();
+        ContentValues values = new ContentValues();
+        values.put("screen", 1);
+        resolver.update(LauncherProvider.CONTENT_URI, values, null, null);
+        assertEquals(1, notifications.size());
+        assertArrayEquals(allIds(), LauncherProvider.parseNotifiedIds(notifications.get(0)));
+    }
+
+    @Test
+    public void largeBatchesNotifyWithoutIds() {
+        dataSource.insertItems(items(600));
+
+        assertEquals(1, notifications.size());
+        assertNull(LauncherProvider.parseNotifiedIds(notifications.get(0)));
+    }
+
+    @Test
+    public void upgradeFromV1PointsGoogleFolderContentsAtThePlaceholder() {
+        createV1Database(
+                "'Phone', 'workspace', 0, 3, 'APPLICATION'",
+                "'Google Folder', 'workspace', 3, 3, 'APPLICATION'",
+                "'Gmail', 'folder_google', 0, 0, 'APPLICATION'",
+                "'Maps', 'folder_google', 1, 0, 'APPLICATION'",
+                "'Messages', 'hotseat', 0, 0, 'APPLICATION'");
+
+        List<ApplicationInfo> apps = dataSource.getAllApps(); // opens and upgrades the database
+
+        ApplicationInfo folder = byTitle(apps, "Google Folder");
+        assertEquals(ItemInfo.ITEM_TYPE_FOLDER, folder.itemType);
+        assertEquals(ItemInfo.CONTAINER_DESKTOP, folder.container);
+        assertEquals(folder.id, byTitle(apps, "Gmail").container);
+        assertEquals(folder.id, byTitle(apps, "Maps").container);
+        assertEquals(1, byTitle(apps, "Maps").cellX);
+        ApplicationInfo phone = byTitle(apps, "Phone");
+        assertEquals(ItemInfo.CONTAINER_DESKTOP, phone.container);
+        assertEquals(ItemInfo.ITEM_TYPE_APPLICATION, phone.itemType);
+        assertEquals(3, phone.cellY);
+        assertEquals(ItemInfo.CONTAINER_HOTSEAT, byTitle(apps, "Messages").container);
+        assertEquals(ItemInfo.NO_ID, phone.appWidgetId); // v3 columns were added
+    }
+
+    @Test
+    public void upgradeFromV1KeepsOrphanedFolderContentsHidden() {
+        createV1Database(
+                "'Phone', 'workspace', 0, 3, 'APPLICATION'",
+                "'Gmail', 'folder_google', 0, 0, 'APPLICATION'");
+
+        List<ApplicationInfo> apps = dataSource.getAllApps();
+
+        assertEquals(ItemInfo.NO_ID, byTitle(apps, "Gmail").container);
+        assertEquals(ItemInfo.CONTAINER_DESKTOP, byTitle(apps, "Phone").container);
+    }
+
+    /** Writes launcher.db as version 1 of the app left it; rows are title, container, x, y, type. */
+    private static void createV1Database(String... rows) {
+        File file = RuntimeEnvironment.getApplication().getDatabasePath("launcher.db");
+        file.getParentFile().mkdirs();
+        try (SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(file, null)) {
+            db.execSQL("CREATE TABLE favorites (" +
+                    "_id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                    "title TEXT," +
+                    "intent TEXT," +
+                    "container TEXT," +
+                    "screen INTEGER DEFAULT 0," +
+                    "cellX INTEGER DEFAULT 0," +
+                    "cellY INTEGER DEFAULT 0," +
+                    "spanX INTEGER DEFAULT 1," +
+                    "spanY INTEGER DEFAULT 1," +
+                    "itemType TEXT DEFAULT 'APPLICATION'" +
+                    ")");
+            for (String row : rows) {
+                db.execSQL("INSERT INTO favorites (title, container, cellX, cellY, itemType) VALUES (" + row + ")");
+            }
+            db.setVersion(1);
+        }
+    }
+
+    private static ApplicationInfo byTitle(List<ApplicationInfo> apps, String title) {
+        for (ApplicationInfo app : apps) {
+            if (title.equals(app.title)) return app;
+        }
+        throw new AssertionError("no row titled " + title);
+    }
+
+    private static List<ApplicationInfo> items(int count) {
+        List<ApplicationInfo> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            items.add(new ApplicationInfo(ItemInfo.NO_ID, "App " + i, null, i / 16, i % 4, (i / 4) % 4,
+                    ItemInfo.CONTAINER_DESKTOP, null));
+        }
+        return items;
+    }
+
+    private long[] allIds() {
+        List<ApplicationInfo> apps = dataSource.getAllApps();
+        long[] ids = new long[apps.size()];
+        for (int i = 0; i < ids.length; i++) ids[i] = apps.get(i).id;
+        Arrays.sort(ids);
+        return ids;
+    }
+}
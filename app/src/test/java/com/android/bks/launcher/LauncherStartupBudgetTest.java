@@ -0,0 +1,52 @@
+package com.android.bks.launcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.os.Looper;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.android.controller.ActivityController;
+
+import java.util.List;
+
+/**
+ * Starts the real Launcher on a seeded database and checks what the main thread allocates
+ * from onCreate() until the whole model is bound against perf_budgets.properties.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class LauncherStartupBudgetTest {
+
+    private static final int SCREENS = 4;
+    private static final long BIND_TIMEOUT_MS = 10_000;
+
+    @Test
+    public void startupStaysWithinItsAllocationBudget() throws InterruptedException {
+        List<ApplicationInfo> model = BindBudgetTest.layout(SCREENS, 16);
+        new LauncherDataSource(RuntimeEnvironment.getApplication()).insertItems(model);
+
+        launchUntilBound().pause().stop().destroy(); // warm-up: class loading and shadows
+
+        long before = PerfBudgets.allocatedBytes();
+        ActivityController<Launcher> controller = launchUntilBound();
+        PerfBudgets.check("startup.allocated_kb", (PerfBudgets.allocatedBytes() - before) / 1024);
+        controller.pause().stop().destroy();
+    }
+
+    /** The model loads on its own thread; runs the main looper until its result is bound. */
+    private static ActivityController<Launcher> launchUntilBound() throws InterruptedException {
+        ActivityController<Launcher> controller = Robolectric.buildActivity(Launcher.class).setup();
+        Workspace workspace = controller.get().findViewById(R.id.workspace);
+        long deadline = System.currentTimeMillis() + BIND_TIMEOUT_MS;
+        while (workspace.getPageCount() < SCREENS && System.currentTimeMillis() < deadline) {
+            shadowOf(Looper.getMainLooper()).idle();
+            Thread.sleep(10); // real time; SystemClock is Robolectric's fake clock
+        }
+        assertEquals(SCREENS, workspace.getPageCount());
+        return controller;
+    }
+}
@@ -0,0 +1,151 @@
+package com.android.bks.launcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+public class MetricsRegistryTest {
+
+    private final MetricsRegistry registry = new MetricsRegistry();
+
+    @Test
+    public void lookupReturnsTheSameMetric() {
+        assertSame(registry.counter("a"), registry.counter("a"));
+        assertSame(registry.gauge("a"), registry.gauge("a"));
+        assertSame(registry.histogram("a"), registry.histogram("a"));
+    }
+
+    @Test
+    public void counterAccumulates() {
+        MetricsRegistry.Counter counter = registry.counter("binds");
+        counter.inc();
+        counter.inc();
+        counter.add(5);
+        assertEquals(7, counter.get());
+    }
+
+    @Test
+    public void gaugeKeepsTheLastLevel() {
+        MetricsRegistry.Gauge gauge = registry.gauge("queue");
+        gauge.set(10);
+        gauge.add(-3);
+        assertEquals(7, gauge.get());
+        gauge.set(2);
+        assertEquals(2, gauge.get());
+    }
+
+    @Test
+    public void histogramPercentilesResolveToBucketBounds() {
+        LatencyHistogram histogram = registry.histogram("bind_ms");
+        for (int i = 0; i < 90; i++) histogram.record(3); // bucket <= 4
+        for (int i = 0; i < 9; i++) histogram.record(100); // bucket <= 128
+        histogram.record(5000); // overflow
+        assertEquals(100, histogram.getCount());
+        assertEquals(5000, histogram.getMax());
+        assertEquals((90 * 3 + 9 * 100 + 5000) / 100, histogram.getMean());
+        assertEquals(4, histogram.getPercentile(50));
+        assertEquals(4, histogram.getPercentile(90));
+        assertEquals(128, histogram.getPercentile(99));
+        assertEquals(5000, histogram.getPercentile(100));
+    }
+
+    @Test
+    public void histogramClampsNegativeValues() {
+        LatencyHistogram histogram = registry.histogram("clock_skew");
+        histogram.record(-5);
+        assertEquals(1, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(1, histogram.getPercentile(100));
+    }
+
+    @Test
+    public void emptyHistogramReportsZero() {
+        LatencyHistogram histogram = registry.histogram("unused");
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMean());
+        assertEquals(0, histogram.getPercentile(99));
+    }
+
+    @Test
+    public void snapshotHoldsCountersAndGaugesSortedByName() {
+        registry.counter("b.counter").add(2);
+        registry.gauge("a.gauge").set(9);
+        registry.histogram("c.histogram").record(1);
+
+        Map<String, Long> snapshot = registry.snapshot();
+        assertEquals(Arrays.asList("a.gauge", "b.counter"), new ArrayList<>(snapshot.keySet()));
+        assertEquals(Long.valueOf(9), snapshot.get("a.gauge"));
+        assertEquals(Long.valueOf(2), snapshot.get("b.counter"));
+    }
+
+    @Test
+    public void snapshotIsACopy() {
+        MetricsRegistry.Counter counter = registry.counter("launches");
+        counter.inc();
+        Map<String, Long> snapshot = registry.snapshot();
+        counter.inc();
+        assertEquals(Long.valueOf(1), snapshot.get("launches"));
+    }
+
+    @Test
+    public void resetClearsCountersAndHistogramsButKeepsGauges() {
+        MetricsRegistry.Counter counter = registry.counter("binds");
+        MetricsRegistry.Gauge gauge = registry.gauge("pages");
+        LatencyHistogram histogram = registry.histogram("bind_ms");
+        counter.add(3);
+        gauge.set(4);
+        histogram.record(20);
+
+        registry.reset();
+
+        assertEquals(0, counter.get());
+        assertEquals(4, gauge.get());
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        // metrics looked up before the reset keep recording into the registry
+        counter.inc();
+        assertEquals(Long.valueOf(1), registry.snapshot().get("binds"));
+    }
+
+    @Test
+    public void concurrentIncrementsAreNotLost() throws InterruptedException {
+        MetricsRegistry.Counter counter = registry.counter("contended");
+        LatencyHistogram histogram = registry.histogram("contended_ms");
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    counter.inc();
+                    histogram.record(i % 10);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) thread.join();
+        assertEquals(40_000, counter.get());
+        assertEquals(40_000, histogram.getCount());
+    }
+
+    @Test
+    public void dumpListsEveryMetric() {
+        registry.counter("binds").inc();
+        registry.gauge("pages").set(3);
+        registry.histogram("bind_ms").record(7);
+        StringWriter out = new StringWriter();
+        registry.dump("", new PrintWriter(out, true));
+        String dump = out.toString();
+        assertTrue(dump, dump.contains("binds=1"));
+        assertTrue(dump, dump.contains("pages=3"));
+        assertTrue(dump, dump.contains("bind_ms: count=1"));
+    }
+}
@@ -0,0 +1,50 @@
+package com.android.bks.launcher;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Properties;
+
+/**
+ * PerfBudgets - the budgets in the version-controlled perf_budgets.properties test resource,
+ * and the measurements the budget tests compare against them.
+ */
+final class PerfBudgets {
+
+    private static final String RESOURCE = "/perf_budgets.properties";
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static Properties budgets;
+
+    private PerfBudgets() {}
+
+    static synchronized long get(String key) {
+        if (budgets == null) {
+            budgets = new Properties();
+            try (InputStream in = PerfBudgets.class.getResourceAsStream(RESOURCE)) {
+                if (in == null) throw new IllegalStateException(RESOURCE + " not on the test classpath");
+                budgets.load(in);
+            } catch (IOException e) {
+                throw new IllegalStateException("cannot read " + RESOURCE, e);
+            }
+        }
+        String value = budgets.getProperty(key);
+        if (value == null) throw new IllegalStateException("no budget for " + key + " in " + RESOURCE);
+        return Long.parseLong(value.trim());
+    }
+
+    /** Fails when measured exceeds the budget, naming both in the message. */
+    static void check(String key, long measured) {
+        long budget = get(key);
+        assertTrue(key + " over budget: " + measured + " > " + budget, measured <= budget);
+    }
+
+    /** Bytes allocated by the calling thread so far; reading it allocates nothing itself. */
+    static long allocatedBytes() {
+        return THREADS.getCurrentThreadAllocatedBytes();
+    }
+}
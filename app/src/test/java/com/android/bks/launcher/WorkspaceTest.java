@@ -0,0 +1,194 @@
+package com.android.bks.launcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.app.Activity;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.WindowManager;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.GraphicsMode;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Page management of {@link Workspace}: pages follow the screens of the model, only pages
+ * near the current one hold views, removing pages keeps the user on their screen, and
+ * swiped pages are drawn from hardware layers until they settle.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class WorkspaceTest {
+
+    @Test
+    public void twentyFullPagesBindOnlyAroundTheCurrentPage() {
+        new BindBudgetTest.Fixture().bind(BindBudgetTest.layout(20, 16)); // warm-up
+
+        BindBudgetTest.Fixture f = new BindBudgetTest.Fixture();
+        List<ApplicationInfo> model = BindBudgetTest.layout(20, 16);
+        long allocated = PerfBudgets.allocatedBytes();
+        f.workspace.bindScreens(BindBudgetTest.byScreen(model));
+        allocated = PerfBudgets.allocatedBytes() - allocated;
+
+        assertEquals(20, f.workspace.getPageCount());
+        assertBoundPages(f.workspace, 0, 1);
+        assertEquals(2 * 16, viewCount(f.workspace));
+        PerfBudgets.check("workspace.bind_20_pages.allocated_kb", allocated / 1024);
+
+        // scrolling binds the new neighbourhood and hands the old views back to the pool;
+        // that happens in a posted runnable, which needs the workspace attached to a window
+        Robolectric.buildActivity(Activity.class).setup().get().setContentView(f.workspace);
+        shadowOf(Looper.getMainLooper()).idle();
+        f.workspace.setCurrentPage(10);
+        shadowOf(Looper.getMainLooper()).idle();
+        assertBoundPages(f.workspace, 9, 11);
+        assertEquals(3 * 16, viewCount(f.workspace));
+        assertEquals(2 * 16, f.pool.getHits());
+    }
+
+    @Test
+    public void removingAPageBeforeTheCurrentOneKeepsTheCurrentScreen() {
+        BindBudgetTest.Fixture f = new BindBudgetTest.Fixture();
+        List<ApplicationInfo> model = BindBudgetTest.layout(5, 16);
+        f.bind(model);
+        f.workspace.setCurrentPage(3);
+
+        f.bind(withoutScreen(model, 1));
+
+        assertEquals(4, f.workspace.getPageCount());
+        assertEquals(2, f.workspace.getCurrentPage());
+        assertEquals(3, f.workspace.getScreenIdForPage(2));
+        assertEquals(-1, f.workspace.getPageIndexForScreenId(1));
+        assertBoundPages(f.workspace, 1, 3);
+    }
+
+    @Test
+    public void removingAPageAfterTheCurrentOneKeepsTheCurrentPage() {
+        BindBudgetTest.Fixture f = new BindBudgetTest.Fixture();
+        List<ApplicationInfo> model = BindBudgetTest.layout(5, 16);
+        f.bind(model);
+        f.workspace.setCurrentPage(1);
+
+        f.bind(withoutScreen(model, 2));
+
+        assertEquals(4, f.workspace.getPageCount());
+        assertEquals(1, f.workspace.getCurrentPage());
+        assertEquals(1, f.workspace.getScreenIdForPage(1));
+        assertEquals(3, f.workspace.getScreenIdForPage(2));
+        assertBoundPages(f.workspace, 0, 2);
+    }
+
+    @Test
+    public void removingEveryItemKeepsOneEmptyPage() {
+        BindBudgetTest.Fixture f = new BindBudgetTest.Fixture();
+        f.bind(BindBudgetTest.layout(3, 16));
+        f.workspace.setCurrentPage(2);
+
+        f.bind(new ArrayList<>());
+
+        assertEquals(1, f.workspace.getPageCount());
+        assertEquals(0, f.workspace.getCurrentPage());
+        assertEquals(0, f.workspace.getPageAt(0).getChildCount());
+        assertEquals(2 * 16 + 4, f.pool.size()); // both bound pages and the hotseat were recycled
+
+        // the kept page is reused when items come back
+        f.bind(BindBudgetTest.layout(2, 16));
+        assertEquals(2, f.workspace.getPageCount());
+        assertEquals(16, f.workspace.getPageAt(0).getChildCount());
+    }
+
+    @Test
+    @GraphicsMode(GraphicsMode.Mode.NATIVE)
+    public void swipingLayersTheNeighbouringPagesUntilThePageSettles() {
+        BindBudgetTest.Fixture f = new BindBudgetTest.Fixture();
+        f.bind(BindBudgetTest.layout(5, 16));
+        Activity activity = Robolectric.buildActivity(Activity.class).setup().get();
+        activity.getWindow().addFlags(WindowManager.LayoutParams.FLAG_HARDWARE_ACCELERATED);
+        activity.setContentView(f.workspace);
+        shadowOf(Looper.getMainLooper()).idle();
+        f.workspace.setCurrentPage(2);
+        shadowOf(Looper.getMainLooper()).idle();
+        assertTrue(f.workspace.isHardwareAccelerated());
+        List<Boolean> scrollStates = new ArrayList<>();
+        f.workspace.setOnScrollStateListener(scrollStates::add);
+
+        // a quick swipe to the left, one move per 60 Hz frame, then lift: a fling to page 3
+        float x = f.workspace.getWidth() * 0.8f;
+        float y = f.workspace.getHeight() / 2f;
+        long downTime = SystemClock.uptimeMillis();
+        f.workspace.dispatchTouchEvent(MotionEvent.obtain(downTime, downTime, MotionEvent.ACTION_DOWN, x, y, 0));
+        for (int frame = 0; frame < 8; frame++) {
+            nextFrame(f.workspace);
+            x -= 60;
+            f.workspace.dispatchTouchEvent(MotionEvent.obtain(downTime, SystemClock.uptimeMillis(),
+                    MotionEvent.ACTION_MOVE, x, y, 0));
+            assertEquals(Collections.singletonList(true), scrollStates);
+            assertLayers(f.workspace, 1, 3);
+        }
+        f.workspace.dispatchTouchEvent(MotionEvent.obtain(downTime, SystemClock.uptimeMillis(),
+                MotionEvent.ACTION_UP, x, y, 0));
+        assertEquals(3, f.workspace.getCurrentPage());
+
+        // the layers stay while the page settles, and go once it has
+        for (int frame = 0; frame < 60 && scrollStates.size() == 1; frame++) {
+            assertLayers(f.workspace, 1, 3);
+            nextFrame(f.workspace);
+        }
+        assertEquals(Arrays.asList(true, false), scrollStates);
+        assertEquals(3 * f.workspace.getWidth(), f.workspace.getScrollX());
+        assertLayers(f.workspace, 0, -1);
+    }
+
+    /** Runs a 60 Hz frame: the scroll animation steps and whatever it posted runs. */
+    private static void nextFrame(Workspace workspace) {
+        workspace.computeScroll();
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(16));
+    }
+
+    /** Exactly the pages from first to last (inclusive) have hardware layers. */
+    private static void assertLayers(Workspace workspace, int first, int last) {
+        for (int p = 0; p < workspace.getPageCount(); p++) {
+            int expected = p >= first && p <= last ? View.LAYER_TYPE_HARDWARE : View.LAYER_TYPE_NONE;
+            assertEquals("layer of page " + p, expected, workspace.getPageAt(p).getLayerType());
+        }
+    }
+
+    private static List<ApplicationInfo> withoutScreen(List<ApplicationInfo> model, int screen) {
+        List<ApplicationInfo> apps = new ArrayList<>(model.size());
+        for (ApplicationInfo app : model) {
+            if (app.container != ItemInfo.CONTAINER_DESKTOP || app.screen != screen) apps.add(app);
+        }
+        return apps;
+    }
+
+    /** Exactly the pages from first to last (inclusive) are bound. */
+    private static void assertBoundPages(Workspace workspace, int first, int last) {
+        for (int p = 0; p < workspace.getPageCount(); p++) {
+            boolean expected = p >= first && p <= last;
+            if (expected) {
+                assertTrue("page " + p + " not bound", workspace.isPageBound(p));
+            } else {
+                assertFalse("page " + p + " bound", workspace.isPageBound(p));
+                assertEquals(0, workspace.getPageAt(p).getChildCount());
+            }
+        }
+    }
+
+    private static int viewCount(Workspace workspace) {
+        int views = 0;
+        for (int p = 0; p < workspace.getPageCount(); p++) views += workspace.getPageAt(p).getChildCount();
+        return views;
+    }
+}
@@ -0,0 +1,15 @@
+package com.android.bks.launcher;
+
+import android.content.Context;
+
+/**
+ * DeviceProfile - the benchmark module's stand-in for the app's, which reads the grid from
+ * config.xml through R; this module has no resources, so the values are the same ones.
+ */
+public class DeviceProfile {
+    public final int numRows = 4;
+    public final int numColumns = 4;
+    public final int numHotseatIcons = 4;
+
+    public DeviceProfile(Context context) {}
+}
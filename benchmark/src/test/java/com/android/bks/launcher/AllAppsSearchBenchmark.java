@@ -0,0 +1,45 @@
+package com.android.bks.launcher;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * AllAppsSearchBenchmark - one keystroke's worth of filtering on the search worker, over
+ * more apps than a phone usually has.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class AllAppsSearchBenchmark {
+
+    private static final int APPS = 2000;
+    private static final String[] QUERIES = {"c", "ca", "cal", "calc", "xyz"};
+
+    @Test
+    public void filter() throws Exception {
+        List<ApplicationInfo> apps = new ArrayList<>(APPS);
+        Random random = new Random(42);
+        for (int i = 0; i < APPS; i++) {
+            ApplicationInfo app = new ApplicationInfo();
+            StringBuilder title = new StringBuilder();
+            int words = 1 + random.nextInt(3);
+            for (int w = 0; w < words; w++) {
+                if (w > 0) title.append(' ');
+                title.append((char) ('A' + random.nextInt(26)));
+                for (int c = 0; c < 3 + random.nextInt(6); c++) title.append((char) ('a' + random.nextInt(26)));
+            }
+            app.title = title.toString();
+            apps.add(app);
+        }
+        BenchmarkRunner.measure("search.filter_2000_apps_5_queries", () -> {
+            int matches = 0;
+            for (String query : QUERIES) {
+                matches += AllAppsSearchScheduler.filter(apps, query, () -> false).size();
+            }
+            BenchmarkRunner.sink = matches;
+        });
+    }
+}
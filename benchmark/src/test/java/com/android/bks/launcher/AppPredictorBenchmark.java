@@ -0,0 +1,50 @@
+package com.android.bks.launcher;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * AppPredictorBenchmark - replaying a launch history, as LaunchHistory does on startup,
+ * and re-ranking after a launch.
+ */
+public class AppPredictorBenchmark {
+
+    private static final int COMPONENTS = 200;
+    private static final int LAUNCHES = 4096;
+    private static final long START = 1_700_000_000_000L;
+
+    private final int[] components = new int[LAUNCHES];
+
+    public AppPredictorBenchmark() {
+        // a few apps get most of the launches
+        Random random = new Random(42);
+        for (int i = 0; i < LAUNCHES; i++) {
+            double r = random.nextDouble();
+            components[i] = (int) (r * r * r * COMPONENTS);
+        }
+    }
+
+    @Test
+    public void replayHistory() throws Exception {
+        BenchmarkRunner.measure("predictor.replay_4096_launches", () -> {
+            AppPredictor predictor = new AppPredictor();
+            for (int i = 0; i < LAUNCHES; i++) predictor.onLaunch(components[i], START + i * 60_000L);
+            BenchmarkRunner.sink = predictor;
+        });
+    }
+
+    @Test
+    public void topN() throws Exception {
+        AppPredictor predictor = new AppPredictor();
+        for (int i = 0; i < LAUNCHES; i++) predictor.onLaunch(components[i], START + i * 60_000L);
+        int[] out = new int[4];
+        double[] scratch = new double[4];
+        long now = START + LAUNCHES * 60_000L;
+        BenchmarkRunner.measure("predictor.top4_of_200_x100", () -> {
+            int n = 0;
+            for (int i = 0; i < 100; i++) n += predictor.getTopN(now, out, scratch);
+            BenchmarkRunner.sink = n;
+        });
+    }
+}
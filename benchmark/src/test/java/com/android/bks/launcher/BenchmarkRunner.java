@@ -0,0 +1,133 @@
+package com.android.bks.launcher;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * BenchmarkRunner - times a benchmark body: {@link #WARMUP_RUNS} untimed runs, then
+ * {@link #MEASURED_RUNS} timed ones. The median, min and max in nanoseconds go to
+ * build/benchmark-results/&lt;name&gt;.json, which the checkBenchmarks task compares with
+ * baseline.json; for bodies that do a known amount of work, so does the throughput of the
+ * median run. The bytes a timed run allocates on average and the collections over the
+ * measured runs are recorded alongside, and benchmarks can {@link #annotate} their own counters.
+ * Benchmarks that time their own samples, such as frames, {@link #report} them.
+ */
+final class BenchmarkRunner {
+
+    interface Body {
+        void run() throws Exception;
+    }
+
+    static final int WARMUP_RUNS = 20;
+    static final int MEASURED_RUNS = 50;
+
+    /** Bodies store their results here so the JIT cannot drop the work. */
+    static volatile Object sink;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private BenchmarkRunner() {}
+
+    static long measure(String name, Body body) throws Exception {
+        return measure(name, null, body);
+    }
+
+    /** setup runs untimed before every run, for bodies that consume their input. */
+    static long measure(String name, Body setup, Body body) throws Exception {
+        return measure(name, setup, body, 0);
+    }
+
+    /** Also records opsPerRun / median as opsPerSec, e.g. icons per second. */
+    static long measure(String name, Body setup, Body body, int opsPerRun) throws Exception {
+        long[] times = new long[MEASURED_RUNS];
+        long allocated = 0;
+        long collections = 0;
+        for (int i = 0; i < WARMUP_RUNS + MEASURED_RUNS; i++) {
+            if (setup != null) setup.run();
+            if (i == WARMUP_RUNS) collections = -collectionCount();
+            long bytes = THREADS.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            body.run();
+            long elapsed = System.nanoTime() - start;
+            bytes = THREADS.getCurrentThreadAllocatedBytes() - bytes;
+            if (i >= WARMUP_RUNS) {
+                times[i - WARMUP_RUNS] = elapsed;
+                allocated += bytes;
+            }
+        }
+        collections += collectionCount();
+        Arrays.sort(times);
+        long median = times[MEASURED_RUNS / 2];
+        long opsPerSec = opsPerRun > 0 ? Math.round(opsPerRun * 1e9 / median) : 0;
+        long bytesPerRun = allocated / MEASURED_RUNS;
+        write(name, MEASURED_RUNS, median, times[0], times[MEASURED_RUNS - 1],
+                (opsPerSec > 0 ? ",\"opsPerSec\":" + opsPerSec : "")
+                        + ",\"allocatedBytes\":" + bytesPerRun + ",\"gcCount\":" + collections);
+        System.out.printf(Locale.ROOT, "%-44s median %,14d ns  min %,14d ns  %,d B/run  %d GCs%s%n", name, median,
+                times[0], bytesPerRun, collections,
+                opsPerSec > 0 ? String.format(Locale.ROOT, "  %,d ops/s", opsPerSec) : "");
+        return median;
+    }
+
+    /**
+     * Records durations the benchmark timed itself, e.g. one per frame: the median, min and
+     * max like {@link #measure}, plus the 90th and 99th percentile.
+     */
+    static long report(String name, long[] durationsNs) throws IOException {
+        long[] sorted = durationsNs.clone();
+        Arrays.sort(sorted);
+        int n = sorted.length;
+        long median = sorted[n / 2];
+        long p90 = sorted[percentileIndex(n, 90)];
+        long p99 = sorted[percentileIndex(n, 99)];
+        write(name, n, median, sorted[0], sorted[n - 1], ",\"p90Ns\":" + p90 + ",\"p99Ns\":" + p99);
+        System.out.printf(Locale.ROOT, "%-44s median %,14d ns  p90 %,14d ns  p99 %,14d ns%n", name, median, p90, p99);
+        return median;
+    }
+
+    /** Adds a counter to the results of an already measured benchmark, e.g. cache hits. */
+    static void annotate(String name, String key, long value) throws IOException {
+        File file = resultFile(name);
+        String json = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).trim();
+        json = json.substring(0, json.length() - 1) + ",\"" + key + "\":" + value + "}";
+        Files.write(file.toPath(), (json + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+        System.out.printf(Locale.ROOT, "%-44s %s %,d%n", name, key, value);
+    }
+
+    private static long collectionCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static int percentileIndex(int n, int percentile) {
+        return Math.min(n - 1, (int) Math.ceil(n * percentile / 100d) - 1);
+    }
+
+    private static void write(String name, int runs, long median, long min, long max, String extra)
+            throws IOException {
+        File file = resultFile(name);
+        File dir = file.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Cannot create " + dir);
+        try (Writer w = new FileWriter(file)) {
+            w.write(String.format(Locale.ROOT,
+                    "{\"name\":\"%s\",\"runs\":%d,\"medianNs\":%d,\"minNs\":%d,\"maxNs\":%d%s}%n",
+                    name, runs, median, min, max, extra));
+        }
+    }
+
+    private static File resultFile(String name) {
+        return new File(System.getProperty("benchmark.resultsDir", "build/benchmark-results"), name + ".json");
+    }
+}
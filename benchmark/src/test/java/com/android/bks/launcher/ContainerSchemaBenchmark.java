@@ -0,0 +1,155 @@
+package com.android.bks.launcher;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.SparseArray;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ContainerSchemaBenchmark - the favorites table and bind loop before and after containers
+ * and item types became integers: the v1 table with TEXT columns and no index against the
+ * current one with its (container, screen) index, and the grouping of a loaded model: the v1
+ * loop with String.equals dispatch, kept here since the app no longer has it, against
+ * {@link ModelGroups#group}, which Launcher binds from (it also sorts each folder's contents
+ * by rank). Same 5000-row layout for both.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ContainerSchemaBenchmark {
+
+    private static final int ROWS = 5000;
+    private static final int FOLDERS = 100;
+    private static final int FOLDER_SIZE = 10;
+
+    /** A v1 model row: container and item type as strings. */
+    private static final class TextItem {
+        long id;
+        String container;
+        String itemType;
+        int screen;
+    }
+
+    private SQLiteDatabase db;
+
+    @Before
+    public void setUp() {
+        db = SQLiteDatabase.create(null);
+        db.execSQL("CREATE TABLE favorites_v1 (_id INTEGER PRIMARY KEY AUTOINCREMENT, title TEXT,"
+                + " intent TEXT, container TEXT, screen INTEGER DEFAULT 0, cellX INTEGER DEFAULT 0,"
+                + " cellY INTEGER DEFAULT 0, spanX INTEGER DEFAULT 1, spanY INTEGER DEFAULT 1,"
+                + " itemType TEXT DEFAULT 'APPLICATION')");
+        db.execSQL("CREATE TABLE favorites (_id INTEGER PRIMARY KEY AUTOINCREMENT, title TEXT,"
+                + " intent TEXT, container INTEGER NOT NULL, screen INTEGER DEFAULT 0,"
+                + " cellX INTEGER DEFAULT 0, cellY INTEGER DEFAULT 0, spanX INTEGER DEFAULT 1,"
+                + " spanY INTEGER DEFAULT 1, itemType INTEGER NOT NULL)");
+        db.execSQL("CREATE INDEX favorites_container ON favorites (container, screen)");
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < ROWS; i++) {
+                db.execSQL("INSERT INTO favorites_v1 (title, container, screen, cellX, cellY, itemType)"
+                        + " VALUES (?, ?, ?, ?, ?, ?)", new Object[]{"App " + i, textContainer(i),
+                        i / 16, i % 4, (i / 4) % 4, i < FOLDERS ? "FOLDER" : "APPLICATION"});
+                db.execSQL("INSERT INTO favorites (title, container, screen, cellX, cellY, itemType)"
+                        + " VALUES (?, ?, ?, ?, ?, ?)", new Object[]{"App " + i, container(i),
+                        i / 16, i % 4, (i / 4) % 4,
+                        i < FOLDERS ? ItemInfo.ITEM_TYPE_FOLDER : ItemInfo.ITEM_TYPE_APPLICATION});
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void queryHotseatText() throws Exception {
+        BenchmarkRunner.measure("schema.query_hotseat_v1_text_5000_rows",
+                () -> count(db.query("favorites_v1", null, "container=?", new String[]{"hotseat"},
+                        null, null, "cellX ASC")));
+    }
+
+    @Test
+    public void queryHotseatInteger() throws Exception {
+        BenchmarkRunner.measure("schema.query_hotseat_v3_int_5000_rows",
+                () -> count(db.query("favorites", null, "container=" + ItemInfo.CONTAINER_HOTSEAT, null,
+                        null, null, "cellX ASC")));
+    }
+
+    @Test
+    public void groupText() throws Exception {
+        List<TextItem> items = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            TextItem item = new TextItem();
+            item.id = i + 1;
+            item.container = textContainer(i);
+            item.itemType = i < FOLDERS ? "FOLDER" : "APPLICATION";
+            item.screen = i / 16;
+            items.add(item);
+        }
+        BenchmarkRunner.measure("schema.group_v1_text_5000_items", () -> {
+            SparseArray<List<TextItem>> screens = new SparseArray<>();
+            List<TextItem> folderContents = new ArrayList<>();
+            List<TextItem> hotseat = new ArrayList<>();
+            for (TextItem item : items) {
+                if ("workspace".equals(item.container)) {
+                    List<TextItem> page = screens.get(item.screen);
+                    if (page == null) screens.put(item.screen, page = new ArrayList<>());
+                    page.add(item);
+                } else if ("hotseat".equals(item.container)) {
+                    hotseat.add(item);
+                } else if ("folder_google".equals(item.container)) {
+                    folderContents.add(item);
+                }
+            }
+            BenchmarkRunner.sink = screens.size() + folderContents.size() + hotseat.size();
+        });
+    }
+
+    @Test
+    public void groupInteger() throws Exception {
+        List<ApplicationInfo> items = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            ApplicationInfo item = new ApplicationInfo(i + 1, "App " + i, null, i / 16, i % 4, (i / 4) % 4,
+                    container(i), null);
+            item.itemType = i < FOLDERS ? ItemInfo.ITEM_TYPE_FOLDER : ItemInfo.ITEM_TYPE_APPLICATION;
+            items.add(item);
+        }
+        BenchmarkRunner.measure("schema.group_v3_int_5000_items",
+                () -> BenchmarkRunner.sink = ModelGroups.group(items));
+    }
+
+    /** The first FOLDERS rows are folders, then FOLDER_SIZE apps per folder, 4 in the hotseat. */
+    private static String textContainer(int i) {
+        if (i >= ROWS - 4) return "hotseat";
+        if (i >= FOLDERS && i < FOLDERS + FOLDERS * FOLDER_SIZE) return "folder_google";
+        return "workspace";
+    }
+
+    private static long container(int i) {
+        if (i >= ROWS - 4) return ItemInfo.CONTAINER_HOTSEAT;
+        if (i >= FOLDERS && i < FOLDERS + FOLDERS * FOLDER_SIZE) return 1 + (i - FOLDERS) / FOLDER_SIZE;
+        return ItemInfo.CONTAINER_DESKTOP;
+    }
+
+    private static int count(Cursor c) {
+        try {
+            int n = 0;
+            while (c.moveToNext()) n++;
+            BenchmarkRunner.sink = n;
+            return n;
+        } finally {
+            c.close();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.android.bks.launcher;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * GridOccupancyBenchmark - the occupancy work ReorderSolver does for every drag move:
+ * rebuild the page's occupancy around the drop area, then find the nearest vacant cell
+ * for each displaced item.
+ */
+public class GridOccupancyBenchmark {
+
+    private static final int COUNT_X = 4;
+    private static final int COUNT_Y = 4;
+    private static final int MOVES = 1000;
+
+    @Test
+    public void reorderFullPage() throws Exception {
+        GridOccupancy scratch = new GridOccupancy(COUNT_X, COUNT_Y);
+        int[] cell = new int[2];
+        BenchmarkRunner.measure("grid.reorder_full_page_x1000", () -> {
+            int found = 0;
+            for (int m = 0; m < MOVES; m++) {
+                // every cell but the last holds a 1x1 item; drop onto cell m
+                int dropX = m % COUNT_X;
+                int dropY = (m / COUNT_X) % COUNT_Y;
+                scratch.clear();
+                for (int i = 0; i < COUNT_X * COUNT_Y - 1; i++) {
+                    int x = i % COUNT_X;
+                    int y = i / COUNT_X;
+                    if (x != dropX || y != dropY) scratch.markCells(x, y, 1, 1, true);
+                }
+                scratch.markCells(dropX, dropY, 1, 1, true);
+                if (scratch.findNearestVacantArea(dropX, dropY, 1, 1, cell)) found++;
+            }
+            BenchmarkRunner.sink = found;
+        });
+    }
+
+    @Test
+    public void findVacantAreaLargeGrid() throws Exception {
+        GridOccupancy grid = new GridOccupancy(8, 8);
+        Random random = new Random(42);
+        for (int i = 0; i < 40; i++) grid.markCells(random.nextInt(8), random.nextInt(8), 1, 1, true);
+        int[] cell = new int[2];
+        BenchmarkRunner.measure("grid.find_vacant_2x2_8x8_x1000", () -> {
+            int found = 0;
+            for (int m = 0; m < MOVES; m++) {
+                if (grid.findNearestVacantArea(m % 8, (m / 8) % 8, 2, 2, cell)) found++;
+            }
+            BenchmarkRunner.sink = found;
+        });
+    }
+}
@@ -0,0 +1,67 @@
+package com.android.bks.launcher;
+
+import static org.junit.Assert.assertNotNull;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.GraphicsMode;
+
+/**
+ * IconCacheBenchmark - IconCache lookups by launch intent for 50 launcher activities, the
+ * way the model loads icons: every lookup a hit once the icons are cached, and every lookup
+ * a miss (resolve, load, rasterize) on an empty cache. Native graphics, so the rasterizing
+ * is real.
+ */
+@RunWith(RobolectricTestRunner.class)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class IconCacheBenchmark {
+
+    private static final int APPS = 50;
+    private static final int HIT_ROUNDS = 100;
+
+    private Context context;
+    private final Intent[] intents = new Intent[APPS];
+    private IconCache cache;
+
+    @Before
+    public void setUp() throws Exception {
+        context = RuntimeEnvironment.getApplication();
+        IntentFilter filter = new IntentFilter(Intent.ACTION_MAIN);
+        filter.addCategory(Intent.CATEGORY_LAUNCHER);
+        for (int i = 0; i < APPS; i++) {
+            ComponentName cn = new ComponentName("com.example.app" + i, "com.example.app" + i + ".MainActivity");
+            shadowOf(context.getPackageManager()).addActivityIfNotPresent(cn);
+            shadowOf(context.getPackageManager()).addIntentFilterForActivity(cn, filter);
+            intents[i] = new Intent(Intent.ACTION_MAIN).addCategory(Intent.CATEGORY_LAUNCHER).setComponent(cn);
+        }
+    }
+
+    @Test
+    public void hit() throws Exception {
+        cache = new IconCache(context);
+        for (Intent intent : intents) assertNotNull(cache.getIcon(intent));
+        BenchmarkRunner.measure("icon_cache.hit_50_icons_x100", () -> {
+            for (int round = 0; round < HIT_ROUNDS; round++) {
+                for (Intent intent : intents) BenchmarkRunner.sink = cache.getIcon(intent);
+            }
+        });
+    }
+
+    @Test
+    public void miss() throws Exception {
+        BenchmarkRunner.measure("icon_cache.miss_50_icons",
+                () -> cache = new IconCache(context),
+                () -> {
+                    for (Intent intent : intents) BenchmarkRunner.sink = cache.getIcon(intent);
+                });
+    }
+}
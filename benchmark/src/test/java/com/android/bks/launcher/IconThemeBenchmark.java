@@ -0,0 +1,133 @@
+package com.android.bks.launcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.ActivityInfo;
+import android.content.pm.ResolveInfo;
+import android.graphics.Bitmap;
+import android.os.Looper;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.GraphicsMode;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * IconThemeBenchmark - the icon theme pipeline on 50 launcher activities with a theme that
+ * uses every step (mask, tint, shadow): rendering alone, the per-icon path through the disk
+ * cache once every icon is on disk, and applyTheme rendering every icon on pools of 1, 2, 4
+ * and one thread per core, in icons per second. Native graphics, so the canvas work is real.
+ */
+@RunWith(RobolectricTestRunner.class)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class IconThemeBenchmark {
+
+    private static final int APPS = 50;
+    private static final IconTheme THEME =
+            new IconTheme("benchmark", null, IconTheme.MASK_CIRCLE, 0x33FF8800, true);
+
+    private Context context;
+    private IconThemePipeline pipeline;
+    private List<ResolveInfo> apps;
+    private volatile Map<ComponentName, Bitmap> applied;
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.getApplication();
+        Intent main = new Intent(Intent.ACTION_MAIN).addCategory(Intent.CATEGORY_LAUNCHER);
+        for (int i = 0; i < APPS; i++) {
+            shadowOf(context.getPackageManager()).addResolveInfoForIntent(main, resolveInfo(i));
+        }
+        apps = context.getPackageManager().queryIntentActivities(main, 0);
+        assertEquals(APPS, apps.size());
+        pipeline = new IconThemePipeline(context);
+        THEME.loadIconPack(context.getPackageManager());
+    }
+
+    @Test
+    public void render() throws Exception {
+        BenchmarkRunner.measure("icon_theme.render_50_icons", () -> {
+            for (ResolveInfo ri : apps) {
+                BenchmarkRunner.sink = pipeline.render(THEME, ri, componentOf(ri));
+            }
+        });
+    }
+
+    @Test
+    public void readFromDisk() throws Exception {
+        for (ResolveInfo ri : apps) assertNotNull(pipeline.getIcon(THEME, ri)); // renders and writes
+        BenchmarkRunner.measure("icon_theme.disk_read_50_icons", () -> {
+            for (ResolveInfo ri : apps) BenchmarkRunner.sink = pipeline.getIcon(THEME, ri);
+        });
+    }
+
+    @Test
+    public void applyThemeOnOneThread() throws Exception {
+        applyTheme("icon_theme.apply_50_icons_1_thread", 1);
+    }
+
+    @Test
+    public void applyThemeOnTwoThreads() throws Exception {
+        applyTheme("icon_theme.apply_50_icons_2_threads", 2);
+    }
+
+    @Test
+    public void applyThemeOnFourThreads() throws Exception {
+        applyTheme("icon_theme.apply_50_icons_4_threads", 4);
+    }
+
+    @Test
+    public void applyThemeOnEveryCore() throws Exception {
+        applyTheme("icon_theme.apply_50_icons_all_cores", Runtime.getRuntime().availableProcessors());
+    }
+
+    /** Every run starts without the disk cache, so each icon is rendered and written on the pool. */
+    private void applyTheme(String name, int threads) throws Exception {
+        IconThemePipeline pool = new IconThemePipeline(context, threads);
+        File cacheDir = new File(context.getCacheDir(), "themed_icons");
+        BenchmarkRunner.measure(name, () -> deleteRecursively(cacheDir), () -> {
+            applied = null;
+            pool.applyTheme(THEME, (theme, icons) -> applied = icons);
+            // the callback is posted to the main looper, which only runs when idled here
+            while (applied == null) {
+                Thread.sleep(1);
+                shadowOf(Looper.getMainLooper()).idle();
+            }
+            assertEquals(APPS, applied.size());
+            BenchmarkRunner.sink = applied;
+        }, APPS);
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) deleteRecursively(child);
+        }
+        file.delete();
+    }
+
+    private static ComponentName componentOf(ResolveInfo ri) {
+        return new ComponentName(ri.activityInfo.packageName, ri.activityInfo.name);
+    }
+
+    private static ResolveInfo resolveInfo(int app) {
+        ResolveInfo ri = new ResolveInfo();
+        ri.activityInfo = new ActivityInfo();
+        ri.activityInfo.packageName = "com.example.app" + app;
+        ri.activityInfo.name = "com.example.app" + app + ".MainActivity";
+        ri.activityInfo.applicationInfo = new android.content.pm.ApplicationInfo();
+        ri.activityInfo.applicationInfo.packageName = ri.activityInfo.packageName;
+        return ri;
+    }
+}
@@ -0,0 +1,99 @@
+package com.android.bks.launcher;
+
+import android.content.Context;
+import android.content.Intent;
+import android.database.MatrixCursor;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * LauncherDataSourceBenchmark - the model load path: turning favorites rows into
+ * ApplicationInfos, the provider query behind it (SQLite under Robolectric) and the
+ * batched insert used by the default layout import.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class LauncherDataSourceBenchmark {
+
+    private static final int ROWS = 2000;
+    private static final String[] COLUMNS = {"_id", "title", "intent", "container", "screen",
+            "cellX", "cellY", "spanX", "spanY", "itemType", "appWidgetId", "appWidgetProvider"};
+
+    private LauncherDataSource dataSource;
+
+    @Before
+    public void setUp() {
+        Robolectric.setupContentProvider(LauncherProvider.class, LauncherProvider.AUTHORITY);
+        dataSource = new LauncherDataSource(RuntimeEnvironment.getApplication());
+    }
+
+    @Test
+    public void readApps() throws Exception {
+        MatrixCursor[] cursor = new MatrixCursor[1];
+        BenchmarkRunner.measure("datasource.read_apps_2000_rows",
+                () -> cursor[0] = favoritesCursor(true),
+                () -> BenchmarkRunner.sink = LauncherDataSource.readApps(cursor[0]));
+    }
+
+    /** Rows without an intent, so the row conversion is not hidden behind Intent.parseUri. */
+    @Test
+    public void readAppsWithoutIntents() throws Exception {
+        MatrixCursor[] cursor = new MatrixCursor[1];
+        BenchmarkRunner.measure("datasource.read_apps_2000_rows_no_intent",
+                () -> cursor[0] = favoritesCursor(false),
+                () -> BenchmarkRunner.sink = LauncherDataSource.readApps(cursor[0]));
+    }
+
+    @Test
+    public void getAllApps() throws Exception {
+        dataSource.insertItems(items(ROWS));
+        BenchmarkRunner.measure("datasource.get_all_apps_2000_rows",
+                () -> BenchmarkRunner.sink = dataSource.getAllApps());
+    }
+
+    @Test
+    public void insertItems() throws Exception {
+        List<ApplicationInfo> items = items(500);
+        Context context = RuntimeEnvironment.getApplication();
+        BenchmarkRunner.measure("datasource.insert_items_500",
+                () -> context.getContentResolver().delete(LauncherProvider.CONTENT_URI, null, null),
+                () -> dataSource.insertItems(items));
+    }
+
+    private static MatrixCursor favoritesCursor(boolean withIntents) {
+        MatrixCursor c = new MatrixCursor(COLUMNS, ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            c.addRow(new Object[]{i + 1, "App " + i, withIntents ? launchIntent(i).toUri(0) : "", ItemInfo.CONTAINER_DESKTOP,
+                    i / 16, i % 4, (i / 4) % 4, 1, 1, ItemInfo.ITEM_TYPE_APPLICATION, ItemInfo.NO_ID, null});
+        }
+        return c;
+    }
+
+    static List<ApplicationInfo> items(int count) {
+        List<ApplicationInfo> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ApplicationInfo app = new ApplicationInfo();
+            app.title = "App " + i;
+            app.intent = launchIntent(i);
+            app.screen = i / 16;
+            app.cellX = i % 4;
+            app.cellY = (i / 4) % 4;
+            items.add(app);
+        }
+        return items;
+    }
+
+    static Intent launchIntent(int i) {
+        return new Intent(Intent.ACTION_MAIN)
+                .addCategory(Intent.CATEGORY_LAUNCHER)
+                .setClassName("com.example.app" + i, "com.example.app" + i + ".MainActivity")
+                .setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_RESET_TASK_IF_NEEDED);
+    }
+}
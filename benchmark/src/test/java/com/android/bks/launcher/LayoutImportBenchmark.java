@@ -0,0 +1,118 @@
+package com.android.bks.launcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.ActivityInfo;
+import android.content.pm.ResolveInfo;
+import android.util.Xml;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.xmlpull.v1.XmlPullParser;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.StringReader;
+import java.io.Writer;
+
+/**
+ * LayoutImportBenchmark - the first-run import of a generated 500-item default layout
+ * (20 screens of 14 apps and a folder of 10): streaming parse, component resolution and
+ * the single provider transaction.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class LayoutImportBenchmark {
+
+    private static final int SCREENS = 20;
+    private static final int APPS_PER_SCREEN = 14;
+    private static final int FOLDER_SIZE = 10;
+
+    private Context context;
+    private String xml;
+
+    @Before
+    public void setUp() throws Exception {
+        Robolectric.setupContentProvider(LauncherProvider.class, LauncherProvider.AUTHORITY);
+        context = RuntimeEnvironment.getApplication();
+        xml = generateLayout();
+        try (Writer w = new FileWriter(new File(context.getFilesDir(), DefaultLayoutParser.OVERRIDE_FILE))) {
+            w.write(xml);
+        }
+    }
+
+    @Test
+    public void parse() throws Exception {
+        DefaultLayoutParser[] parser = new DefaultLayoutParser[1];
+        XmlPullParser[] in = new XmlPullParser[1];
+        BenchmarkRunner.measure("layout.parse_500_items",
+                () -> {
+                    parser[0] = new DefaultLayoutParser(context, 0);
+                    in[0] = Xml.newPullParser();
+                    in[0].setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true);
+                    in[0].setInput(new StringReader(xml));
+                },
+                () -> parser[0].parseLayout(in[0], false));
+    }
+
+    @Test
+    public void parseAndResolve() throws Exception {
+        // every item resolves, so the timings cover the whole layout
+        assertEquals(SCREENS * (APPS_PER_SCREEN + 1), new DefaultLayoutParser(context, 0).loadDefaultLayout().size());
+        BenchmarkRunner.measure("layout.load_500_items",
+                () -> BenchmarkRunner.sink = new DefaultLayoutParser(context, 0).loadDefaultLayout());
+    }
+
+    @Test
+    public void parseResolveAndInsert() throws Exception {
+        LauncherDataSource dataSource = new LauncherDataSource(context);
+        BenchmarkRunner.measure("layout.import_500_items",
+                () -> context.getContentResolver().delete(LauncherProvider.CONTENT_URI, null, null),
+                () -> dataSource.insertItems(new DefaultLayoutParser(context, 0).loadDefaultLayout()));
+    }
+
+    /** Installs one launcher activity per app and returns a layout referencing all of them. */
+    private String generateLayout() {
+        Intent main = new Intent(Intent.ACTION_MAIN).addCategory(Intent.CATEGORY_LAUNCHER);
+        StringBuilder sb = new StringBuilder(
+                "<favorites xmlns:launcher=\"http://schemas.android.com/apk/res-auto\">\n");
+        int app = 0;
+        for (int screen = 0; screen < SCREENS; screen++) {
+            for (int i = 0; i < APPS_PER_SCREEN; i++, app++) {
+                sb.append(favorite(app)).append(" launcher:screen=\"").append(screen)
+                        .append("\" launcher:x=\"").append(i % 4)
+                        .append("\" launcher:y=\"").append(i / 4).append("\" />\n");
+                shadowOf(context.getPackageManager()).addResolveInfoForIntent(main, resolveInfo(app));
+            }
+            sb.append("<folder launcher:title=\"Folder ").append(screen)
+                    .append("\" launcher:screen=\"").append(screen).append("\" launcher:x=\"3\" launcher:y=\"3\">\n");
+            for (int i = 0; i < FOLDER_SIZE; i++, app++) {
+                sb.append("  ").append(favorite(app)).append(" />\n");
+                shadowOf(context.getPackageManager()).addResolveInfoForIntent(main, resolveInfo(app));
+            }
+            sb.append("</folder>\n");
+        }
+        return sb.append("</favorites>\n").toString();
+    }
+
+    private static String favorite(int app) {
+        return "<favorite launcher:title=\"App " + app + "\" launcher:packageName=\"com.example.app" + app
+                + "\" launcher:className=\"com.example.app" + app + ".MainActivity\"";
+    }
+
+    private static ResolveInfo resolveInfo(int app) {
+        ResolveInfo ri = new ResolveInfo();
+        ri.activityInfo = new ActivityInfo();
+        ri.activityInfo.packageName = "com.example.app" + app;
+        ri.activityInfo.name = "com.example.app" + app + ".MainActivity";
+        ri.activityInfo.applicationInfo = new android.content.pm.ApplicationInfo();
+        ri.activityInfo.applicationInfo.packageName = ri.activityInfo.packageName;
+        return ri;
+    }
+}
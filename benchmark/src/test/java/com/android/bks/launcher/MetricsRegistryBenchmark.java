@@ -0,0 +1,43 @@
+package com.android.bks.launcher;
+
+import org.junit.Test;
+
+/**
+ * MetricsRegistryBenchmark - the recording calls the bind and provider paths make, which
+ * are meant to be lock-free and cheap enough to leave in.
+ */
+public class MetricsRegistryBenchmark {
+
+    private static final int OPS = 100_000;
+
+    private final MetricsRegistry registry = new MetricsRegistry();
+
+    @Test
+    public void counterInc() throws Exception {
+        MetricsRegistry.Counter counter = registry.counter("bench.counter");
+        BenchmarkRunner.measure("metrics.counter_inc_x100k", () -> {
+            for (int i = 0; i < OPS; i++) counter.inc();
+            BenchmarkRunner.sink = counter.get();
+        });
+    }
+
+    @Test
+    public void histogramRecord() throws Exception {
+        LatencyHistogram histogram = registry.histogram("bench.histogram");
+        BenchmarkRunner.measure("metrics.histogram_record_x100k", () -> {
+            for (int i = 0; i < OPS; i++) histogram.record(i & 1023);
+            BenchmarkRunner.sink = histogram.getCount();
+        });
+    }
+
+    @Test
+    public void snapshot() throws Exception {
+        for (int i = 0; i < 50; i++) {
+            registry.counter("bench.counter." + i).inc();
+            registry.gauge("bench.gauge." + i).set(i);
+        }
+        BenchmarkRunner.measure("metrics.snapshot_100_metrics_x100", () -> {
+            for (int i = 0; i < 100; i++) BenchmarkRunner.sink = registry.snapshot();
+        });
+    }
+}
@@ -0,0 +1,86 @@
+package com.android.bks.launcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.os.Looper;
+import android.os.SystemClock;
+import android.view.MotionEvent;
+import android.view.View;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.GraphicsMode;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * PageSwipeBenchmark - frame times of page swipes between two full 4x4 pages: eight 60 Hz
+ * frames of finger movement, then a fling that settles on the next page. A frame is the
+ * input event, the scroll step and a draw of the workspace; the percentiles are over every
+ * frame of every swipe. Software drawing, so the pages are redrawn each frame rather than
+ * composited from the hardware layers a device uses (WorkspaceTest covers those).
+ */
+@RunWith(RobolectricTestRunner.class)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class PageSwipeBenchmark {
+
+    private static final int WARMUP_SWIPES = 10;
+    private static final int MEASURED_SWIPES = 40;
+    private static final int MOVE_FRAMES = 8;
+    private static final int MAX_SETTLE_FRAMES = 60;
+    private static final long FRAME_MS = 16;
+
+    private final WorkspaceFixture f = new WorkspaceFixture(40);
+    private final long[] frames = new long[MEASURED_SWIPES * (MOVE_FRAMES + 1 + MAX_SETTLE_FRAMES)];
+    private int frameCount;
+
+    @Test
+    public void swipeAndFling() throws Exception {
+        f.bind(WorkspaceFixture.layout(2, 16));
+        f.measureAndLayout(f.workspace,
+                View.MeasureSpec.makeMeasureSpec(WorkspaceFixture.HEIGHT, View.MeasureSpec.EXACTLY));
+
+        for (int i = 0; i < WARMUP_SWIPES + MEASURED_SWIPES; i++) {
+            boolean measured = i >= WARMUP_SWIPES;
+            // back and forth between the two pages
+            swipe(i % 2 == 0 ? -1 : 1, measured);
+            assertEquals(i % 2 == 0 ? 1 : 0, f.workspace.getCurrentPage());
+        }
+        BenchmarkRunner.report("workspace.page_swipe_frame", Arrays.copyOf(frames, frameCount));
+    }
+
+    /** direction -1 swipes to the next page, 1 to the previous one. */
+    private void swipe(int direction, boolean measured) {
+        int width = f.workspace.getWidth();
+        float x = direction < 0 ? width * 0.8f : width * 0.2f;
+        float y = f.workspace.getHeight() / 2f;
+        long downTime = SystemClock.uptimeMillis();
+        frame(MotionEvent.obtain(downTime, downTime, MotionEvent.ACTION_DOWN, x, y, 0), measured);
+        for (int i = 0; i < MOVE_FRAMES; i++) {
+            x += direction * 60;
+            frame(MotionEvent.obtain(downTime, SystemClock.uptimeMillis(), MotionEvent.ACTION_MOVE, x, y, 0),
+                    measured);
+        }
+        frame(MotionEvent.obtain(downTime, SystemClock.uptimeMillis(), MotionEvent.ACTION_UP, x, y, 0), measured);
+        int target = f.workspace.getCurrentPage() * width;
+        for (int i = 0; i < MAX_SETTLE_FRAMES && f.workspace.getScrollX() != target; i++) {
+            frame(null, measured);
+        }
+        assertEquals(target, f.workspace.getScrollX());
+    }
+
+    /** One frame: the input event if any, the scroll step and the draw; then the clock moves on. */
+    private void frame(MotionEvent event, boolean measured) {
+        long start = System.nanoTime();
+        if (event != null) f.workspace.dispatchTouchEvent(event);
+        f.workspace.computeScroll();
+        f.draw(f.workspace);
+        long elapsed = System.nanoTime() - start;
+        if (measured) frames[frameCount++] = elapsed;
+        if (event != null) event.recycle();
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(FRAME_MS));
+    }
+}
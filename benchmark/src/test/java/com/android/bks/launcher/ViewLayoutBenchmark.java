@@ -0,0 +1,68 @@
+package com.android.bks.launcher;
+
+import static org.junit.Assert.assertEquals;
+
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.recyclerview.widget.GridLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.GraphicsMode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ViewLayoutBenchmark - a frame's measure, layout and draw of a full 4x4 workspace page,
+ * and of a 40-row All Apps grid (4 columns, every row laid out). Measurements are forced
+ * every run, as after a configuration or content change. Native graphics, so the icons and
+ * labels are really drawn.
+ */
+@RunWith(RobolectricTestRunner.class)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class ViewLayoutBenchmark {
+
+    private static final int COLUMNS = 4;
+    private static final int ROWS = 40;
+
+    @Test
+    public void fullPage() throws Exception {
+        WorkspaceFixture f = new WorkspaceFixture(40);
+        f.bind(WorkspaceFixture.layout(1, 16));
+        int heightSpec = View.MeasureSpec.makeMeasureSpec(WorkspaceFixture.HEIGHT, View.MeasureSpec.EXACTLY);
+        f.measureAndLayout(f.workspace, heightSpec);
+        assertEquals(16, f.workspace.getPageAt(0).getChildCount());
+
+        BenchmarkRunner.measure("view.page_4x4_measure_layout_draw", () -> {
+            f.measureAndLayout(f.workspace, heightSpec);
+            f.draw(f.workspace);
+        });
+    }
+
+    @Test
+    public void allAppsGrid() throws Exception {
+        WorkspaceFixture f = new WorkspaceFixture(0);
+        List<ApplicationInfo> apps = new ArrayList<>();
+        for (int i = 0; i < ROWS * COLUMNS; i++) {
+            apps.add(new ApplicationInfo(i + 1, "App " + (i + 1), null, 0, 0, 0, ItemInfo.CONTAINER_DESKTOP, null));
+        }
+        RecyclerView grid = new RecyclerView(f.context);
+        grid.setLayoutParams(new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
+                ViewGroup.LayoutParams.WRAP_CONTENT));
+        grid.setLayoutManager(new GridLayoutManager(f.context, COLUMNS));
+        grid.setAdapter(new AllAppsAdapter(apps));
+        // unbounded height, so the grid lays out all its rows rather than a screenful
+        int heightSpec = View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
+        f.measureAndLayout(grid, heightSpec);
+        assertEquals(ROWS * COLUMNS, grid.getChildCount());
+
+        BenchmarkRunner.measure("view.all_apps_40_rows_measure_layout_draw", () -> {
+            f.measureAndLayout(grid, heightSpec);
+            f.draw(grid);
+        });
+    }
+}
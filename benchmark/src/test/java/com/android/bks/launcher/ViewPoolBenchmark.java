@@ -0,0 +1,59 @@
+package com.android.bks.launcher;
+
+import static org.junit.Assert.assertEquals;
+
+import android.util.SparseArray;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.GraphicsMode;
+
+import java.util.List;
+
+/**
+ * ViewPoolBenchmark - rebinding the same full 4x4 page, as after the workspace is unbound
+ * (a configuration change, the page leaving the bound range): its 16 views are recycled and
+ * the page bound again, with Launcher's pool of 40 views and with no pool at all. Records
+ * the pool's hits and misses per rebind next to the time and the bytes allocated.
+ */
+@RunWith(RobolectricTestRunner.class)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class ViewPoolBenchmark {
+
+    private static final int ITEMS = 16;
+
+    @Test
+    public void pooled() throws Exception {
+        rebind("view_pool.rebind_4x4_pooled", 40, ITEMS, 0);
+    }
+
+    @Test
+    public void unpooled() throws Exception {
+        rebind("view_pool.rebind_4x4_unpooled", 0, 0, ITEMS);
+    }
+
+    private static void rebind(String name, int poolSize, int expectedHits, int expectedMisses)
+            throws Exception {
+        WorkspaceFixture f = new WorkspaceFixture(poolSize);
+        List<ApplicationInfo> apps = WorkspaceFixture.layout(1, ITEMS);
+        SparseArray<List<ItemInfo>> none = new SparseArray<>();
+        f.bind(apps);
+        long hits = f.pool.getHits();
+        long misses = f.pool.getMisses();
+
+        BenchmarkRunner.measure(name, () -> {
+            f.workspace.bindScreens(none);
+            f.bind(apps);
+        });
+
+        int rebinds = BenchmarkRunner.WARMUP_RUNS + BenchmarkRunner.MEASURED_RUNS;
+        long hitsPerRebind = (f.pool.getHits() - hits) / rebinds;
+        long missesPerRebind = (f.pool.getMisses() - misses) / rebinds;
+        assertEquals(ITEMS, f.workspace.getPageAt(0).getChildCount());
+        assertEquals(expectedHits, hitsPerRebind);
+        assertEquals(expectedMisses, missesPerRebind);
+        BenchmarkRunner.annotate(name, "poolHits", hitsPerRebind);
+        BenchmarkRunner.annotate(name, "poolMisses", missesPerRebind);
+    }
+}
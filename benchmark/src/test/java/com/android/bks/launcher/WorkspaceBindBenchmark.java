@@ -0,0 +1,34 @@
+package com.android.bks.launcher;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.GraphicsMode;
+
+/**
+ * WorkspaceBindBenchmark - binding a 20-page model of full 4x4 pages into a fresh
+ * Workspace, as on the first bind: only the current page and its neighbour get views, each
+ * a new BubbleTextView. WorkspaceTest checks what the bind creates and allocates.
+ */
+@RunWith(RobolectricTestRunner.class)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class WorkspaceBindBenchmark {
+
+    private static final int SCREENS = 20;
+    private static final int ITEMS_PER_SCREEN = 16;
+
+    private WorkspaceFixture f;
+
+    @Test
+    public void bindTwentyPages() throws Exception {
+        ModelGroups groups = ModelGroups.group(WorkspaceFixture.layout(SCREENS, ITEMS_PER_SCREEN));
+        BenchmarkRunner.measure("workspace.bind_20_pages",
+                () -> f = new WorkspaceFixture(0),
+                () -> f.workspace.bindScreens(groups.screens));
+        assertEquals(SCREENS, f.workspace.getPageCount());
+        assertEquals(2 * ITEMS_PER_SCREEN, f.workspace.getPageAt(0).getChildCount()
+                + f.workspace.getPageAt(1).getChildCount());
+    }
+}
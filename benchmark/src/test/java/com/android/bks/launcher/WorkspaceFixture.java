@@ -0,0 +1,107 @@
+package com.android.bks.launcher;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.view.View;
+import android.view.ViewGroup;
+
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * WorkspaceFixture - a workspace and hotseat bound like Launcher binds them (through
+ * {@link ModelGroups}, with a view pool), on a 1080x1920 screen, for the view benchmarks.
+ */
+final class WorkspaceFixture implements ItemViewBinder {
+
+    static final int WIDTH = 1080;
+    static final int HEIGHT = 1920;
+
+    final Context context = RuntimeEnvironment.getApplication();
+    final BubbleTextViewPool pool;
+    final Workspace workspace = new Workspace(context);
+    final Hotseat hotseat = new Hotseat(context);
+    private final Canvas canvas = new Canvas();
+    private Bitmap bitmap;
+
+    WorkspaceFixture(int poolSize) {
+        pool = new BubbleTextViewPool(context, poolSize);
+        workspace.setItemViewBinder(this);
+    }
+
+    /** itemsPerScreen apps on each of screens pages, filled row by row, plus a full hotseat. */
+    static List<ApplicationInfo> layout(int screens, int itemsPerScreen) {
+        List<ApplicationInfo> apps = new ArrayList<>();
+        long id = 1;
+        for (int s = 0; s < screens; s++) {
+            for (int i = 0; i < itemsPerScreen; i++) {
+                apps.add(new ApplicationInfo(id, "App " + id, null, s, i % 4, i / 4,
+                        ItemInfo.CONTAINER_DESKTOP, null));
+                id++;
+            }
+        }
+        for (int i = 0; i < 4; i++) {
+            apps.add(new ApplicationInfo(id, "App " + id, null, 0, i, 0, ItemInfo.CONTAINER_HOTSEAT, null));
+            id++;
+        }
+        return apps;
+    }
+
+    void bind(List<ApplicationInfo> apps) {
+        ModelGroups groups = ModelGroups.group(apps);
+        workspace.bindScreens(groups.screens);
+        hotseat.bindApps(groups.hotseat, this);
+    }
+
+    /** A full measure and layout pass; cached measurements are invalidated first. */
+    void measureAndLayout(View view, int heightSpec) {
+        forceLayout(view);
+        view.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY), heightSpec);
+        view.layout(0, 0, view.getMeasuredWidth(), view.getMeasuredHeight());
+    }
+
+    /** Draws into a bitmap of the view's size, which is reused while the size stays. */
+    void draw(View view) {
+        if (bitmap == null || bitmap.getWidth() != view.getWidth() || bitmap.getHeight() != view.getHeight()) {
+            bitmap = Bitmap.createBitmap(view.getWidth(), view.getHeight(), Bitmap.Config.ARGB_8888);
+            canvas.setBitmap(bitmap);
+        }
+        canvas.save();
+        view.draw(canvas);
+        canvas.restore();
+    }
+
+    private static void forceLayout(View view) {
+        view.forceLayout();
+        if (view instanceof ViewGroup) {
+            ViewGroup group = (ViewGroup) view;
+            for (int i = 0; i < group.getChildCount(); i++) forceLayout(group.getChildAt(i));
+        }
+    }
+
+    @Override
+    public View createView(ItemInfo info) {
+        BubbleTextView btv = pool.acquire();
+        btv.applyFromApplicationInfo((ApplicationInfo) info, false);
+        return btv;
+    }
+
+    @Override
+    public void updateView(View view, ItemInfo info) {
+        BubbleTextView btv = (BubbleTextView) view;
+        ApplicationInfo app = (ApplicationInfo) info;
+        if (btv.needsRebind(app)) {
+            btv.applyFromApplicationInfo(app, false);
+        } else {
+            btv.updateInfo(app);
+        }
+    }
+
+    @Override
+    public void recycleView(View view) {
+        pool.recycle(view);
+    }
+}